@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2018 Privalia (http://privalia.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.privalia.qa.benchmark;
+
+import com.jayway.jsonpath.JsonPath;
+import com.privalia.qa.utils.AvroRecordMatcher;
+import com.privalia.qa.utils.KafkaUtils;
+import org.apache.avro.generic.GenericRecord;
+import org.hjson.JsonValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Measures the creation of avro records from json and the evaluation of the conditions of the step
+ * 'The kafka topic ... has at least ... an avro message with:' over a record, both reading the values from
+ * the json representation of the record (as the step did before) and from the compiled expressions
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AvroBenchmark {
+
+    private static final String SCHEMA = "{\"type\":\"record\",\"name\":\"Order\",\"namespace\":\"com.privalia.benchmark\",\"fields\":["
+            + "{\"name\":\"id\",\"type\":\"long\"},"
+            + "{\"name\":\"status\",\"type\":\"string\"},"
+            + "{\"name\":\"amount\",\"type\":\"float\"},"
+            + "{\"name\":\"tags\",\"type\":{\"type\":\"array\",\"items\":\"string\"}},"
+            + "{\"name\":\"customer\",\"type\":{\"type\":\"record\",\"name\":\"Customer\",\"fields\":["
+            + "{\"name\":\"name\",\"type\":\"string\"},{\"name\":\"city\",\"type\":\"string\"},{\"name\":\"age\",\"type\":\"int\"}]}}]}";
+
+    private static final String JSON = "{\"id\":1234,\"status\":\"SENT\",\"amount\":99.5,\"tags\":[\"new\",\"priority\"],"
+            + "\"customer\":{\"name\":\"Paul\",\"city\":\"Barcelona\",\"age\":30}}";
+
+    private static final List<List<String>> CONDITIONS = Arrays.asList(
+            Arrays.asList("customer.city", "equal", "Barcelona"),
+            Arrays.asList("status", "equal", "SENT"),
+            Arrays.asList("$.tags[1]", "equal", "priority"));
+
+    private static final BiFunction<String, String, String> JSON_PATH_READER = (json, expression) ->
+            JsonPath.parse(JsonValue.readHjson(json).toString()).read(expression).toString();
+
+    private KafkaUtils kafkaUtils;
+
+    private GenericRecord record;
+
+    private AvroRecordMatcher matcher;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        this.kafkaUtils = new KafkaUtils();
+        this.kafkaUtils.createGenericRecord("order", JSON, SCHEMA);
+        this.record = this.kafkaUtils.getAvroRecords().get("order");
+        this.matcher = new AvroRecordMatcher(CONDITIONS, (value, operation, expected) -> expected.equals(value), JSON_PATH_READER);
+    }
+
+    @Benchmark
+    public GenericRecord createGenericRecord() throws Exception {
+        this.kafkaUtils.createGenericRecord("order", JSON, SCHEMA);
+        return this.kafkaUtils.getAvroRecords().get("order");
+    }
+
+    @Benchmark
+    public boolean matchConditionsOverJson() {
+        String json = this.record.toString();
+        for (List<String> condition : CONDITIONS) {
+            if (!condition.get(2).equals(JSON_PATH_READER.apply(json, condition.get(0)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Benchmark
+    public boolean matchConditionsCompiled() {
+        return this.matcher.matches(this.record);
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2018 Privalia (http://privalia.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.privalia.qa.benchmark;
+
+import com.privalia.qa.utils.KafkaUtils;
+
+/**
+ * Creates and closes the {@link KafkaUtils} used by the benchmarks
+ */
+final class BenchmarkKafkaUtils {
+
+    private BenchmarkKafkaUtils() {
+    }
+
+    /**
+     * Returns a new {@link KafkaUtils} connected to the embedded broker
+     *
+     * @param kafka the embedded broker
+     * @return      the kafka utils
+     */
+    static KafkaUtils connect(EmbeddedKafka kafka) {
+        System.setProperty("KAFKA_HOSTS", kafka.getBootstrapServers());
+        KafkaUtils kafkaUtils = new KafkaUtils();
+        kafkaUtils.setZkHost(kafka.getZooKeeperHost(), String.valueOf(kafka.getZooKeeperPort()), null);
+        kafkaUtils.connect();
+        return kafkaUtils;
+    }
+
+    static void disconnect(KafkaUtils kafkaUtils) {
+        kafkaUtils.clearTopicTails();
+        kafkaUtils.closeProducer();
+        kafkaUtils.closeAdminClient();
+        kafkaUtils.getZkUtils().close();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2018 Privalia (http://privalia.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.privalia.qa.benchmark;
+
+import kafka.server.KafkaConfig;
+import kafka.server.KafkaServerStartable;
+import org.apache.commons.io.FileUtils;
+import org.apache.zookeeper.server.ServerCnxnFactory;
+import org.apache.zookeeper.server.ZooKeeperServer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.util.Properties;
+
+/**
+ * A ZooKeeper server and a single kafka broker running in the same JVM, listening on random local ports. Used by
+ * the benchmarks so they do not depend on external services
+ */
+public class EmbeddedKafka implements Closeable {
+
+    private final File dataDir;
+
+    private final ZooKeeperServer zooKeeper;
+
+    private final ServerCnxnFactory zooKeeperFactory;
+
+    private final KafkaServerStartable broker;
+
+    private final int brokerPort;
+
+    /**
+     * Starts ZooKeeper and the broker
+     *
+     * @throws IOException          IOException
+     * @throws InterruptedException InterruptedException
+     */
+    public EmbeddedKafka() throws IOException, InterruptedException {
+        this.dataDir = Files.createTempDirectory("gingerspec-kafka").toFile();
+
+        this.zooKeeper = new ZooKeeperServer(new File(dataDir, "zookeeper"), new File(dataDir, "zookeeper"), 500);
+        this.zooKeeperFactory = ServerCnxnFactory.createFactory(new InetSocketAddress("127.0.0.1", 0), 100);
+        this.zooKeeperFactory.startup(this.zooKeeper);
+
+        this.brokerPort = freePort();
+        Properties props = new Properties();
+        props.put("broker.id", "0");
+        props.put("zookeeper.connect", this.getZooKeeperConnect());
+        props.put("listeners", "PLAINTEXT://127.0.0.1:" + this.brokerPort);
+        props.put("log.dirs", new File(dataDir, "kafka").getAbsolutePath());
+        props.put("num.partitions", "1");
+        props.put("auto.create.topics.enable", "true");
+        props.put("delete.topic.enable", "true");
+        props.put("offsets.topic.replication.factor", "1");
+        props.put("offsets.topic.num.partitions", "1");
+        props.put("transaction.state.log.replication.factor", "1");
+        props.put("transaction.state.log.min.isr", "1");
+        props.put("group.initial.rebalance.delay.ms", "0");
+
+        this.broker = new KafkaServerStartable(KafkaConfig.fromProps(props));
+        this.broker.startup();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    public String getZooKeeperHost() {
+        return "127.0.0.1";
+    }
+
+    public int getZooKeeperPort() {
+        return this.zooKeeperFactory.getLocalPort();
+    }
+
+    public String getZooKeeperConnect() {
+        return this.getZooKeeperHost() + ":" + this.getZooKeeperPort();
+    }
+
+    public String getBootstrapServers() {
+        return "127.0.0.1:" + this.brokerPort;
+    }
+
+    /**
+     * Stops the broker and ZooKeeper and removes their data
+     */
+    @Override
+    public void close() {
+        this.broker.shutdown();
+        this.broker.awaitShutdown();
+        this.zooKeeperFactory.shutdown();
+        FileUtils.deleteQuietly(this.dataDir);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2018 Privalia (http://privalia.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.privalia.qa.benchmark;
+
+import com.privalia.qa.utils.KafkaUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time needed to read a topic that contains the given number of messages, with and without keeping
+ * the records read in memory between reads (-DKAFKA_TAIL_CACHE)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class KafkaConsumeBenchmark {
+
+    private static final String TOPIC = "benchmarkConsume";
+
+    @Param({"1000", "100000"})
+    public int messages;
+
+    @Param({"true", "false"})
+    public boolean tailCache;
+
+    private EmbeddedKafka kafka;
+
+    private KafkaUtils kafkaUtils;
+
+    private String lastMessage;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        this.kafka = new EmbeddedKafka();
+        this.kafkaUtils = BenchmarkKafkaUtils.connect(this.kafka);
+        this.kafkaUtils.setTailCacheEnabled(this.tailCache);
+        this.kafkaUtils.createTopics(Collections.singletonList(TOPIC), true);
+
+        List<String> values = new ArrayList<>(this.messages);
+        List<String> keys = new ArrayList<>(this.messages);
+        for (int i = 0; i < this.messages; i++) {
+            values.add("benchmark message " + i);
+            keys.add("key" + i);
+        }
+        this.kafkaUtils.sendMessages(values, keys, TOPIC, 60);
+        this.lastMessage = values.get(values.size() - 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkKafkaUtils.disconnect(this.kafkaUtils);
+        this.kafka.close();
+    }
+
+    @Benchmark
+    public Map<Object, Object> readTopicFromBeginning() {
+        return this.kafkaUtils.readTopicFromBeginning(TOPIC);
+    }
+
+    @Benchmark
+    public boolean topicContainsLastMessage() {
+        return this.kafkaUtils.topicContains(TOPIC, record -> this.lastMessage.equals(record.value()));
+    }
+}
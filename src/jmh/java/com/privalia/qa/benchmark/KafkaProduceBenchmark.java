@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2018 Privalia (http://privalia.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.privalia.qa.benchmark;
+
+import com.privalia.qa.utils.KafkaUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time needed to send a message to kafka and wait for its acknowledgement, as done by the step
+ * 'I send a message ... to the kafka topic named ...'
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class KafkaProduceBenchmark {
+
+    private static final String TOPIC = "benchmarkProduce";
+
+    private EmbeddedKafka kafka;
+
+    private KafkaUtils kafkaUtils;
+
+    private long index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        this.kafka = new EmbeddedKafka();
+        this.kafkaUtils = BenchmarkKafkaUtils.connect(this.kafka);
+        this.kafkaUtils.createTopics(Collections.singletonList(TOPIC), true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkKafkaUtils.disconnect(this.kafkaUtils);
+        this.kafka.close();
+    }
+
+    @Benchmark
+    public void sendAndConfirmMessage() throws Exception {
+        this.kafkaUtils.sendAndConfirmMessage("benchmark message " + this.index++, "key", TOPIC, 10);
+    }
+}
@@ -20,7 +20,9 @@ import com.privalia.qa.conditions.Conditions;
 import com.privalia.qa.utils.*;
 import io.appium.java_client.MobileDriver;
 import io.cucumber.datatable.DataTable;
+import io.restassured.config.RestAssuredConfig;
 import io.restassured.specification.RequestSpecification;
+import io.restassured.specification.SpecificationQuerier;
 import org.apache.commons.collections.IteratorUtils;
 import org.apache.commons.io.FileUtils;
 import org.aspectj.lang.JoinPoint;
@@ -65,6 +67,8 @@ public class CommonG {
 
     private static final int DEFAULT_SLEEP_TIME = 1500;
 
+    private static final int MAX_REST_TIMINGS = 100;
+
     private final Logger logger = LoggerFactory.getLogger((ThreadProperty.get("class") != null ? ThreadProperty.get("class") : this.getClass().getName()));
 
     private WebDriver driver = null;
@@ -123,12 +127,26 @@ public class CommonG {
 
     private io.restassured.response.Response RestResponse;
 
+    private RestResponseBody restResponseBody;
+
+    private final ParallelRequests parallelRequests = new ParallelRequests();
+
+    private final Deque<RestRequestTiming> restTimings = new ArrayDeque<>();
+
     private List<Map<String, String>> lastFileParseResult;
 
     private Map<String, String> lastFileParseRecord;
 
     private String lastSoapResponse;
 
+    private RestLoadResult restLoadResult;
+
+    private KafkaSendResult kafkaLoadResult;
+
+    private Map<String, Long> kafkaTrackedMessages;
+
+    private PipelineLatencyResult kafkaPipelineResult;
+
     public Alert getSeleniumAlert() {
         return SeleniumAlert;
     }
@@ -219,6 +237,78 @@ public class CommonG {
         this.lastSoapResponse = lastSoapResponse;
     }
 
+    /**
+     * Returns the result of the last concurrent requests or REST load test of the scenario
+     *
+     * @return result of the load test
+     */
+    public RestLoadResult getRestLoadResult() {
+        return restLoadResult;
+    }
+
+    /**
+     * Sets the result of the last concurrent requests or REST load test of the scenario
+     *
+     * @param restLoadResult result of the load test
+     */
+    public void setRestLoadResult(RestLoadResult restLoadResult) {
+        this.restLoadResult = restLoadResult;
+    }
+
+    /**
+     * Returns the result of the last kafka load test (or file streamed to kafka) of the scenario
+     *
+     * @return result of the load test
+     */
+    public KafkaSendResult getKafkaLoadResult() {
+        return kafkaLoadResult;
+    }
+
+    /**
+     * Sets the result of the last kafka load test (or file streamed to kafka) of the scenario
+     *
+     * @param kafkaLoadResult result of the load test
+     */
+    public void setKafkaLoadResult(KafkaSendResult kafkaLoadResult) {
+        this.kafkaLoadResult = kafkaLoadResult;
+    }
+
+    /**
+     * Returns the messages tagged and sent to kafka in the scenario, with the time they were sent
+     *
+     * @return send time in milliseconds of every tracked message, by tag
+     */
+    public Map<String, Long> getKafkaTrackedMessages() {
+        return kafkaTrackedMessages;
+    }
+
+    /**
+     * Sets the messages tagged and sent to kafka in the scenario
+     *
+     * @param kafkaTrackedMessages send time in milliseconds of every tracked message, by tag
+     */
+    public void setKafkaTrackedMessages(Map<String, Long> kafkaTrackedMessages) {
+        this.kafkaTrackedMessages = kafkaTrackedMessages;
+    }
+
+    /**
+     * Returns the end-to-end latency of the tracked messages found in the last searched topic
+     *
+     * @return latency of the tracked messages
+     */
+    public PipelineLatencyResult getKafkaPipelineResult() {
+        return kafkaPipelineResult;
+    }
+
+    /**
+     * Sets the end-to-end latency of the tracked messages found in the last searched topic
+     *
+     * @param kafkaPipelineResult latency of the tracked messages
+     */
+    public void setKafkaPipelineResult(PipelineLatencyResult kafkaPipelineResult) {
+        this.kafkaPipelineResult = kafkaPipelineResult;
+    }
+
     /**
      * Returns the records resulted from the last operation when
      * decoding/parsing files
@@ -254,6 +344,38 @@ public class CommonG {
      */
     public void setRestResponse(io.restassured.response.Response restResponse) {
         RestResponse = restResponse;
+        this.restResponseBody = null;
+    }
+
+    /**
+     * Get the body of the previous Rest response. The body is parsed only once, and reused until a new response
+     * is received
+     *
+     * @return body of the Rest response, or null if no request was sent
+     */
+    public RestResponseBody getRestResponseBody() {
+        if (this.restResponseBody == null && RestResponse != null) {
+            this.restResponseBody = new RestResponseBody(RestResponse);
+        }
+        return this.restResponseBody;
+    }
+
+    /**
+     * Returns the timing of the last REST requests sent in the scenario (up to 100), from the oldest to the newest
+     *
+     * @return timings of the requests
+     */
+    public List<RestRequestTiming> getRestTimings() {
+        return new ArrayList<>(this.restTimings);
+    }
+
+    /**
+     * Returns the timing of the last REST request sent in the scenario
+     *
+     * @return timing of the last request, or null if no request was sent
+     */
+    public RestRequestTiming getLastRestTiming() {
+        return this.restTimings.peekLast();
     }
 
     /**
@@ -1212,6 +1334,15 @@ public class CommonG {
     }
 
 
+    /**
+     * Returns the requests sent in parallel during the scenario
+     *
+     * @return the parallel requests
+     */
+    public ParallelRequests getParallelRequests() {
+        return this.parallelRequests;
+    }
+
     /**
      * Generates the request based on the type of request, the end point, the data and type passed
      *
@@ -1245,7 +1376,7 @@ public class CommonG {
             protocol = "http://";
         }
 
-        String restURL = protocol + this.getRestHost() + this.getRestPort();
+        String restURL = protocol + this.getRestHost() + (this.getRestPort().startsWith(":") ? "" : ":") + this.getRestPort();
 
         // Setup user and password for requests
         if (user != null) {
@@ -1493,6 +1624,14 @@ public class CommonG {
             this.getRestRequest().given().log().all();
         }
 
+        RestClientUtils restClientUtils = RestClientUtil.INSTANCE.getRestClientUtils();
+        RestAssuredConfig config = SpecificationQuerier.query(this.getRestRequest()).getConfig();
+        if (restClientUtils.needsOwnConnectionManager(config)) {
+            this.getLogger().debug("The request has its own keystore or truststore, sending it without connection pooling");
+            this.getRestRequest().config(restClientUtils.getRestAssuredConfig(config));
+        }
+        restClientUtils.startTiming();
+
         switch (requestType) {
             case "GET":
                 this.setRestResponse(this.getRestRequest().when().get());
@@ -1519,6 +1658,13 @@ public class CommonG {
 
         }
 
+        RestRequestTiming timing = restClientUtils.stopTiming(requestType, endPoint, this.getRestResponse().getStatusCode());
+        this.getLogger().debug("Request timing: {}", timing);
+        if (this.restTimings.size() == MAX_REST_TIMINGS) {
+            this.restTimings.removeFirst();
+        }
+        this.restTimings.addLast(timing);
+
         if (this.getLogger().isDebugEnabled()) {
             this.getRestResponse().then().log().all();
         }
@@ -1950,6 +2096,27 @@ public class CommonG {
      * @return the resulting element as string
      */
     public String getJSONPathString(String jsonString, String expr, String position) {
+        return this.getJSONPathString(new RestResponseBody(jsonString), expr, position);
+    }
+
+    /**
+     * Parse jsonpath expression from the body of a response (or a json document).
+     * <p>
+     * Works in the same way as {@link #getJSONPathString(String, String, String)}, but allows to evaluate several
+     * expressions without parsing the document again: the document parsed by {@link RestResponseBody#getDocument()}
+     * is reused, except for the expressions referred to json keys (~), that read the document as it is
+     *
+     * @param body       body of the response (or json document)
+     * @param expr       jsonpath expression
+     * @param position   position from a search result
+     * @return the resulting element as string
+     */
+    public String getJSONPathString(RestResponseBody body, String expr, String position) {
+        DocumentContext document = expr.contains(".~") ? JsonPath.parse(body.asString()) : body.getDocument();
+        return this.getJSONPathString(document, expr, position);
+    }
+
+    private String getJSONPathString(DocumentContext document, String expr, String position) {
 
         String value;
 
@@ -1963,7 +2130,7 @@ public class CommonG {
                 aux = matcher.group(1);
                 op = matcher.group(2);
             }
-            LinkedHashMap auxData = JsonPath.parse(jsonString).read(aux);
+            LinkedHashMap auxData = document.read(RestResponseBody.compile(aux));
             JSONObject json = new JSONObject(auxData);
             List<String> keys = IteratorUtils.toList(json.keys());
             List<String> stringKeys = new ArrayList<String>();
@@ -1991,8 +2158,7 @@ public class CommonG {
 
             }
         } else {
-            String result = JsonValue.readHjson(jsonString).toString();
-            Object data = JsonPath.parse(result).read(expr);
+            Object data = document.read(RestResponseBody.compile(expr));
             if (position != null) {
                 JSONArray jsonArray = new JSONArray(data.toString());
                 value = jsonArray.get(Integer.parseInt(position)).toString();
@@ -2033,7 +2199,7 @@ public class CommonG {
      * @return new json
      */
     public String replaceJSONPathElement(String jsonString, String key, String value) {
-        return JsonPath.parse(jsonString).set(key, value).jsonString();
+        return JsonPath.parse(jsonString).set(RestResponseBody.compile(key), value).jsonString();
     }
 
     /**
@@ -17,9 +17,9 @@
 package com.privalia.qa.specs;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.ning.http.client.AsyncHttpClient;
-import com.ning.http.client.AsyncHttpClientConfig;
 import com.privalia.qa.utils.JiraConnector;
+import com.privalia.qa.utils.RestClientUtil;
+import com.privalia.qa.utils.RestRequestTiming;
 import com.privalia.qa.utils.ThreadProperty;
 import io.appium.java_client.MobileDriver;
 import io.appium.java_client.android.AndroidDriver;
@@ -473,27 +473,55 @@ public class HookGSpec extends BaseGSpec {
 
 
     /**
-     * If the feature has the @rest annotation, creates a new REST client before each scenario
+     * If the feature has the @rest annotation, gets the REST client before each scenario. The client (and its pool
+     * of connections) is shared by all the scenarios, unless -DREST_CONNECTION_POOLING=false is used
      */
     @Before(order = 10, value = "@rest")
     public void restClientSetup() {
         commonspec.getLogger().debug("Starting a REST client");
 
-        commonspec.setClient(new AsyncHttpClient(new AsyncHttpClientConfig.Builder().setAcceptAnyCertificate(true).setAllowPoolingConnections(false)
-                .build()));
+        commonspec.setClient(RestClientUtil.INSTANCE.getRestClientUtils().getClient());
 
-        commonspec.setRestRequest(given().contentType(ContentType.JSON));
+        commonspec.setRestRequest(given().config(RestClientUtil.INSTANCE.getRestClientUtils().getRestAssuredConfig()).contentType(ContentType.JSON));
 
     }
 
     /**
-     * If the feature has the @rest annotation, closes the REST client after each scenario is completed
+     * If the feature has the @rest annotation, attaches the timing of the requests sent during the scenario
+     * to the report
+     *
+     * @param scenario the scenario
+     */
+    @After(order = 20, value = "@rest")
+    public void restTimingsReport(Scenario scenario) {
+        List<RestRequestTiming> timings = commonspec.getRestTimings();
+        if (!timings.isEmpty()) {
+            StringBuilder report = new StringBuilder();
+            for (RestRequestTiming timing : timings) {
+                report.append(timing).append(System.lineSeparator());
+            }
+            scenario.attach(report.toString().getBytes(), "text/plain", "REST response times");
+        }
+    }
+
+    /**
+     * If the feature has the @rest annotation, releases the REST client after each scenario is completed. The
+     * shared client is only closed at the end of the suite
      */
     @After(order = 10, value = "@rest")
     public void restClientTeardown() {
         commonspec.getLogger().debug("Shutting down REST client");
-        commonspec.getClient().close();
+        commonspec.getParallelRequests().clear();
+        RestClientUtil.INSTANCE.getRestClientUtils().releaseClient(commonspec.getClient());
+
+    }
 
+    /**
+     * Discards the records of the kafka topics that were kept in memory during the scenario
+     */
+    @After(order = 10)
+    public void kafkaTopicTailsTeardown() {
+        commonspec.getKafkaUtils().clearTopicTails();
     }
 
     /**
@@ -1,20 +1,45 @@
 package com.privalia.qa.specs;
 
+import com.privalia.qa.utils.AvroExpectationSet;
+import com.privalia.qa.utils.AvroRecordMatcher;
+import com.privalia.qa.utils.KafkaRecordFileReader;
+import com.privalia.qa.utils.KafkaSendResult;
+import com.privalia.qa.utils.KafkaUtils;
+import com.privalia.qa.utils.LatencyHistogram;
+import com.privalia.qa.utils.PipelineLatencyResult;
+import com.privalia.qa.utils.TopicSnapshot;
 import io.cucumber.java.en.And;
 import io.cucumber.java.en.Given;
 import io.cucumber.java.en.Then;
 import io.cucumber.java.en.When;
 import io.cucumber.datatable.DataTable;
 import okhttp3.Response;
+import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.zookeeper.KeeperException;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -25,6 +50,10 @@ import static org.assertj.core.api.Assertions.assertThat;
  */
 public class KafkaGSpec extends BaseGSpec {
 
+    private static final String INDEX_PLACEHOLDER = "{index}";
+
+    private static final long BULK_SEND_TIMEOUT = 60;
+
     /**
      * Instantiates a new Kafka g spec.
      *
@@ -38,7 +67,11 @@ public class KafkaGSpec extends BaseGSpec {
     /**
      * Connect to Kafka.
      * <p>
-     * Establish the connection to the Kafka cluster via the IP of the Zookeeper service. This is an initialization step necessary for all future steps
+     * Establish the connection to the Kafka cluster via the IP of the Zookeeper service. This is an initialization step necessary for all future steps.
+     * <p>
+     * Topics are no longer created, deleted and listed through Zookeeper, but through the kafka brokers, as the producer and
+     * consumer do. The brokers must be given with -DKAFKA_HOSTS (0.0.0.0:9092 by default), so suites that only set the
+     * Zookeeper address in this step must also set -DKAFKA_HOSTS
      *
      * <pre>
      * Example: Assuming zookeeper service is running at localhost:2181
@@ -85,16 +118,51 @@ public class KafkaGSpec extends BaseGSpec {
      */
     @When("^I create a Kafka topic named '(.+?)'( if it doesn't exists)?")
     public void createTopic(String topic_name, String ifExists) throws Exception {
-        if (ifExists != null) {
-            commonspec.getLogger().debug("Checking if topic " + topic_name + " exists before creation");
-            List<String> topics = this.commonspec.getKafkaUtils().listTopics();
-            if (topics.contains(topic_name)) {
-                return;
-            }
+        commonspec.getLogger().debug("Creating topic " + topic_name);
+        commonspec.getKafkaUtils().createTopics(Collections.singletonList(topic_name), ifExists != null);
+    }
+
+    /**
+     * Create several Kafka topics at once.
+     * <p>
+     * Creates all the topics in the datatable with a single request to the cluster, and waits until all of them are
+     * ready (every partition has a leader). Each row contains the name of the topic and, optionally, its number of
+     * partitions (topics are created with 1 partition and a replication factor of 1 by default). It can also ignore
+     * the topics that already exist
+     *
+     * <pre>
+     * Example: Create the topics 'orders', 'invoices' (with 3 partitions) and 'payments'
+     * {@code
+     *      Given I create the following kafka topics:
+     *          | orders   |   |
+     *          | invoices | 3 |
+     *          | payments |   |
+     * }
+     * Example: Create the topics only if they don't exist
+     * {@code
+     *      Given I create the following kafka topics if they don't exist:
+     *          | orders   |
+     *          | invoices |
+     * }
+     * </pre>
+     *
+     * @see #createTopic(String, String)
+     * @see #deleteTopics(DataTable)
+     * @param ifNotExists String for matching optional text in Gherkin
+     * @param table       Name of the topics (and number of partitions)
+     */
+    @When("^I create the following kafka topics( if they don't exist)?:$")
+    public void createTopics(String ifNotExists, DataTable table) {
+
+        Map<String, Integer> topics = new LinkedHashMap<>();
+        int defaultPartitions = commonspec.getKafkaUtils().getDefaultPartitions();
+        for (List<String> row : table.asLists()) {
+            boolean hasPartitions = row.size() > 1 && row.get(1) != null && !row.get(1).trim().isEmpty();
+            topics.put(row.get(0), hasPartitions ? Integer.valueOf(row.get(1).trim()) : defaultPartitions);
         }
 
-        commonspec.getLogger().debug("Creating topic " + topic_name);
-        commonspec.getKafkaUtils().createTopic(topic_name);
+        commonspec.getLogger().debug("Creating topics " + topics.keySet());
+        commonspec.getKafkaUtils().createTopics(topics, ifNotExists != null);
     }
 
     /**
@@ -117,6 +185,32 @@ public class KafkaGSpec extends BaseGSpec {
         commonspec.getKafkaUtils().deleteTopic(topic_name);
     }
 
+    /**
+     * Delete several Kafka topics at once.
+     * <p>
+     * Deletes all the topics in the datatable (one per row) with a single request to the cluster, and waits
+     * until none of them is listed in the cluster
+     *
+     * <pre>
+     * Example: Delete the topics 'orders' and 'invoices'
+     * {@code
+     *      When I delete the following kafka topics:
+     *          | orders   |
+     *          | invoices |
+     * }
+     * </pre>
+     *
+     * @see #deleteTopic(String)
+     * @see #createTopics(String, DataTable)
+     * @param table Name of the topics
+     */
+    @When("^I delete the following kafka topics:$")
+    public void deleteTopics(DataTable table) {
+        List<String> topics = table.asLists().stream().map(row -> row.get(0)).collect(Collectors.toList());
+        commonspec.getLogger().debug("Deleting topics " + topics);
+        commonspec.getKafkaUtils().deleteTopics(topics);
+    }
+
     /**
      * Increase partitions in kafka topic
      * <p>
@@ -149,9 +243,8 @@ public class KafkaGSpec extends BaseGSpec {
      * <p>
      * By default, this steps uses StringSerializer and StringDeserializer for
      * the key/value of the message, and default properties for the producer. This steps can also verify if a message
-     * with the corresponding key and value already exists in the topic before inserting. Remember that for a consumer to
-     * be able to read all the messages from a topic, it must use a new group.id (not used before in that topic). When reading
-     * from a kafka topic with a consumer, kafka will return the next message by offset not read for that group.
+     * with the corresponding key and value already exists in the topic before inserting. The topic is always read from
+     * the beginning, regardless of the offsets committed for the group.id of the consumer.
      *
      * <pre>
      * Example: For sending a simple message (only specifying value)
@@ -179,12 +272,9 @@ public class KafkaGSpec extends BaseGSpec {
     @When("^I send a message '(.+?)' to the kafka topic named '(.+?)'( with key '(.+?)')?( if not exists)?$")
     public void sendMessageToTopic(String message, String topic_name, String recordKey, String ifExists) throws Exception {
         if (ifExists != null) {
-            Map<Object, Object> result = commonspec.getKafkaUtils().readTopicFromBeginning(topic_name);
-            if (result.containsKey(recordKey)) {
-                if (!result.get(recordKey).toString().matches(message)) {
-                    commonspec.getKafkaUtils().sendAndConfirmMessage(message, recordKey, topic_name, 1);
-                }
-            } else {
+            boolean exists = commonspec.getKafkaUtils().topicContains(topic_name, record ->
+                    Objects.equals(record.key(), recordKey) && record.value() != null && record.value().toString().matches(message));
+            if (!exists) {
                 commonspec.getKafkaUtils().sendAndConfirmMessage(message, recordKey, topic_name, 1);
             }
         } else {
@@ -245,6 +335,443 @@ public class KafkaGSpec extends BaseGSpec {
 
     }
 
+    /**
+     * Sends several messages to a Kafka topic.
+     * <p>
+     * Publishes the given amount of messages built from a template. The placeholder {index} in the template (and
+     * in the key) is replaced by the number of the message (starting from 0). The messages are not confirmed one
+     * by one, instead, all of them are sent asynchronously and the step waits for all the acknowledgements at the
+     * end. The producer groups the messages according to its linger.ms and batch.size properties, that can be
+     * changed with {@link #configureProducerProperties(DataTable)}. The step reports the total time, the records
+     * per second and the number of failed records, and fails if any record was not acknowledged.
+     *
+     * <pre>
+     * Example: Send 1000 messages to the topic 'testqa'
+     * {@code
+     *      Given I send '1000' messages 'hello {index}' to the kafka topic named 'testqa'
+     * }
+     * Example: Send 1000 messages with key to the topic 'testqa', grouping them in batches of up to 64KB
+     * {@code
+     *      Given I configure the kafka producer with:
+     *          | linger.ms  | 20    |
+     *          | batch.size | 65536 |
+     *      And I send '1000' messages 'hello {index}' to the kafka topic named 'testqa' with key 'key{index}'
+     * }
+     * </pre>
+     *
+     * @see #sendMessagesFromFileToTopic(String, String)
+     * @see #sendMessagesFromTableToTopic(String, DataTable)
+     * @param count       Number of messages to send
+     * @param template    Template of the message
+     * @param topic_name  Name of the topic
+     * @param keyTemplate Template of the key of the message (optional)
+     * @throws InterruptedException InterruptedException
+     */
+    @When("^I send '(\\d+)' messages '(.+?)' to the kafka topic named '(.+?)'( with key '(.+?)')?$")
+    public void sendMessagesFromTemplateToTopic(int count, String template, String topic_name, String keyTemplate) throws InterruptedException {
+
+        List<String> messages = this.expandTemplate(template, count);
+        List<String> keys = (keyTemplate != null) ? this.expandTemplate(keyTemplate, count) : null;
+
+        this.sendMessages(messages, keys, topic_name);
+    }
+
+    /**
+     * Sends the messages in a file to a Kafka topic.
+     * <p>
+     * Each non empty line of the file is sent as the value of a message. As in
+     * {@link #sendMessagesFromTemplateToTopic(int, String, String, String)}, all messages are sent asynchronously
+     * and the step waits for all the acknowledgements at the end.
+     *
+     * <pre>
+     * Example: Send all lines in the file messages.txt to the topic 'testqa'
+     * {@code
+     *      Given I send the messages in 'files/messages.txt' to the kafka topic named 'testqa'
+     * }
+     * </pre>
+     *
+     * @see #sendMessagesFromTemplateToTopic(int, String, String, String)
+     * @see #sendMessagesFromTableToTopic(String, DataTable)
+     * @param file       Path of the file (relative to the resources folder)
+     * @param topic_name Name of the topic
+     * @throws Exception Exception
+     */
+    @When("^I send the messages in '(.+?)' to the kafka topic named '(.+?)'$")
+    public void sendMessagesFromFileToTopic(String file, String topic_name) throws Exception {
+
+        InputStream stream = getClass().getClassLoader().getResourceAsStream(file);
+        assertThat(stream).as("File does not exist: " + file).isNotNull();
+
+        List<String> messages;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            messages = reader.lines().filter(line -> !line.trim().isEmpty()).collect(Collectors.toList());
+        }
+
+        this.sendMessages(messages, null, topic_name);
+    }
+
+    /**
+     * Sends the messages in the datatable to a Kafka topic.
+     * <p>
+     * If the datatable has only one column, each row is the value of a message. If it has two columns, the first
+     * one is the key and the second one the value. As in {@link #sendMessagesFromTemplateToTopic(int, String, String, String)},
+     * all messages are sent asynchronously and the step waits for all the acknowledgements at the end.
+     *
+     * <pre>
+     * Example: Send three messages with key to the topic 'testqa'
+     * {@code
+     *      Given I send the following messages to the kafka topic named 'testqa':
+     *          | key1 | hello   |
+     *          | key2 | hola    |
+     *          | key3 | bonjour |
+     * }
+     * </pre>
+     *
+     * @see #sendMessagesFromTemplateToTopic(int, String, String, String)
+     * @see #sendMessagesFromFileToTopic(String, String)
+     * @param topic_name Name of the topic
+     * @param table      Messages to send (value, or key and value)
+     * @throws InterruptedException InterruptedException
+     */
+    @When("^I send the following messages to the kafka topic named '(.+?)':$")
+    public void sendMessagesFromTableToTopic(String topic_name, DataTable table) throws InterruptedException {
+
+        List<String> messages = new ArrayList<>();
+        List<String> keys = (table.width() > 1) ? new ArrayList<>() : null;
+
+        for (List<String> row : table.asLists()) {
+            if (keys != null) {
+                keys.add(row.get(0));
+                messages.add(row.get(1));
+            } else {
+                messages.add(row.get(0));
+            }
+        }
+
+        this.sendMessages(messages, keys, topic_name);
+    }
+
+    /**
+     * Streams the records of a file to a Kafka topic.
+     * <p>
+     * Unlike {@link #sendMessagesFromFileToTopic(String, String)}, the file is read record by record while the
+     * messages are sent, and reading pauses when too many messages are waiting for the acknowledgement of kafka
+     * (1000 by default, it can be changed with -DKAFKA_STREAM_MAX_IN_FLIGHT), so the memory used does not depend on
+     * the size of the file. The progress is logged every 5 seconds (-DKAFKA_STREAM_PROGRESS_INTERVAL) and the final
+     * throughput can be verified with {@link #assertLoadTestThroughput(int)}. The file can be a path in the file
+     * system or relative to the resources folder. Supported formats:
+     * <ul>
+     * <li>json: one json object per line. The value of the message is the line itself</li>
+     * <li>csv: the first row contains the name of the columns. The value of the message is a json object with the
+     * values of the row</li>
+     * <li>avro: one json object per line, converted to an avro record with the given schema</li>
+     * </ul>
+     * If a schema is given, json and csv records are also converted to avro records (the value serializer must be
+     * io.confluent.kafka.serializers.KafkaAvroSerializer). The key of every message can be taken from one of the
+     * fields of the record
+     *
+     * <pre>
+     * Example: Send all the orders in the file, using the field 'id' as key
+     * {@code
+     *      Given I stream the json records in '/data/orders.ndjson' to the kafka topic named 'orders' with key field 'id'
+     *      Then the kafka throughput is at least '10000' messages per second
+     * }
+     * Example: Send the rows of a csv file as avro records
+     * {@code
+     *      Given I stream the csv records in 'files/orders.csv' to the kafka topic named 'orders' using the avro schema in 'schemas/order.avsc'
+     * }
+     * </pre>
+     *
+     * @see #sendMessagesFromFileToTopic(String, String)
+     * @param format     Format of the file (json, csv or avro)
+     * @param file       Path of the file
+     * @param topic_name Name of the topic
+     * @param keyField   Field of the record used as key (optional)
+     * @param schemaFile File containing the avro schema of the records (optional)
+     * @throws Exception Exception
+     */
+    @When("^I stream the (json|csv|avro) records in '(.+?)' to the kafka topic named '(.+?)'( with key field '(.+?)')?( using the avro schema in '(.+?)')?$")
+    public void streamFileToTopic(String format, String file, String topic_name, String keyField, String schemaFile) throws Exception {
+
+        KafkaUtils kafkaUtils = commonspec.getKafkaUtils();
+        Schema schema = null;
+        if (schemaFile != null) {
+            schema = kafkaUtils.getAvroRecordBuilder().parseSchema(commonspec.retrieveData(schemaFile, "json"));
+        }
+
+        KafkaSendResult result;
+        try (Reader fileReader = this.openFile(file);
+             KafkaRecordFileReader records = new KafkaRecordFileReader(fileReader, format, keyField, schema, kafkaUtils.getAvroRecordBuilder())) {
+            result = kafkaUtils.streamRecords(topic_name, records, kafkaUtils.getStreamMaxInFlight(), BULK_SEND_TIMEOUT, kafkaUtils.getStreamProgressInterval());
+        }
+        commonspec.setKafkaLoadResult(result);
+
+        commonspec.getLogger().info("Streamed {} to topic {}: {}", file, topic_name, result);
+        assertThat(result.getFailed()).as("Some messages were not acknowledged by kafka: " + result).isEqualTo(0);
+    }
+
+    private Reader openFile(String file) throws IOException {
+        if (Files.isRegularFile(Paths.get(file))) {
+            return Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8);
+        }
+        InputStream stream = getClass().getClassLoader().getResourceAsStream(file);
+        assertThat(stream).as("File does not exist: " + file).isNotNull();
+        return new InputStreamReader(stream, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the given number of copies of the template, replacing {index} by the number of each copy
+     */
+    private List<String> expandTemplate(String template, int count) {
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(template.replace(INDEX_PLACEHOLDER, String.valueOf(i)));
+        }
+        return values;
+    }
+
+    private void sendMessages(List<String> messages, List<String> keys, String topic_name) throws InterruptedException {
+        KafkaSendResult result = commonspec.getKafkaUtils().sendMessages(messages, keys, topic_name, BULK_SEND_TIMEOUT);
+        commonspec.getLogger().info("Sent messages to topic {}: {}", topic_name, result);
+        assertThat(result.getFailed()).as("Some messages were not acknowledged by kafka: " + result).isEqualTo(0);
+    }
+
+    /**
+     * Produces a number of messages at a fixed rate
+     * <p>
+     * Sends the given number of messages to the topic at the specified rate (messages per second), recording
+     * the time kafka takes to acknowledge each one. At the end, the achieved throughput and the p50/p95/p99/max
+     * latencies are printed. The results can be verified with {@link #assertLoadTestLatency(String, int)} and
+     * {@link #assertLoadTestThroughput(int)}. As in {@link #sendMessagesFromTemplateToTopic(int, String, String, String)},
+     * the text {index} in the message or the key is replaced by the number of the message
+     *
+     * <pre>
+     * Example: Send 10000 messages at 500 messages per second and check the results
+     * {@code
+     *      Given I produce '10000' messages 'hello {index}' to the kafka topic named 'testqa' at '500' messages per second
+     *      Then the kafka p99 latency is lower than '50' milliseconds
+     *      And the kafka throughput is at least '450' messages per second
+     * }
+     * </pre>
+     *
+     * @see #produceMessagesAtRateDuring(String, String, int, int, String)
+     * @param count       Number of messages to send
+     * @param template    Template of the message
+     * @param topic_name  Name of the topic
+     * @param rate        Target rate in messages per second
+     * @param keyTemplate Template of the key of the message (optional)
+     * @throws InterruptedException InterruptedException
+     */
+    @When("^I produce '(\\d+)' messages '(.+?)' to the kafka topic named '(.+?)' at '(\\d+)' messages per second( with key '(.+?)')?$")
+    public void produceMessagesAtRate(int count, String template, String topic_name, int rate, String keyTemplate) throws InterruptedException {
+        this.produceAtRate(template, keyTemplate, topic_name, rate, count, 0);
+    }
+
+    /**
+     * Produces messages at a fixed rate during some time
+     * <p>
+     * Same as {@link #produceMessagesAtRate(int, String, String, int, String)}, but messages are sent during the
+     * given number of seconds instead of until a number of messages is sent
+     *
+     * <pre>
+     * Example: Send messages at 200 messages per second during 30 seconds
+     * {@code
+     *      Given I produce messages 'hello {index}' to the kafka topic named 'testqa' at '200' messages per second during '30' seconds
+     *      Then the kafka p95 latency is lower than '20' milliseconds
+     * }
+     * </pre>
+     *
+     * @see #produceMessagesAtRate(int, String, String, int, String)
+     * @param template    Template of the message
+     * @param topic_name  Name of the topic
+     * @param rate        Target rate in messages per second
+     * @param seconds     Duration of the test in seconds
+     * @param keyTemplate Template of the key of the message (optional)
+     * @throws InterruptedException InterruptedException
+     */
+    @When("^I produce messages '(.+?)' to the kafka topic named '(.+?)' at '(\\d+)' messages per second during '(\\d+)' seconds( with key '(.+?)')?$")
+    public void produceMessagesAtRateDuring(String template, String topic_name, int rate, int seconds, String keyTemplate) throws InterruptedException {
+        this.produceAtRate(template, keyTemplate, topic_name, rate, 0, TimeUnit.SECONDS.toMillis(seconds));
+    }
+
+    private void produceAtRate(String template, String keyTemplate, String topic_name, int rate, int count, long durationMs) throws InterruptedException {
+        IntFunction<String> messages = index -> template.replace(INDEX_PLACEHOLDER, String.valueOf(index));
+        IntFunction<String> keys = null;
+        if (keyTemplate != null) {
+            keys = index -> keyTemplate.replace(INDEX_PLACEHOLDER, String.valueOf(index));
+        }
+
+        KafkaSendResult result = commonspec.getKafkaUtils().produceAtRate(topic_name, messages, keys, rate, count, durationMs);
+        commonspec.setKafkaLoadResult(result);
+        commonspec.getLogger().info("Load test on topic {} (target {} messages/sec): {}", topic_name, rate, result);
+    }
+
+    /**
+     * Checks the acknowledgement latency of the last kafka load test
+     * <p>
+     * Fails if the given percentile (or the max) of the latencies measured by the last load test executed in the scenario
+     * is not lower than the given value
+     *
+     * <pre>
+     * Example:
+     * {@code
+     *      Given I produce '10000' messages 'hello {index}' to the kafka topic named 'testqa' at '500' messages per second
+     *      Then the kafka p99 latency is lower than '50' milliseconds
+     * }
+     * </pre>
+     *
+     * @see #produceMessagesAtRate(int, String, String, int, String)
+     * @see #assertLoadTestThroughput(int)
+     * @param percentile p50, p95, p99 or max
+     * @param millis     max latency in milliseconds
+     */
+    @Then("^the kafka (p50|p95|p99|max) latency is lower than '(\\d+)' milliseconds$")
+    public void assertLoadTestLatency(String percentile, int millis) {
+        KafkaSendResult result = commonspec.getKafkaLoadResult();
+        assertThat(result).as("No kafka load test was executed in this scenario").isNotNull();
+        double value = this.getLatencyMillis(result.getLatencies(), percentile);
+        assertThat(value).as("Kafka " + percentile + " latency was " + value + " ms: " + result).isLessThan(millis);
+    }
+
+    /**
+     * Checks the throughput of the last kafka load test
+     * <p>
+     * Fails if the number of messages per second acknowledged by kafka during the last load test executed in the
+     * scenario is lower than the given value. Failed messages do not count
+     *
+     * <pre>
+     * Example:
+     * {@code
+     *      Given I produce messages 'hello {index}' to the kafka topic named 'testqa' at '500' messages per second during '60' seconds
+     *      Then the kafka throughput is at least '450' messages per second
+     * }
+     * </pre>
+     *
+     * @see #produceMessagesAtRateDuring(String, String, int, int, String)
+     * @see #assertLoadTestLatency(String, int)
+     * @param rate minimum messages per second
+     */
+    @Then("^the kafka throughput is at least '(\\d+)' messages per second$")
+    public void assertLoadTestThroughput(int rate) {
+        KafkaSendResult result = commonspec.getKafkaLoadResult();
+        assertThat(result).as("No kafka load test was executed in this scenario").isNotNull();
+        assertThat(result.getRecordsPerSecond()).as("Kafka throughput was too low: " + result).isGreaterThanOrEqualTo(rate);
+    }
+
+    private double getLatencyMillis(LatencyHistogram latencies, String percentile) {
+        if ("max".equals(percentile)) {
+            return latencies.getMax() / 1000.0;
+        }
+        return latencies.getMillisAtPercentile(Double.parseDouble(percentile.substring(1)));
+    }
+
+    /**
+     * Sends tracked messages to the input topic of a pipeline
+     * <p>
+     * Sends the given number of messages to the topic, adding to each one the headers gingerspec-correlation-id
+     * (a random id) and gingerspec-send-timestamp (the time the message was sent, in milliseconds since epoch).
+     * If the services under test keep these headers in the records they produce, the messages can be found later in
+     * the output topic with {@link #assertTrackedMessagesFound(String, String)}, that also measures the end-to-end latency.
+     * As in {@link #sendMessagesFromTemplateToTopic(int, String, String, String)}, the text {index} in the message or
+     * the key is replaced by the number of the message
+     *
+     * <pre>
+     * Example: Measure the latency of a service that reads from 'orders' and writes to 'invoices'
+     * {@code
+     *      Given I send '100' tracked messages 'order {index}' to the kafka topic named 'orders'
+     *      Then the tracked messages are found in the kafka topic named 'invoices'
+     *      And the kafka end-to-end p95 latency is lower than '200' milliseconds
+     * }
+     * </pre>
+     *
+     * @see #assertTrackedMessagesFound(String, String)
+     * @see #assertPipelineLatency(String, int)
+     * @param count       Number of messages to send
+     * @param template    Template of the message
+     * @param topic_name  Name of the input topic
+     * @param keyTemplate Template of the key of the message (optional)
+     * @throws InterruptedException InterruptedException
+     */
+    @When("^I send '(\\d+)' tracked messages '(.+?)' to the kafka topic named '(.+?)'( with key '(.+?)')?$")
+    public void sendTrackedMessages(int count, String template, String topic_name, String keyTemplate) throws InterruptedException {
+
+        List<String> messages = this.expandTemplate(template, count);
+        List<String> keys = (keyTemplate != null) ? this.expandTemplate(keyTemplate, count) : null;
+
+        Map<String, Long> trackedMessages = new HashMap<>();
+        commonspec.setKafkaTrackedMessages(trackedMessages);
+        KafkaSendResult result = commonspec.getKafkaUtils().sendTaggedMessages(messages, keys, topic_name, BULK_SEND_TIMEOUT, trackedMessages);
+        commonspec.getLogger().info("Sent tracked messages to topic {}: {}", topic_name, result);
+        assertThat(result.getFailed()).as("Some messages were not acknowledged by kafka: " + result).isEqualTo(0);
+    }
+
+    /**
+     * Checks that the tracked messages reached the output topic of a pipeline
+     * <p>
+     * Reads the topic looking for the records with the correlation ids of the messages sent with
+     * {@link #sendTrackedMessages(int, String, String, String)}, until all of them are found or the read timeout
+     * expires (-DKAFKA_READ_TIMEOUT, 30000 ms by default). The step prints the latency percentiles and fails if any
+     * message was not found, listing the missing correlation ids.
+     * <p>
+     * By default, the end-to-end latency of each record is the time from the send of the original message until the
+     * record is consumed from the output topic, so this step should run right after the messages are sent. With
+     * 'using the record timestamp', the timestamp of the record in the output topic is used instead. Use it only if
+     * the pipeline writes a new timestamp: Kafka Streams and mirroring services copy the timestamp of the input
+     * record, so their latency would be reported as 0 (a warning is logged in that case)
+     *
+     * <pre>
+     * Example:
+     * {@code
+     *      Given I send '100' tracked messages 'order {index}' to the kafka topic named 'orders'
+     *      Then the tracked messages are found in the kafka topic named 'invoices'
+     * }
+     * Example: Using the timestamp of the output records (i.e. a LogAppendTime topic)
+     * {@code
+     *      Then the tracked messages are found in the kafka topic named 'invoices' using the record timestamp
+     * }
+     * </pre>
+     *
+     * @see #sendTrackedMessages(int, String, String, String)
+     * @see #assertPipelineLatency(String, int)
+     * @param topic_name      Name of the output topic
+     * @param recordTimestamp String for matching optional text in Gherkin
+     */
+    @Then("^the tracked messages are found in the kafka topic named '(.+?)'( using the record timestamp)?$")
+    public void assertTrackedMessagesFound(String topic_name, String recordTimestamp) {
+        Map<String, Long> trackedMessages = commonspec.getKafkaTrackedMessages();
+        assertThat(trackedMessages).as("No tracked messages were sent in this scenario").isNotNull();
+        PipelineLatencyResult result = commonspec.getKafkaUtils().measurePipelineLatency(topic_name, trackedMessages, recordTimestamp != null);
+        commonspec.setKafkaPipelineResult(result);
+        commonspec.getLogger().info("Tracked messages in topic {}: {}", topic_name, result);
+        assertThat(result.getUnmatched()).as("Some tracked messages were not found in topic " + topic_name + ": " + result).isEmpty();
+    }
+
+    /**
+     * Checks the end-to-end latency of the tracked messages
+     * <p>
+     * Fails if the given percentile (or the max) of the end-to-end latencies measured by
+     * {@link #assertTrackedMessagesFound(String, String)} is not lower than the given value
+     *
+     * <pre>
+     * Example:
+     * {@code
+     *      Then the tracked messages are found in the kafka topic named 'invoices'
+     *      And the kafka end-to-end p99 latency is lower than '500' milliseconds
+     * }
+     * </pre>
+     *
+     * @see #assertTrackedMessagesFound(String, String)
+     * @param percentile p50, p95, p99 or max
+     * @param millis     max latency in milliseconds
+     */
+    @Then("^the kafka end-to-end (p50|p95|p99|max) latency is lower than '(\\d+)' milliseconds$")
+    public void assertPipelineLatency(String percentile, int millis) {
+        PipelineLatencyResult result = commonspec.getKafkaPipelineResult();
+        assertThat(result).as("The tracked messages were not searched in this scenario").isNotNull();
+        double value = this.getLatencyMillis(result.getLatencies(), percentile);
+        assertThat(value).as("Kafka end-to-end " + percentile + " latency was " + value + " ms: " + result).isLessThan(millis);
+    }
+
     /**
      * Check that a kafka topic does not exist
      * <pre>
@@ -264,7 +791,8 @@ public class KafkaGSpec extends BaseGSpec {
      */
     @Then("^A kafka topic named '(.+?)' does not exist")
     public void assertTopicDoesntExist(String topic_name) throws KeeperException, InterruptedException {
-        assert !commonspec.getKafkaUtils().getZkUtils().pathExists("/" + topic_name) : "There is a topic with that name";
+        List<String> topics = this.commonspec.getKafkaUtils().listTopics();
+        assertThat(topics.contains(topic_name)).as("There is a topic with that name").isFalse();
     }
 
     /**
@@ -286,7 +814,9 @@ public class KafkaGSpec extends BaseGSpec {
      * <p>
      * Pools the given topic for messages and checks if any have the given value. By default, this method
      * uses String Serializer/Deserializer to read the messages from the topic (as well as all the default properties for
-     * the consumer).
+     * the consumer). The topic is read from the beginning and the step returns as soon as a matching message is found
+     * or all partitions are read up to their current end offset. The maximum time to read the topic can be set with
+     * -DKAFKA_READ_TIMEOUT (in milliseconds, 30000 by default).
      * <p>
      * Unless specified, the method will only look for records that contain the specific message in the value of the kafka
      * record but it can also be used.
@@ -312,11 +842,13 @@ public class KafkaGSpec extends BaseGSpec {
      */
     @Then("^The kafka topic '(.*?)' has a message containing '(.*?)'( as key)?$")
     public void assertTopicContainsMessage(String topic, String content, String key) throws InterruptedException {
+        boolean found;
         if (key != null) {
-            assertThat(commonspec.getKafkaUtils().readTopicFromBeginning(topic).containsKey(content)).as("Topic does not exist or the content does not match").isTrue();
+            found = !commonspec.getKafkaUtils().getRecordsWithKey(topic, content).isEmpty();
         } else {
-            assertThat(commonspec.getKafkaUtils().readTopicFromBeginning(topic).containsValue(content)).as("Topic does not exist or the content does not match").isTrue();
+            found = commonspec.getKafkaUtils().topicContains(topic, record -> content.equals(record.value()));
         }
+        assertThat(found).as("Topic does not exist or the content does not match").isTrue();
     }
 
     /**
@@ -458,13 +990,15 @@ public class KafkaGSpec extends BaseGSpec {
             commonspec.getKafkaUtils().modifyConsumerProperties(key, value);
         }
 
-        Map<Object, Object> results = commonspec.getKafkaUtils().readTopicFromBeginning(topicName);
-
+        boolean found;
         if (isKey != null) {
-            assertThat(results.containsKey(this.getFinalMessage("key.deserializer", message))).as("Topic does not exist or the content does not match").isTrue();
+            Object expectedKey = this.getFinalMessage("key.deserializer", message);
+            found = commonspec.getKafkaUtils().topicContains(topicName, record -> expectedKey.equals(record.key()));
         } else {
-            assertThat(results.containsValue(this.getFinalMessage("value.deserializer", message))).as("Topic does not exist or the content does not match").isTrue();
+            Object expectedValue = this.getFinalMessage("value.deserializer", message);
+            found = commonspec.getKafkaUtils().topicContains(topicName, record -> expectedValue.equals(record.value()));
         }
+        assertThat(found).as("Topic does not exist or the content does not match").isTrue();
 
     }
 
@@ -656,9 +1190,9 @@ public class KafkaGSpec extends BaseGSpec {
 
 
         this.assertTopicExists(topicName);
-        Map<Object, Object> results = commonspec.getKafkaUtils().readTopicFromBeginning(topicName);
-        this.commonspec.getLogger().debug("Found " + results.size() + "records in topic " + topicName);
-        assertThat(results.containsValue(commonspec.getKafkaUtils().getAvroRecords().get(avroRecord))).as("Topic does not contain message that matches the specified record").isTrue();
+        GenericRecord expectedRecord = commonspec.getKafkaUtils().getAvroRecords().get(avroRecord);
+        boolean found = commonspec.getKafkaUtils().topicContains(topicName, record -> Objects.equals(expectedRecord, record.value()));
+        assertThat(found).as("Topic does not contain message that matches the specified record").isTrue();
 
     }
 
@@ -693,10 +1227,78 @@ public class KafkaGSpec extends BaseGSpec {
     }
 
 
+    /**
+     * Read kafka topics using several consumers in parallel
+     * <p>
+     * All future reads of a topic (i.e. the steps that check if a topic contains a message) will distribute the
+     * partitions of the topic among the given number of consumers, that read them concurrently. This reduces the time
+     * needed to check big topics with many partitions. The same can be achieved for all scenarios with the VM argument
+     * -DKAFKA_READ_THREADS. Use '1' to read all partitions with a single consumer (default). Reading with a single consumer
+     * keeps the records of the topic in memory during the scenario, so the next checks only fetch the new records; with several
+     * consumers, the topic is read from the beginning every time.
+     *
+     * <pre>
+     * Example: Read the partitions of the topics using up to 8 consumers
+     * {@code
+     *      Given I read kafka topics using '8' consumers in parallel
+     *      Then The kafka topic 'bigTopic' has a message containing 'hello'
+     * }
+     * </pre>
+     *
+     * @see #assertTopicContainsMessage(String, String, String)
+     * @param consumers Maximum number of consumers
+     */
+    @Given("^I read kafka topics using '(\\d+)' consumers in parallel$")
+    public void setParallelConsumers(int consumers) {
+        this.getCommonSpec().getLogger().debug("Reading kafka topics with up to " + consumers + " consumers");
+        commonspec.getKafkaUtils().setReadThreads(consumers);
+    }
+
+    /**
+     * Takes a snapshot of a kafka topic
+     * <p>
+     * Reads all the records of the topic once and stores them in local files (under target/kafka-snapshots, it
+     * can be changed with -DKAFKA_SNAPSHOT_DIR). From then on, all the steps that check the content of the topic read
+     * the local copy instead of kafka, also in the following scenarios, until the snapshot is discarded or the suite
+     * ends. Useful when the same big topic is checked by many scenarios. New records sent to the topic after the
+     * snapshot is taken are not seen by the checks
+     *
+     * <pre>
+     * Example:
+     * {@code
+     *      Given I take a snapshot of the kafka topic 'outputTopic'
+     *      Then The kafka topic 'outputTopic' has a message containing 'hello'
+     *      And The kafka topic 'outputTopic' has at least '10' an avro message with:
+     *          | user.country | equal | ES |
+     * }
+     * </pre>
+     *
+     * @see #discardTopicSnapshot(String)
+     * @param topic_name Name of the topic
+     * @throws Exception Exception
+     */
+    @Given("^I take a snapshot of the kafka topic '(.+?)'$")
+    public void takeTopicSnapshot(String topic_name) throws Exception {
+        TopicSnapshot snapshot = commonspec.getKafkaUtils().snapshotTopic(topic_name);
+        commonspec.getLogger().info("Snapshot of topic {} taken with {} records", topic_name, snapshot.getRecordCount());
+    }
+
+    /**
+     * Discards the snapshot of a kafka topic, so the next checks read the topic from kafka again
+     *
+     * @see #takeTopicSnapshot(String)
+     * @param topic_name Name of the topic
+     */
+    @Then("^I discard the snapshot of the kafka topic '(.+?)'$")
+    public void discardTopicSnapshot(String topic_name) {
+        commonspec.getKafkaUtils().discardSnapshot(topic_name);
+    }
+
     /**
      * Modify producer properties
      * <p>
-     * A single step for modifying the producer properties for the rest of the scenario.
+     * A single step for modifying the producer properties for the rest of the scenario. If any property
+     * changes, the producer shared by the send steps is closed and re-created with the new properties
      *
      * <pre>
      * Example: To change producer properties settings:
@@ -725,7 +1327,8 @@ public class KafkaGSpec extends BaseGSpec {
     }
 
     /**
-     * Close the connection to kafka.
+     * Close the connection to kafka. This also closes the producer that is shared by all the send steps
+     * and the admin client used for topic operations
      *
      * <pre>
      * Example:
@@ -744,6 +1347,9 @@ public class KafkaGSpec extends BaseGSpec {
         if (this.getCommonSpec().getKafkaUtils().getZkUtils() != null) {
             this.getCommonSpec().getKafkaUtils().getZkUtils().close();
         }
+        this.getCommonSpec().getKafkaUtils().closeProducer();
+        this.getCommonSpec().getKafkaUtils().closeAdminClient();
+        this.getCommonSpec().getKafkaUtils().clearTopicTails();
 
     }
 
@@ -773,40 +1379,83 @@ public class KafkaGSpec extends BaseGSpec {
         commonspec.getKafkaUtils().modifyConsumerProperties("schema.registry.url", this.getCommonSpec().getKafkaUtils().getSchemaRegistryUrl());
         this.assertTopicExists(topicName);
 
-        Map<Object, Object> results = commonspec.getKafkaUtils().readTopicFromBeginning(topicName);
+        AvroRecordMatcher matcher = new AvroRecordMatcher(datatable.asLists(), this::evaluateCondition, this::readJsonPath);
+        AtomicInteger matches = new AtomicInteger(0);
 
-        int matches = results.size();
-        for (Object result: results.values()) {
+        commonspec.getKafkaUtils().scanTopic(topicName, record -> {
+            if (record.value() instanceof GenericRecord && matcher.matches((GenericRecord) record.value())) {
+                matches.incrementAndGet();
+            }
+            return atLeast != null && matches.get() >= expectedCount;
+        });
 
-            if (result instanceof GenericRecord) {
-                GenericRecord avroMessage = (GenericRecord) result;
+        this.getCommonSpec().getLogger().debug("Found " + matches.get() + " records in topic " + topicName + " that match the specified conditions");
+
+        if (atLeast != null) {
+            assertThat(matches.get()).as("No matches found").isGreaterThanOrEqualTo(expectedCount);
+        } else {
+            assertThat(matches.get()).as("No matches found").isEqualTo(expectedCount);
+        }
+
+    }
 
-                String jsonString = avroMessage.toString();
+    /**
+     * Looks for all the expected avro records in the topic, reading the topic only once. The first row of the
+     * datatable contains the json path expressions of the fields to check, and every other row the expected values
+     * of those fields for one of the records. Reading stops as soon as all the records are found
+     *
+     * <pre>
+     * Example:
+     * {@code
+     *      Then The kafka topic 'avroTopic' has the following avro messages:
+     *          | user.id | user.name |
+     *          | 1       | Paul      |
+     *          | 2       | John      |
+     * }
+     * </pre>
+     *
+     * @see #assertTopicContainsPartialAvroMessageWithProperties(String, String, int, DataTable)
+     * @param topicName     Name of the topic to read messages from
+     * @param datatable     Json path expressions and expected values of each record
+     * @throws Throwable    the throwable
+     */
+    @Then("^The kafka topic '(.+?)' has the following avro messages:$")
+    public void assertTopicContainsAvroMessages(String topicName, DataTable datatable) throws Throwable {
 
-                for (List<String> row : datatable.asLists()) {
-                    String expression = row.get(0);
-                    String condition = row.get(1);
-                    String expectedResult = row.get(2);
+        commonspec.getKafkaUtils().modifyConsumerProperties("value.deserializer", "io.confluent.kafka.serializers.KafkaAvroDeserializer");
+        assertThat(this.getCommonSpec().getKafkaUtils().getSchemaRegistryUrl()).as("Could not build avro consumer since no schema registry was defined").isNotNull();
+        commonspec.getKafkaUtils().modifyConsumerProperties("schema.registry.url", this.getCommonSpec().getKafkaUtils().getSchemaRegistryUrl());
+        this.assertTopicExists(topicName);
 
-                    String value = commonspec.getJSONPathString(jsonString, expression, null);
-                    try {
-                        commonspec.evaluateJSONElementOperation(value, condition, expectedResult);
-                    } catch (AssertionError e) {
-                        matches--;
-                        break;
-                    }
+        List<List<String>> rows = datatable.asLists();
+        assertThat(rows.size()).as("The datatable must contain a row with the json path expressions and at least one row of expected values").isGreaterThan(1);
+        AvroExpectationSet expectations = new AvroExpectationSet(rows.get(0), rows.subList(1, rows.size()), this::readJsonPath);
+        this.getCommonSpec().getLogger().debug("Looking for " + (rows.size() - 1) + " records in topic " + topicName + " indexed by " + expectations.getIndexExpression());
 
-                }
-            }
-        }
+        commonspec.getKafkaUtils().scanTopic(topicName, record -> record.value() instanceof GenericRecord && expectations.visit((GenericRecord) record.value()));
 
-        this.getCommonSpec().getLogger().debug("Found " + matches + "records in topic " + topicName + " that match the specified conditions");
+        List<List<String>> unmatched = expectations.getUnmatched();
+        assertThat(unmatched).as("Records with " + rows.get(0) + " not found in topic " + topicName + ": " + unmatched).isEmpty();
+    }
 
-        if (atLeast != null) {
-            assertThat(matches).as("No matches found").isGreaterThanOrEqualTo(expectedCount);
-        } else {
-            assertThat(matches).as("No matches found").isEqualTo(expectedCount);
+    /**
+     * Evaluates the operation over the value
+     *
+     * @param value     Value read from the record
+     * @param operation Operation (equal, not equal, contains...)
+     * @param expected  Expected result
+     * @return true if the condition is met
+     */
+    private boolean evaluateCondition(String value, String operation, String expected) {
+        try {
+            commonspec.evaluateJSONElementOperation(value, operation, expected);
+        } catch (AssertionError e) {
+            return false;
         }
+        return true;
+    }
 
+    private String readJsonPath(String jsonString, String expression) {
+        return commonspec.getJSONPathString(jsonString, expression, null);
     }
-}
\ No newline at end of file
+}
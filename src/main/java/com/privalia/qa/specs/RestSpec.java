@@ -16,7 +16,21 @@
 
 package com.privalia.qa.specs;
 
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.github.fge.jsonschema.core.report.ProcessingReport;
+import com.github.fge.jsonschema.main.JsonSchema;
 import com.jayway.jsonpath.PathNotFoundException;
+import com.ning.http.client.Request;
+import com.ning.http.client.RequestBuilder;
+import com.privalia.qa.utils.HttpResponse;
+import com.privalia.qa.utils.JsonStreamEvaluator;
+import com.privalia.qa.utils.ParallelRequests;
+import com.privalia.qa.utils.Poller;
+import com.privalia.qa.utils.RestClientUtil;
+import com.privalia.qa.utils.RestClientUtils;
+import com.privalia.qa.utils.RestLoadResult;
+import com.privalia.qa.utils.RestRequestTiming;
+import com.privalia.qa.utils.RestResponseBody;
 import com.privalia.qa.utils.ThreadProperty;
 import io.cucumber.docstring.DocString;
 import io.cucumber.java.en.And;
@@ -25,26 +39,39 @@ import io.cucumber.java.en.Then;
 import io.cucumber.java.en.When;
 import io.cucumber.datatable.DataTable;
 import io.restassured.builder.RequestSpecBuilder;
+import io.restassured.config.RestAssuredConfig;
 import io.restassured.http.ContentType;
-import io.restassured.response.ResponseBody;
+import io.restassured.response.Response;
+import io.restassured.http.Cookie;
+import io.restassured.http.Header;
 import io.restassured.specification.ProxySpecification;
+import io.restassured.specification.QueryableRequestSpecification;
 import io.restassured.specification.RequestSpecification;
+import io.restassured.specification.SpecificationQuerier;
 import org.assertj.core.api.Assertions;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
 import java.lang.reflect.InvocationTargetException;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static io.restassured.RestAssured.given;
-import static io.restassured.module.jsv.JsonSchemaValidator.matchesJsonSchema;
 import static io.restassured.specification.ProxySpecification.auth;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
@@ -57,6 +84,8 @@ import static org.assertj.core.api.Assertions.fail;
  */
 public class RestSpec extends BaseGSpec {
 
+    private static final int LOAD_TEST_TIMEOUT = 60000;
+
     public RestSpec(CommonG spec) {
         this.commonspec = spec;
     }
@@ -154,11 +183,19 @@ public class RestSpec extends BaseGSpec {
      * @param table         Data table in which each row stores one expression
      */
     @Then("^'(.*)' matches the following cases:$")
-    public void matchWithExpresion(String envVar, DataTable table) {
+    public void matchWithExpresion(String envVar, DataTable table) throws IOException {
         String jsonString = ThreadProperty.get(envVar);
 
         Assertions.assertThat(jsonString).as("The variable '" + envVar + "' was not set correctly previously").isNotNull();
 
+        if (this.isJsonStreaming() && this.isStreamingSupported(table.asLists())) {
+            JsonStreamEvaluator evaluator = this.streamEvaluator(table.asLists());
+            evaluator.evaluate(new StringReader(jsonString));
+            this.evaluateStreamedCases(evaluator, table.asLists());
+            return;
+        }
+
+        RestResponseBody json = new RestResponseBody(jsonString);
         for (List<String> row : table.asLists()) {
             String expression = row.get(0);
             String condition = row.get(1);
@@ -168,11 +205,107 @@ public class RestSpec extends BaseGSpec {
             //but requires more testing for every possible corner case
             //Object value = new JsonPath(jsonString).get(expression.replace("$.", ""));
 
-            String value = commonspec.getJSONPathString(jsonString, expression, null);
+            String value = commonspec.getJSONPathString(json, expression, null);
             commonspec.evaluateJSONElementOperation(value, condition, result);
         }
     }
 
+    /**
+     * Verifies the body of the last response against a set of test cases defined in a datatable, in streaming mode
+     * <p>
+     * Works in the same way as {@link #matchWithExpresion(String, DataTable)}, but the cases are evaluated directly
+     * over the body of the response, in a single pass that only keeps in memory the elements selected in the
+     * datatable. For the 'size' operation, the elements of the array are just counted. This allows to verify very
+     * large responses (i.e. exports of hundreds of MB) without saving the whole body in a variable and without
+     * parsing it again for every case. Only json paths made of names and indexes are supported (such as
+     * $.items[0].id), not wildcards, filters or functions
+     * <pre>{@code
+     * Example:
+     *
+     * Scenario: Verifying a very large response
+     *      Given I securely send requests to 'jsonplaceholder.typicode.com:443'
+     *      When I send a 'GET' request to '/photos'
+     *      Then the service response matches the following cases:
+     *       | $                 | size   | 5000 |
+     *       | $.[0].albumId     | equal  | 1    |
+     *       | $.[4999].title    | exists |      |
+     * }</pre>
+     * @see #matchWithExpresion(String, DataTable)
+     * @param table         Data table in which each row stores one expression
+     * @throws IOException  if the body of the response is not valid json
+     */
+    @Then("^the service response matches the following cases:$")
+    public void matchResponseWithExpresion(DataTable table) throws IOException {
+        Assertions.assertThat(commonspec.getRestResponse()).as("No REST request was executed previously").isNotNull();
+
+        JsonStreamEvaluator evaluator = this.streamEvaluator(table.asLists());
+        try (InputStream body = new ByteArrayInputStream(commonspec.getRestResponseBody().asBytes())) {
+            evaluator.evaluate(body);
+        }
+        this.evaluateStreamedCases(evaluator, table.asLists());
+    }
+
+    private boolean isJsonStreaming() {
+        return Boolean.valueOf(System.getProperty("REST_JSON_STREAMING", "false"));
+    }
+
+    private boolean isStreamingSupported(List<List<String>> cases) {
+        for (List<String> row : cases) {
+            if (!JsonStreamEvaluator.isSupported(row.get(0))) {
+                this.getCommonSpec().getLogger().debug("Expression '{}' not supported in streaming mode, parsing the whole document", row.get(0));
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private JsonStreamEvaluator streamEvaluator(List<List<String>> cases) {
+        JsonStreamEvaluator evaluator = new JsonStreamEvaluator();
+        for (List<String> row : cases) {
+            switch (row.get(1)) {
+                case "size":
+                    evaluator.addSize(row.get(0));
+                    break;
+                case "exists":
+                case "does not exists":
+                    evaluator.addPath(row.get(0));
+                    break;
+                default:
+                    evaluator.addValue(row.get(0));
+                    break;
+            }
+        }
+        return evaluator;
+    }
+
+    private void evaluateStreamedCases(JsonStreamEvaluator evaluator, List<List<String>> cases) {
+        for (List<String> row : cases) {
+            String expression = row.get(0);
+            String condition = row.get(1);
+            String result = row.get(2);
+
+            switch (condition) {
+                case "exists":
+                    Assertions.assertThat(evaluator.isFound(expression)).as("The given path was not found: " + expression).isTrue();
+                    break;
+                case "does not exists":
+                    Assertions.assertThat(evaluator.isFound(expression)).as("The given path was found: " + expression).isFalse();
+                    break;
+                case "size":
+                    Assertions.assertThat(evaluator.isFound(expression)).as("The given path was not found: " + expression).isTrue();
+                    if (evaluator.getSize(expression) == null) {
+                        Assertions.fail("Expected array for size operation check");
+                    }
+                    Assertions.assertThat(evaluator.getSize(expression)).as("Keys size does not match").isEqualTo(Integer.parseInt(result));
+                    break;
+                default:
+                    Assertions.assertThat(evaluator.isFound(expression)).as("The given path was not found: " + expression).isTrue();
+                    commonspec.evaluateJSONElementOperation(evaluator.getValue(expression), condition, result);
+                    break;
+            }
+        }
+    }
+
     /**
      * Generates a REST request of the type specified to the indicated endpoint
      * <p>
@@ -324,9 +457,11 @@ public class RestSpec extends BaseGSpec {
      * @see <a href="http://json-schema.org/">http://json-schema.org/</a>
      * @param expectedStatus        Expected HTTP status code
      * @param responseAssert        Expression to determine if assert length, text or schema
+     * @throws IOException          if the schema file does not exist
+     * @throws ProcessingException  if the file does not contain a valid json schema
      */
     @Deprecated
-    public void assertResponseStatusLength(Integer expectedStatus, String responseAssert) {
+    public void assertResponseStatusLength(Integer expectedStatus, String responseAssert) throws IOException, ProcessingException {
 
         commonspec.getRestResponse().then().statusCode(expectedStatus);
 
@@ -342,12 +477,11 @@ public class RestSpec extends BaseGSpec {
         }
 
         if (responseAssert.contains("schema")) {
-            String schemaData = commonspec.retrieveData(parts[1], "json");
-            commonspec.getRestResponse().then().assertThat().body(matchesJsonSchema(schemaData));
+            assertResponseSchema(parts[1]);
         }
 
         if (responseAssert.contains("length")) {
-            Assertions.assertThat(commonspec.getRestResponse().getBody().asString().length()).as("The returned body does not have the expected length").isEqualTo(Integer.valueOf(parts[1]));
+            Assertions.assertThat(commonspec.getRestResponseBody().getLength()).as("The returned body does not have the expected length").isEqualTo(Integer.valueOf(parts[1]));
         }
 
     }
@@ -369,11 +503,14 @@ public class RestSpec extends BaseGSpec {
      * @see #sendRequestDataTable(String, String, String, String, String, DataTable)
      * @see <a href="http://json-schema.org/">http://json-schema.org/</a>
      * @param expectedSchema        File under /resources directory that contains the expected schema
+     * @throws IOException          if the schema file does not exist
+     * @throws ProcessingException  if the file does not contain a valid json schema
      */
     @Then("^the service response matches the schema in '(.*?)'$")
-    public void assertResponseSchema(String expectedSchema) {
-        String schemaData = commonspec.retrieveData(expectedSchema, "json");
-        commonspec.getRestResponse().then().assertThat().body(matchesJsonSchema(schemaData));
+    public void assertResponseSchema(String expectedSchema) throws IOException, ProcessingException {
+        JsonSchema schema = RestClientUtil.INSTANCE.getRestClientUtils().getSchemaCache().get(expectedSchema);
+        ProcessingReport report = schema.validate(commonspec.getRestResponseBody().getTree());
+        Assertions.assertThat(report.isSuccess()).as("The response body does not match the schema in '" + expectedSchema + "': " + report).isTrue();
     }
 
     /**
@@ -396,7 +533,7 @@ public class RestSpec extends BaseGSpec {
      */
     @Then("^the service response length must be '(.*?)'$")
     public void assertResponseLength(Integer expextedLength) {
-        Assertions.assertThat(commonspec.getRestResponse().getBody().asString().length()).as("The returned body does not have the expected length").isEqualTo(expextedLength);
+        Assertions.assertThat(commonspec.getRestResponseBody().getLength()).as("The returned body does not have the expected length").isEqualTo(expextedLength);
     }
 
     /**
@@ -443,11 +580,70 @@ public class RestSpec extends BaseGSpec {
      */
     @Then("^the service response must contain the text '(.*)'$")
     public void assertResponseMessage(String expectedText) {
-        ResponseBody body = commonspec.getRestResponse().getBody();
-        String bodyAsString = body.asString();
+        String bodyAsString = commonspec.getRestResponseBody().asString();
         Assertions.assertThat(bodyAsString).as("Text '" + expectedText + "' was not found in response body").contains(expectedText);
     }
 
+    /**
+     * Verifies the response time of the last rest request.
+     * <p>
+     * The total time includes opening the connection (if a pooled connection could not be reused), sending the
+     * request and receiving the whole response. The time to first byte is the time until the headers of the
+     * response were received (the step fails if it could not be measured). The timing of every request of the
+     * scenario is also attached to the report
+     * <pre>{@code
+     * Example:
+     *
+     * Scenario: Verify the response time
+     *      Given I securely send requests to 'jsonplaceholder.typicode.com:443'
+     *      When I send a 'GET' request to '/posts'
+     *      Then the service response time must be less than '500' ms
+     *      And the service response time to first byte must be less than '300' ms
+     * }</pre>
+     * @see #sendRequestNoDataTable(String, String, String, String, String)
+     * @see #assertAverageResponseTime(int, int)
+     * @param firstByte     If specified, the time to first byte is checked instead of the total time
+     * @param maxMillis     Max response time in milliseconds
+     */
+    @Then("^the service response time( to first byte)? must be less than '(\\d+)' ms$")
+    public void assertResponseTime(String firstByte, int maxMillis) {
+        RestRequestTiming timing = commonspec.getLastRestTiming();
+        Assertions.assertThat(timing).as("No request was sent in this scenario").isNotNull();
+        if (firstByte != null) {
+            Assertions.assertThat(timing.getTimeToFirstByteMillis()).as("The time to first byte was not captured for the last request: " + timing).isGreaterThanOrEqualTo(0);
+        }
+        double value = (firstByte == null) ? timing.getTotalMillis() : timing.getTimeToFirstByteMillis();
+        Assertions.assertThat(value).as("The response was too slow: " + timing).isLessThan(maxMillis);
+    }
+
+    /**
+     * Verifies the average response time of the last rest requests of the scenario.
+     * <p>
+     * Up to the last 100 requests of the scenario are kept. If less requests were sent, the average of all of them
+     * is checked
+     * <pre>{@code
+     * Example:
+     *
+     * Scenario: Verify the average response time
+     *      Given I securely send requests to 'jsonplaceholder.typicode.com:443'
+     *      When I send a 'GET' request to '/posts/1'
+     *      And I send a 'GET' request to '/posts/2'
+     *      And I send a 'GET' request to '/posts/3'
+     *      Then the average response time of the last '3' requests is lower than '400' ms
+     * }</pre>
+     * @see #assertResponseTime(String, int)
+     * @param count         Number of requests
+     * @param maxMillis     Max average response time in milliseconds
+     */
+    @Then("^the average response time of the last '(\\d+)' requests is lower than '(\\d+)' ms$")
+    public void assertAverageResponseTime(int count, int maxMillis) {
+        List<RestRequestTiming> timings = commonspec.getRestTimings();
+        Assertions.assertThat(timings).as("No request was sent in this scenario").isNotEmpty();
+        List<RestRequestTiming> last = timings.subList(Math.max(0, timings.size() - count), timings.size());
+        double average = last.stream().mapToDouble(RestRequestTiming::getTotalMillis).average().orElse(0);
+        Assertions.assertThat(average).as("The average response time of the last " + last.size() + " requests was " + average + " ms: " + last).isLessThan(maxMillis);
+    }
+
 
     /**
      * Saves value of a json document for future use.
@@ -500,18 +696,36 @@ public class RestSpec extends BaseGSpec {
         if (matcher.find()) {
             json = matcher.group(2);
             parsedElement = matcher.group(4);
+        } else if (position == null && this.isJsonStreaming() && JsonStreamEvaluator.isSupported(element)) {
+            JsonStreamEvaluator evaluator = new JsonStreamEvaluator().addValue(element);
+            try (InputStream body = new ByteArrayInputStream(commonspec.getRestResponseBody().asBytes())) {
+                evaluator.evaluate(body);
+            } catch (IOException e) {
+                Assertions.fail("The body of the response is not a valid json: " + e.getMessage());
+            }
+            Assertions.assertThat(evaluator.isFound(element)).as("The given path was not found: " + element).isTrue();
+            this.saveElement(element, evaluator.getValue(element), envVar);
+            return;
         } else {
-            json = commonspec.getRestResponse().getBody().asString();
+            json = null;
             parsedElement = element;
         }
 
         String value = "";
         try {
-            value = commonspec.getJSONPathString(json, parsedElement, position);
+            if (json != null) {
+                value = commonspec.getJSONPathString(json, parsedElement, position);
+            } else {
+                value = commonspec.getJSONPathString(commonspec.getRestResponseBody(), parsedElement, position);
+            }
         } catch (PathNotFoundException pe) {
             Assertions.fail("The given path was not found: " + pe.getMessage());
         }
 
+        this.saveElement(element, value, envVar);
+    }
+
+    private void saveElement(String element, String value, String envVar) {
         Assertions.assertThat(value).as("json result is empty").isNotEmpty();
         this.getCommonSpec().getLogger().debug("Element {} found. Equal to {}. Saving in variable '{}'", element, value, envVar);
         ThreadProperty.set(envVar, value);
@@ -617,60 +831,28 @@ public class RestSpec extends BaseGSpec {
      */
     @Deprecated
     @When("^in less than '(\\d+)' seconds, checking each '(\\d+)' seconds, I send a '(.*)' request to '(.*)' so that the response( does not)? contains '(.*)'$")
-    public void sendRequestTimeout(Integer timeout, Integer wait, String requestType, String endPoint, String contains, String responseVal) throws InterruptedException {
-
-        Boolean searchUntilContains;
-        if (contains == null || contains.isEmpty()) {
-            searchUntilContains = Boolean.TRUE;
-        } else {
-            searchUntilContains = Boolean.FALSE;
-        }
-        Boolean found = !searchUntilContains;
-        AssertionError ex = null;
+    public void sendRequestTimeout(Integer timeout, Integer wait, String requestType, String endPoint, String contains, String responseVal) throws Exception {
 
-        String type = "";
+        boolean searchUntilContains = (contains == null || contains.isEmpty());
         Pattern pattern = CommonG.matchesOrContains(responseVal);
-        for (int i = 0; (i <= timeout); i += wait) {
-            if (found && searchUntilContains) {
-                break;
-            }
+        Poller poller = new Poller(timeout * 1000L, Math.max(wait, 1) * 1000L);
 
+        poller.until(() -> {
             commonspec.generateRestRequest(requestType, endPoint);
             commonspec.getLogger().debug("Checking response value");
-
-            ResponseBody body = commonspec.getRestResponse().getBody();
-            String bodyAsString = body.asString();
-
-            try {
-                if (searchUntilContains) {
-                    assertThat(bodyAsString).containsPattern(pattern);
-                    found = true;
-                    timeout = i;
-                } else {
-                    assertThat(bodyAsString).doesNotContain(responseVal);
-                    found = false;
-                    timeout = i;
-                }
-            } catch (AssertionError e) {
-                if (!found) {
-                    commonspec.getLogger().info("Response value not found after " + i + " seconds");
-                } else {
-                    commonspec.getLogger().info("Response value found after " + i + " seconds");
-                }
-                Thread.sleep(wait * 1000);
-                ex = e;
-            }
-            if (!found && !searchUntilContains) {
-                break;
+            String bodyAsString = commonspec.getRestResponseBody().asString();
+            if (searchUntilContains) {
+                assertThat(bodyAsString).containsPattern(pattern);
+            } else {
+                assertThat(bodyAsString).doesNotContain(responseVal);
             }
-        }
-        if ((!found && searchUntilContains) || (found && !searchUntilContains)) {
-            throw (ex);
-        }
+            return null;
+        });
+
         if (searchUntilContains) {
-            commonspec.getLogger().info("Success! Response value found after " + timeout + " seconds");
+            commonspec.getLogger().info("Success! Response value found after " + poller.getElapsedMillis() + " ms");
         } else {
-            commonspec.getLogger().info("Success! Response value not found after " + timeout + " seconds");
+            commonspec.getLogger().info("Success! Response value not found after " + poller.getElapsedMillis() + " ms");
         }
     }
 
@@ -969,6 +1151,516 @@ public class RestSpec extends BaseGSpec {
         commonspec.getLogger().debug("Saving response");
     }
 
+    /**
+     * Sends the same request several times concurrently
+     * <p>
+     * Sends the request the given number of times, with no more than the given number of requests in flight at the
+     * same time. The headers, cookies, url parameters and credentials configured in the scenario are used in all the
+     * requests. The status code and the response time of every request are collected, and can be checked with the
+     * steps that follow. The last response of the scenario (used by steps like
+     * {@link #assertResponseStatusCode(Integer)}) is not modified. With connection pooling enabled, the concurrency
+     * is also limited by -DREST_MAX_CONNECTIONS_PER_HOST (20 by default)
+     *
+     * <pre>{@code
+     * Example:
+     *
+     * Scenario: Sending 100 requests, 10 at a time
+     *      Given I send requests to 'jsonplaceholder.typicode.com:443'
+     *      When I send '100' 'GET' requests to '/posts/1' using '10' concurrent threads
+     *      Then all the concurrent requests returned status '200'
+     *      And the concurrent requests p95 latency is lower than '500' milliseconds
+     * }</pre>
+     *
+     * @see #sendConcurrentRequestsDataTable(int, Integer, DataTable)
+     * @see #assertConcurrentRequestsStatus(Integer, Integer, Integer)
+     * @see #assertConcurrentRequestsLatency(String, int)
+     * @see #assertConcurrentRequestsErrors(int)
+     * @param count       number of requests
+     * @param requestType HTTP verb (type of request): POST, GET, PUT, PATCH, DELETE
+     * @param endPoint    Endpoint (i.e /user/1). The base path used is the one indicated in a previous step
+     * @param concurrency max number of requests sent at the same time
+     * @param baseData    If specified, the content of the file will be loaded in the body of the requests
+     * @param type        If the content of the file should be read as string or json
+     * @throws InterruptedException InterruptedException
+     */
+    @When("^I send '(\\d+)' '(.+?)' requests to '(.+?)' using '(\\d+)' concurrent threads( based on '([^:]+?)')?( as '(json|string)')?$")
+    public void sendConcurrentRequests(int count, String requestType, String endPoint, int concurrency, String baseData, String type) throws InterruptedException {
+        String body = (baseData == null) ? null : commonspec.retrieveData(baseData, type);
+        RequestSpecification template = commonspec.getRestRequest();
+        IntFunction<Supplier<Response>> requests = index -> this.buildConcurrentRequest(template, requestType, endPoint, body);
+        this.sendConcurrently(count, concurrency, requests);
+    }
+
+    /**
+     * Sends a list of requests concurrently
+     * <p>
+     * Works as {@link #sendConcurrentRequests(int, String, String, int, String, String)}, but sends a request for every
+     * row of the datatable. Each row contains the HTTP verb, the endpoint and (optionally) the file with the body of
+     * the request. The whole list can be sent several times
+     *
+     * <pre>{@code
+     * Example:
+     *
+     * Scenario: Sending a mix of requests, 5 at a time
+     *      Given I send requests to 'jsonplaceholder.typicode.com:443'
+     *      When I send the following requests using '5' concurrent threads '20' times:
+     *          | GET  | /posts/1 |                         |
+     *          | GET  | /posts   |                         |
+     *          | POST | /posts   | schemas/mytestdata.json |
+     *      Then the concurrent requests returned status '201' at least '20' times
+     * }</pre>
+     *
+     * @see #sendConcurrentRequests(int, String, String, int, String, String)
+     * @param concurrency max number of requests sent at the same time
+     * @param repetitions number of times the list of requests is sent (1 by default)
+     * @param requestsTable HTTP verb, endpoint and (optional) file with the body of every request
+     * @throws InterruptedException InterruptedException
+     */
+    @When("^I send the following requests using '(\\d+)' concurrent threads( '(\\d+)' times)?:$")
+    public void sendConcurrentRequestsDataTable(int concurrency, Integer repetitions, DataTable requestsTable) throws InterruptedException {
+        List<List<String>> rows = requestsTable.asLists();
+        Map<String, String> bodies = new HashMap<>();
+        for (List<String> row : rows) {
+            if (row.size() > 2 && row.get(2) != null && !row.get(2).isEmpty()) {
+                bodies.computeIfAbsent(row.get(2), file -> commonspec.retrieveData(file, "json"));
+            }
+        }
+
+        RequestSpecification template = commonspec.getRestRequest();
+        IntFunction<Supplier<Response>> requests = index -> {
+            List<String> row = rows.get(index % rows.size());
+            String body = (row.size() > 2) ? bodies.get(row.get(2)) : null;
+            return this.buildConcurrentRequest(template, row.get(0), row.get(1), body);
+        };
+        this.sendConcurrently(rows.size() * ((repetitions == null) ? 1 : repetitions), concurrency, requests);
+    }
+
+    private Supplier<Response> buildConcurrentRequest(RequestSpecification template, String requestType, String endPoint, String body) {
+        RestAssuredConfig config = RestClientUtil.INSTANCE.getRestClientUtils().getRestAssuredConfig(SpecificationQuerier.query(template).getConfig());
+        RequestSpecification request = given().spec(template).config(config);
+        if (body != null) {
+            request.body(body);
+        }
+        return () -> request.request(requestType, endPoint);
+    }
+
+    private void sendConcurrently(int count, int concurrency, IntFunction<Supplier<Response>> requests) throws InterruptedException {
+        Assertions.assertThat(commonspec.getRestRequest()).as("No rest client initialized. Did you forget to use @rest annotation in your feature?").isNotNull();
+        RestClientUtils restClientUtils = RestClientUtil.INSTANCE.getRestClientUtils();
+        RestLoadResult result = restClientUtils.sendConcurrently(count, concurrency, requests);
+        commonspec.setRestLoadResult(result);
+        commonspec.getLogger().info("Concurrent requests ({} threads): {}", concurrency, result);
+        this.initializeRestClient();
+    }
+
+    /**
+     * Checks the status codes returned by the last concurrent requests
+     * <p>
+     * Without a number of times, all the requests must have returned the given status code. Otherwise, the given
+     * status code must have been returned at least the given number of times
+     *
+     * <pre>{@code
+     * Example:
+     *
+     *      When I send '100' 'GET' requests to '/posts/1' using '10' concurrent threads
+     *      Then all the concurrent requests returned status '200'
+     *      And the concurrent requests returned status '200' at least '95' times
+     * }</pre>
+     *
+     * @see #sendConcurrentRequests(int, String, String, int, String, String)
+     * @param expectedStatus the status code
+     * @param expectedCount  min number of responses with the status code
+     */
+    @Then("^(?:all )?the concurrent requests returned status '(\\d+)'( at least '(\\d+)' times)?$")
+    public void assertConcurrentRequestsStatus(Integer expectedStatus, Integer expectedCount) {
+        RestLoadResult result = this.getLoadTestResult();
+        long count = result.getStatusCount(expectedStatus);
+        if (expectedCount == null) {
+            assertThat(count).as("Not all the requests returned status " + expectedStatus + ": " + result).isEqualTo(result.getTotal());
+        } else {
+            assertThat(count).as("Status " + expectedStatus + " was returned only " + count + " times: " + result).isGreaterThanOrEqualTo(expectedCount);
+        }
+    }
+
+    /**
+     * Checks the response time of the last concurrent requests or REST load test
+     * <p>
+     * Fails if the given percentile (or the max) of the response times of the last concurrent requests (or load test)
+     * is not lower than the given value. Requests that got no response are not included
+     *
+     * <pre>{@code
+     * Example:
+     *
+     *      When I send '100' 'GET' requests to '/posts/1' using '10' concurrent threads
+     *      Then the concurrent requests p99 latency is lower than '800' milliseconds
+     *
+     *      When I send 'GET' requests to '/posts/1' at '200' per second for '60' seconds
+     *      Then the REST load test p95 latency is lower than '300' milliseconds
+     * }</pre>
+     *
+     * @see #sendConcurrentRequests(int, String, String, int, String, String)
+     * @see #sendRequestsAtRate(String, String, int, int, String, String)
+     * @param percentile p50, p95, p99 or max
+     * @param millis     max response time in milliseconds
+     */
+    @Then("^the (?:concurrent requests|REST load test) (p50|p95|p99|max) latency is lower than '(\\d+)' milliseconds$")
+    public void assertConcurrentRequestsLatency(String percentile, int millis) {
+        RestLoadResult result = this.getLoadTestResult();
+        double value = ("max".equals(percentile)) ? result.getLatencies().getMax() / 1000.0
+                : result.getLatencies().getMillisAtPercentile(Double.parseDouble(percentile.substring(1)));
+        assertThat(value).as("The " + percentile + " latency was " + value + " ms: " + result).isLessThan(millis);
+    }
+
+    /**
+     * Checks the number of requests that got no response (connection errors, timeouts...) in the last concurrent
+     * requests
+     *
+     * <pre>{@code
+     * Example:
+     *
+     *      When I send '100' 'GET' requests to '/posts/1' using '10' concurrent threads
+     *      Then the number of concurrent requests without response is at most '0'
+     * }</pre>
+     *
+     * @see #sendConcurrentRequests(int, String, String, int, String, String)
+     * @param maxErrors max number of requests without response
+     */
+    @Then("^the number of concurrent requests without response is at most '(\\d+)'$")
+    public void assertConcurrentRequestsErrors(int maxErrors) {
+        RestLoadResult result = this.getLoadTestResult();
+        assertThat(result.getErrors()).as("Too many requests without response: " + result).isLessThanOrEqualTo(maxErrors);
+    }
+
+    /**
+     * Sends requests at a constant rate (open model load test)
+     * <p>
+     * A new request is sent every 1/rate seconds during the given time, no matter how long the previous requests
+     * take to complete, so a slow service does not reduce the load it receives (as it happens when a fixed number
+     * of threads is used). The headers, cookies and url parameters configured in the scenario are used in all the
+     * requests. The response time of every request is measured from the moment it should have been sent, and
+     * requests without a response after 60 seconds are counted as errors. The results can be checked with the
+     * steps that follow
+     *
+     * <pre>{@code
+     * Example:
+     *
+     * Scenario: The service supports 200 requests per second
+     *      Given I send requests to 'jsonplaceholder.typicode.com:443'
+     *      When I send 'GET' requests to '/posts/1' at '200' per second for '60' seconds
+     *      Then the REST load test p95 latency is lower than '300' milliseconds
+     *      And the REST load test p99 latency is lower than '1000' milliseconds
+     *      And the REST load test error rate is lower than '1'%
+     * }</pre>
+     *
+     * @see #assertConcurrentRequestsLatency(String, int)
+     * @see #assertLoadTestErrorRate(double)
+     * @see #assertLoadTestThroughput(int)
+     * @param requestType HTTP verb (type of request): POST, GET, PUT, PATCH, DELETE
+     * @param endPoint    Endpoint (i.e /user/1). The base path used is the one indicated in a previous step
+     * @param rate        requests per second
+     * @param seconds     duration of the test in seconds
+     * @param baseData    If specified, the content of the file will be loaded in the body of the requests
+     * @param type        If the content of the file should be read as string or json
+     * @throws InterruptedException InterruptedException
+     */
+    @When("^I send '(.+?)' requests to '(.+?)' at '(\\d+)' per second for '(\\d+)' seconds( based on '([^:]+?)')?( as '(json|string)')?$")
+    public void sendRequestsAtRate(String requestType, String endPoint, int rate, int seconds, String baseData, String type) throws InterruptedException {
+        Assertions.assertThat(commonspec.getRestRequest()).as("No rest client initialized. Did you forget to use @rest annotation in your feature?").isNotNull();
+        String body = (baseData == null) ? null : commonspec.retrieveData(baseData, type);
+        Request request = this.buildAsyncRequest(requestType, endPoint, body);
+        IntFunction<Request> requests = index -> request;
+
+        RestClientUtils restClientUtils = RestClientUtil.INSTANCE.getRestClientUtils();
+        RestLoadResult result = restClientUtils.sendAtRate(requests, rate, TimeUnit.SECONDS.toMillis(seconds), LOAD_TEST_TIMEOUT);
+        commonspec.setRestLoadResult(result);
+        commonspec.getLogger().info("REST load test (target {} requests/sec): {}", rate, result);
+        this.initializeRestClient();
+    }
+
+    private Request buildAsyncRequest(String requestType, String endPoint, String body) {
+        QueryableRequestSpecification spec = SpecificationQuerier.query(commonspec.getRestRequest());
+        RequestBuilder builder = new RequestBuilder(requestType).setUrl(spec.getBaseUri() + ":" + spec.getPort() + endPoint);
+
+        for (Header header : spec.getHeaders()) {
+            builder.addHeader(header.getName(), header.getValue());
+        }
+        if (spec.getContentType() != null && !spec.getHeaders().hasHeaderWithName("Content-Type")) {
+            builder.addHeader("Content-Type", spec.getContentType());
+        }
+        if (spec.getCookies().exist()) {
+            StringJoiner cookies = new StringJoiner("; ");
+            for (Cookie cookie : spec.getCookies()) {
+                cookies.add(cookie.getName() + "=" + cookie.getValue());
+            }
+            builder.addHeader("Cookie", cookies.toString());
+        }
+        for (Map.Entry<String, String> param : spec.getQueryParams().entrySet()) {
+            builder.addQueryParam(param.getKey(), param.getValue());
+        }
+        if (body != null) {
+            builder.setBody(body);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Checks the error rate of the last concurrent requests or REST load test
+     * <p>
+     * Fails if the percentage of failed requests (requests without response, or with a status code of 500 or
+     * greater) is not lower than the given value
+     *
+     * <pre>{@code
+     * Example:
+     *
+     *      When I send 'GET' requests to '/posts/1' at '200' per second for '60' seconds
+     *      Then the REST load test error rate is lower than '0.5'%
+     * }</pre>
+     *
+     * @see #sendRequestsAtRate(String, String, int, int, String, String)
+     * @param maxErrorRate max percentage of failed requests
+     */
+    @Then("^the (?:concurrent requests|REST load test) error rate is lower than '(\\d+(?:\\.\\d+)?)'%$")
+    public void assertLoadTestErrorRate(double maxErrorRate) {
+        RestLoadResult result = this.getLoadTestResult();
+        assertThat(result.getErrorRate()).as("The error rate was " + result.getErrorRate() + "%: " + result).isLessThan(maxErrorRate);
+    }
+
+    /**
+     * Checks the throughput of the last REST load test
+     * <p>
+     * Fails if the number of requests completed per second during the last load test is lower than the given value
+     *
+     * <pre>{@code
+     * Example:
+     *
+     *      When I send 'GET' requests to '/posts/1' at '200' per second for '60' seconds
+     *      Then the REST load test throughput is at least '190' requests per second
+     * }</pre>
+     *
+     * @see #sendRequestsAtRate(String, String, int, int, String, String)
+     * @param rate minimum requests per second
+     */
+    @Then("^the REST load test throughput is at least '(\\d+)' requests per second$")
+    public void assertLoadTestThroughput(int rate) {
+        RestLoadResult result = this.getLoadTestResult();
+        assertThat(result.getRequestsPerSecond()).as("The throughput was too low: " + result).isGreaterThanOrEqualTo(rate);
+    }
+
+    private RestLoadResult getLoadTestResult() {
+        RestLoadResult result = commonspec.getRestLoadResult();
+        assertThat(result).as("No concurrent requests or load test were executed in this scenario").isNotNull();
+        return result;
+    }
+
+    /**
+     * Sends a list of requests in parallel, without waiting for their responses
+     * <p>
+     * Each row of the datatable contains the alias of the request, the HTTP verb, the endpoint, and optionally the
+     * file with the body of the request and its type (json by default). All the requests are sent at once, using the
+     * base URL, headers, cookies and url parameters configured in the previous steps, and the scenario continues
+     * immediately. The responses are collected with {@link #awaitParallelRequests(Integer)} (or by the first step
+     * that checks one of them), so a group of independent requests takes the time of the slowest one, not the sum
+     * of all of them. No more than REST_MAX_CONNECTIONS_PER_HOST (20 by default) requests should be sent to the same
+     * host at the same time
+     *
+     * <pre>{@code
+     * Example:
+     *
+     *      Given I send requests to 'jsonplaceholder.typicode.com:80'
+     *      When I send these requests in parallel:
+     *          | user     | GET  | /users/1 |                         |
+     *          | posts    | GET  | /posts   |                         |
+     *          | newPost  | POST | /posts   | schemas/mytestdata.json |
+     *      And I wait for the parallel requests
+     *      Then the parallel request 'user' returned status '200'
+     *      And the parallel request 'newPost' returned status '201'
+     * }</pre>
+     *
+     * @see #awaitParallelRequests(Integer)
+     * @see #assertParallelRequestStatus(String, Integer)
+     * @param table         requests to send (alias, verb, endpoint, optional body file, optional type)
+     * @throws Exception    Exception
+     */
+    @When("^I send these requests in parallel:$")
+    public void sendParallelRequests(DataTable table) throws Exception {
+        Assertions.assertThat(commonspec.getRestRequest()).as("No rest client initialized. Did you forget to use @rest annotation in your feature?").isNotNull();
+        List<List<String>> rows = table.asLists();
+        RestClientUtils restClientUtils = RestClientUtil.INSTANCE.getRestClientUtils();
+        if (rows.size() > restClientUtils.getMaxConnectionsPerHost()) {
+            commonspec.getLogger().warn("Sending {} requests in parallel, but only {} connections per host are allowed (REST_MAX_CONNECTIONS_PER_HOST)",
+                    rows.size(), restClientUtils.getMaxConnectionsPerHost());
+        }
+
+        for (List<String> row : rows) {
+            String body = null;
+            if (row.size() > 3 && row.get(3) != null && !row.get(3).isEmpty()) {
+                String type = (row.size() > 4 && row.get(4) != null && !row.get(4).isEmpty()) ? row.get(4) : "json";
+                body = commonspec.retrieveData(row.get(3), type);
+            }
+            Request request = this.buildAsyncRequest(row.get(1).toUpperCase(), row.get(2), body);
+            commonspec.getLogger().debug("Sending parallel request '{}': {} {}", row.get(0), request.getMethod(), request.getUrl());
+            commonspec.getParallelRequests().add(row.get(0), commonspec.getClient().executeRequest(request));
+        }
+        this.initializeRestClient();
+    }
+
+    /**
+     * Waits for the responses of the requests sent in parallel
+     * <p>
+     * Fails if any of the requests did not receive a response (connection error, or no response before the
+     * timeout, 60 seconds by default). The status and the time of every request are logged
+     *
+     * <pre>{@code
+     * Example:
+     *
+     *      When I send these requests in parallel:
+     *          | user     | GET  | /users/1 |
+     *          | posts    | GET  | /posts   |
+     *      Then I wait for the parallel requests for at most '5000' ms
+     * }</pre>
+     *
+     * @see #sendParallelRequests(DataTable)
+     * @param timeout               max time to wait for all the responses in milliseconds
+     * @throws InterruptedException InterruptedException
+     */
+    @When("^I wait for the parallel requests( for at most '(\\d+)' ms)?$")
+    public void awaitParallelRequests(Integer timeout) throws InterruptedException {
+        ParallelRequests parallelRequests = commonspec.getParallelRequests();
+        Assertions.assertThat(parallelRequests.getPendingCount()).as("No parallel requests were sent in this scenario").isGreaterThan(0);
+
+        List<String> failed = new ArrayList<>();
+        for (ParallelRequests.Result result : parallelRequests.awaitAll(timeout != null ? timeout : LOAD_TEST_TIMEOUT)) {
+            commonspec.getLogger().info("Parallel request {}", result);
+            if (result.getError() != null) {
+                failed.add(result.toString());
+            }
+        }
+        Assertions.assertThat(failed).as("Some parallel requests did not receive a response").isEmpty();
+    }
+
+    /**
+     * Checks the status code of a request sent in parallel
+     * <p>
+     * If the responses were not awaited yet, waits for all of them first
+     *
+     * <pre>{@code
+     * Example:
+     *
+     *      When I send these requests in parallel:
+     *          | user     | GET  | /users/1 |
+     *          | missing  | GET  | /users/0 |
+     *      Then the parallel request 'user' returned status '200'
+     *      And the parallel request 'missing' returned status '404'
+     * }</pre>
+     *
+     * @see #sendParallelRequests(DataTable)
+     * @param alias                 alias of the request
+     * @param expectedStatus        expected status code
+     * @throws InterruptedException InterruptedException
+     */
+    @Then("^the parallel request '(.+?)' returned status '(\\d+)'$")
+    public void assertParallelRequestStatus(String alias, Integer expectedStatus) throws InterruptedException {
+        HttpResponse response = this.getParallelResponse(alias);
+        Assertions.assertThat(response.getStatusCode()).as("Unexpected status code of the parallel request '" + alias + "'").isEqualTo(expectedStatus);
+    }
+
+    /**
+     * Checks the status code of all the requests sent in parallel
+     * <p>
+     * If the responses were not awaited yet, waits for all of them first
+     *
+     * <pre>{@code
+     * Example:
+     *
+     *      When I send these requests in parallel:
+     *          | user     | GET  | /users/1 |
+     *          | posts    | GET  | /posts   |
+     *      Then all the parallel requests returned status '200'
+     * }</pre>
+     *
+     * @see #sendParallelRequests(DataTable)
+     * @param expectedStatus        expected status code
+     * @throws InterruptedException InterruptedException
+     */
+    @Then("^all the parallel requests returned status '(\\d+)'$")
+    public void assertAllParallelRequestsStatus(Integer expectedStatus) throws InterruptedException {
+        this.awaitPendingParallelRequests();
+        List<ParallelRequests.Result> results = commonspec.getParallelRequests().getResults();
+        Assertions.assertThat(results).as("No parallel requests were sent in this scenario").isNotEmpty();
+        for (ParallelRequests.Result result : results) {
+            Assertions.assertThat(result.getError()).as("The parallel request " + result).isNull();
+            Assertions.assertThat(result.getResponse().getStatusCode()).as("Unexpected status code of the parallel request " + result).isEqualTo(expectedStatus);
+        }
+    }
+
+    /**
+     * Checks that the body of the response of a request sent in parallel contains the given text
+     * <p>
+     * If the responses were not awaited yet, waits for all of them first
+     *
+     * <pre>{@code
+     * Example:
+     *
+     *      When I send these requests in parallel:
+     *          | user     | GET  | /users/1 |
+     *      Then the parallel request 'user' response must contain the text 'Bret'
+     * }</pre>
+     *
+     * @see #sendParallelRequests(DataTable)
+     * @param alias                 alias of the request
+     * @param expectedText          text to find in the response body
+     * @throws InterruptedException InterruptedException
+     */
+    @Then("^the parallel request '(.+?)' response must contain the text '(.*)'$")
+    public void assertParallelRequestMessage(String alias, String expectedText) throws InterruptedException {
+        HttpResponse response = this.getParallelResponse(alias);
+        Assertions.assertThat(response.getResponse()).as("Text '" + expectedText + "' was not found in the response body of the parallel request '" + alias + "'").contains(expectedText);
+    }
+
+    /**
+     * Saves the body of the response of a request sent in parallel in an environment variable
+     * <p>
+     * If the responses were not awaited yet, waits for all of them first. The variable can be checked later, for
+     * example with {@link #matchWithExpresion(String, DataTable)}
+     *
+     * <pre>{@code
+     * Example:
+     *
+     *      When I send these requests in parallel:
+     *          | user     | GET  | /users/1 |
+     *          | posts    | GET  | /posts   |
+     *      Then I save the response of the parallel request 'user' in environment variable 'user'
+     *      And 'user' matches the following cases:
+     *          | $.username | equal | Bret |
+     * }</pre>
+     *
+     * @see #sendParallelRequests(DataTable)
+     * @param alias                 alias of the request
+     * @param envVar                name of the variable
+     * @throws InterruptedException InterruptedException
+     */
+    @Given("^I save the response of the parallel request '(.+?)' in environment variable '(.+?)'$")
+    public void saveParallelRequestResponse(String alias, String envVar) throws InterruptedException {
+        HttpResponse response = this.getParallelResponse(alias);
+        ThreadProperty.set(envVar, response.getResponse());
+    }
+
+    private void awaitPendingParallelRequests() throws InterruptedException {
+        if (commonspec.getParallelRequests().getPendingCount() > 0) {
+            for (ParallelRequests.Result result : commonspec.getParallelRequests().awaitAll(LOAD_TEST_TIMEOUT)) {
+                commonspec.getLogger().info("Parallel request {}", result);
+            }
+        }
+    }
+
+    private HttpResponse getParallelResponse(String alias) throws InterruptedException {
+        this.awaitPendingParallelRequests();
+        ParallelRequests.Result result = commonspec.getParallelRequests().getResult(alias);
+        Assertions.assertThat(result).as("No parallel request with alias '" + alias + "' was sent in this scenario").isNotNull();
+        Assertions.assertThat(result.getError()).as("The parallel request " + result).isNull();
+        return result.getResponse();
+    }
+
     /**
      * Every time a request is sent, a new request object is initialized with the same base url and port that
      * was configured in {@link #setupApp(String, String)}. This is because, if the user did previously set
@@ -980,7 +1672,8 @@ public class RestSpec extends BaseGSpec {
         commonspec.getLogger().debug("Re-initializing rest-client. Removing headers, cookies and url parameters");
 
         RequestSpecification spec = new RequestSpecBuilder().setContentType(ContentType.JSON).build();
-        commonspec.setRestRequest(given().header("Content-Type", "application/json").spec(spec));
+        RestAssuredConfig config = RestClientUtil.INSTANCE.getRestClientUtils().getRestAssuredConfig();
+        commonspec.setRestRequest(given().config(config).header("Content-Type", "application/json").spec(spec));
 
         if (commonspec.getRestProtocol().matches("https://")) {
             this.setupApp("https://", commonspec.getRestHost() + ":" + commonspec.getRestPort());
@@ -16,6 +16,7 @@
 
 package com.privalia.qa.specs;
 
+import com.privalia.qa.utils.Poller;
 import com.privalia.qa.utils.RemoteSSHConnection;
 import io.cucumber.java.en.Given;
 import io.cucumber.java.en.Then;
@@ -261,30 +262,16 @@ public class SshGSpec extends BaseGSpec {
      */
     @Then("^in less than '(\\d+?)' seconds, checking each '(\\d+?)' seconds, the command output '(.+?)' contains '(.+?)'$")
     public void assertCommandExistsOnTimeOut(Integer timeout, Integer wait, String command, String search) throws Exception {
-        Boolean found = false;
-        AssertionError ex = null;
+        Poller poller = new Poller(timeout * 1000L, Math.max(wait, 1) * 1000L);
 
-        for (int i = 0; (i <= timeout); i += wait) {
-            if (found) {
-                break;
-            }
+        poller.until(() -> {
             commonspec.getLogger().debug("Checking output value");
             commonspec.getRemoteSSHConnection().runCommand(command);
             commonspec.setCommandResult(commonspec.getRemoteSSHConnection().getResult());
-            try {
-                assertThat(commonspec.getCommandResult()).as("Contains " + search + ".").contains(search);
-                found = true;
-                timeout = i;
-            } catch (AssertionError e) {
-                commonspec.getLogger().info("Command output don't found yet after " + i + " seconds");
-                Thread.sleep(wait * 1000);
-                ex = e;
-            }
-        }
-        if (!found) {
-            throw (ex);
-        }
-        commonspec.getLogger().info("Command output found after " + timeout + " seconds");
+            assertThat(commonspec.getCommandResult()).as("Contains " + search + ".").contains(search);
+            return null;
+        });
+        commonspec.getLogger().info("Command output found after " + poller.getElapsedMillis() + " ms");
     }
 
 
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2018 Privalia (http://privalia.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.privalia.qa.specs;
+
+import io.cucumber.core.resource.ClassLoaders;
+import io.cucumber.core.resource.ClasspathScanner;
+import io.cucumber.cucumberexpressions.Argument;
+import io.cucumber.cucumberexpressions.Expression;
+import io.cucumber.cucumberexpressions.ExpressionFactory;
+import io.cucumber.cucumberexpressions.ParameterTypeRegistry;
+import io.cucumber.datatable.DataTable;
+import io.cucumber.datatable.DataTableTypeRegistry;
+import io.cucumber.datatable.DataTableTypeRegistryTableConverter;
+import io.cucumber.java.en.And;
+import io.cucumber.java.en.But;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Runs steps given as text, using the step definitions of the library.
+ * <p>
+ * The text is matched against the expressions of the step definitions of the classes that extend {@link BaseGSpec}
+ * in the package of the library ({@code com.privalia.qa.specs}). The step definitions of the glue code of the
+ * project are not found, so they cannot be run. The step definition is invoked on a new instance of its class that
+ * shares the {@link CommonG} of the scenario, so the steps see and change the same state (REST request and response,
+ * command output, database results, load test results, variables...) as the rest of the steps of the scenario.
+ * For that reason, the steps of the library must keep the state of the scenario in {@link CommonG}, and not in
+ * fields of their own class. Steps can receive a datatable, given as the lines starting with | that follow the step.
+ * Steps that receive a docstring are not supported
+ */
+public class StepRunner {
+
+    private static final Pattern KEYWORD = Pattern.compile("^\\s*(?:Given|When|Then|And|But|\\*)\\s+");
+
+    private static final List<Class<? extends Annotation>> STEP_ANNOTATIONS = Arrays.asList(Given.class, When.class, Then.class, And.class, But.class);
+
+    private static List<StepDefinition> stepDefinitions;
+
+    private final CommonG commonspec;
+
+    private final Map<Class<?>, Object> instances = new HashMap<>();
+
+    /**
+     * A step definition and the expression it matches
+     */
+    private static final class StepDefinition {
+
+        private final Expression expression;
+
+        private final Method method;
+
+        private final Type[] argumentTypes;
+
+        private final boolean dataTable;
+
+        private StepDefinition(Expression expression, Method method) {
+            this.expression = expression;
+            this.method = method;
+            Type[] types = method.getGenericParameterTypes();
+            this.dataTable = types.length > 0 && types[types.length - 1] == DataTable.class;
+            this.argumentTypes = this.dataTable ? Arrays.copyOf(types, types.length - 1) : types;
+        }
+    }
+
+    /**
+     * A step given as text, and its datatable (if any)
+     */
+    public static final class Step {
+
+        private final String text;
+
+        private final List<List<String>> rows;
+
+        public Step(String text, List<List<String>> rows) {
+            this.text = text;
+            this.rows = rows;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public List<List<String>> getRows() {
+            return rows;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    /**
+     * Default constructor.
+     *
+     * @param spec CommonG object of the scenario
+     */
+    public StepRunner(CommonG spec) {
+        this.commonspec = spec;
+    }
+
+    /**
+     * Splits a block of text into steps. Every line is a step (the Given/When/Then/And/But keywords are optional),
+     * and the lines starting with | are the rows of the datatable of the previous step. Empty lines and lines
+     * starting with # are ignored
+     *
+     * @param text the block of text
+     * @return the steps
+     */
+    public static List<Step> parse(String text) {
+        List<Step> steps = new ArrayList<>();
+        String stepText = null;
+        List<List<String>> rows = new ArrayList<>();
+
+        for (String line : text.split("\\r?\\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            if (trimmed.startsWith("|")) {
+                if (stepText == null) {
+                    throw new IllegalArgumentException("Datatable without step: " + trimmed);
+                }
+                List<String> row = new ArrayList<>();
+                String[] cells = trimmed.substring(1, trimmed.endsWith("|") ? trimmed.length() - 1 : trimmed.length()).split("\\|", -1);
+                for (String cell : cells) {
+                    row.add(cell.trim());
+                }
+                rows.add(row);
+            } else {
+                if (stepText != null) {
+                    steps.add(new Step(stepText, rows));
+                }
+                stepText = KEYWORD.matcher(trimmed).replaceFirst("");
+                rows = new ArrayList<>();
+            }
+        }
+        if (stepText != null) {
+            steps.add(new Step(stepText, rows));
+        }
+        return steps;
+    }
+
+    /**
+     * Runs the given step
+     *
+     * @param step the step
+     * @throws Exception the exception thrown by the step
+     */
+    public void run(Step step) throws Exception {
+        for (StepDefinition definition : getStepDefinitions()) {
+            if (definition.dataTable == step.getRows().isEmpty()) {
+                continue;
+            }
+            List<Argument<?>> arguments = definition.expression.match(step.getText(), definition.argumentTypes);
+            if (arguments == null || arguments.size() != definition.argumentTypes.length) {
+                continue;
+            }
+
+            Object[] values = new Object[definition.method.getParameterCount()];
+            for (int i = 0; i < arguments.size(); i++) {
+                values[i] = arguments.get(i).getValue();
+            }
+            if (definition.dataTable) {
+                DataTableTypeRegistryTableConverter converter = new DataTableTypeRegistryTableConverter(new DataTableTypeRegistry(Locale.ENGLISH));
+                values[values.length - 1] = DataTable.create(step.getRows(), converter);
+            }
+
+            commonspec.getLogger().debug("Running step '{}' with {}", step.getText(), definition.method);
+            try {
+                definition.method.invoke(this.getInstance(definition.method.getDeclaringClass()), values);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+            }
+            return;
+        }
+        throw new IllegalArgumentException("No step definition found for '" + step.getText() + "'");
+    }
+
+    private Object getInstance(Class<?> specClass) throws ReflectiveOperationException {
+        Object instance = this.instances.get(specClass);
+        if (instance == null) {
+            instance = specClass.getConstructor(CommonG.class).newInstance(this.commonspec);
+            this.instances.put(specClass, instance);
+        }
+        return instance;
+    }
+
+    private static synchronized List<StepDefinition> getStepDefinitions() {
+        if (stepDefinitions == null) {
+            ExpressionFactory expressionFactory = new ExpressionFactory(new ParameterTypeRegistry(Locale.ENGLISH));
+            List<StepDefinition> definitions = new ArrayList<>();
+            ClasspathScanner scanner = new ClasspathScanner(ClassLoaders::getDefaultClassLoader);
+            for (Class<? extends BaseGSpec> specClass : scanner.scanForSubClassesInPackage(BaseGSpec.class.getPackage().getName(), BaseGSpec.class)) {
+                if (Modifier.isAbstract(specClass.getModifiers())) {
+                    continue;
+                }
+                try {
+                    specClass.getConstructor(CommonG.class);
+                } catch (NoSuchMethodException e) {
+                    continue;
+                }
+                for (Method method : specClass.getMethods()) {
+                    for (Class<? extends Annotation> annotationType : STEP_ANNOTATIONS) {
+                        for (Annotation annotation : method.getAnnotationsByType(annotationType)) {
+                            definitions.add(new StepDefinition(expressionFactory.createExpression(stepExpression(annotation)), method));
+                        }
+                    }
+                }
+            }
+            stepDefinitions = Collections.unmodifiableList(definitions);
+        }
+        return stepDefinitions;
+    }
+
+    private static String stepExpression(Annotation annotation) {
+        try {
+            return (String) annotation.annotationType().getMethod("value").invoke(annotation);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Step annotation without expression: " + annotation, e);
+        }
+    }
+}
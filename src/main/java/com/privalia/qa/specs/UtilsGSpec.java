@@ -17,6 +17,7 @@
 package com.privalia.qa.specs;
 
 import com.csvreader.CsvReader;
+import com.privalia.qa.utils.Poller;
 import com.privalia.qa.utils.ThreadProperty;
 import io.cucumber.java.en.Given;
 import io.cucumber.java.en.Then;
@@ -42,6 +43,8 @@ public class UtilsGSpec extends BaseGSpec {
 
     public static final int DEFAULT_TIMEOUT = 1000;
 
+    public static final long EVENTUALLY_MAX_INTERVAL = 1000;
+
     /**
      * Default constructor.
      *
@@ -77,6 +80,90 @@ public class UtilsGSpec extends BaseGSpec {
     }
 
 
+    /**
+     * Repeats a step until it succeeds or the given time expires.
+     * <p>
+     * The step is executed again every time it fails, until it succeeds (the execution continues immediately) or
+     * the time expires (the step fails with the error of the last attempt). The first retries are done after a few
+     * milliseconds, and the time between retries grows up to 1 second (or a tenth of the timeout, if it is shorter),
+     * so this is a much faster alternative to a static wait ({@link #idleWait(Integer)}) followed by a check. Any
+     * step of the library can be used, for example, to check the response of a REST service, the output of a
+     * command or the result of a database query. The steps defined in the glue code of the project cannot be used
+     * (see {@link StepRunner})
+     *
+     * <pre>
+     * {@code
+     *      Then eventually within '5000' ms, table 'orders' exists
+     * }
+     * </pre>
+     * <p>
+     * Variables in the step are replaced once, before the first attempt
+     *
+     * @see #eventuallyWithinSteps(Integer, String)
+     * @param timeout max time to wait in milliseconds
+     * @param step    the step to repeat
+     * @throws Exception the error of the last attempt
+     */
+    @Then("^eventually within '(\\d+)' ms, (.+)$")
+    public void eventuallyWithin(Integer timeout, String step) throws Exception {
+        this.eventually(timeout, StepRunner.parse(step));
+    }
+
+    /**
+     * Repeats a group of steps until all of them succeed or the given time expires.
+     * <p>
+     * The steps are given as a docstring, one step per line (the Given/When/Then/And keywords are optional). The
+     * datatable of a step is given in the lines that follow it. All the steps are executed in order every time,
+     * so a step that sends a request can be followed by the steps that check the response. The steps are repeated
+     * in the same way as in {@link #eventuallyWithin(Integer, String)}
+     *
+     * <pre>
+     * {@code
+     *      Then eventually within '10000' ms:
+     *      """
+     *      I query the database with 'SELECT id, status FROM orders WHERE id = 1;'
+     *      I check that result is:
+     *        | id | status |
+     *        | 1  | SENT   |
+     *      """
+     *      And eventually within '3000' ms:
+     *      """
+     *      I send a 'GET' request to '/posts/1'
+     *      the service response status must be '200'
+     *      """
+     *      And eventually within '20000' ms:
+     *      """
+     *      I run 'ls /tmp' in the ssh connection
+     *      the command output contains 'test.txt'
+     *      """
+     * }
+     * </pre>
+     *
+     * @see #eventuallyWithin(Integer, String)
+     * @param timeout max time to wait in milliseconds
+     * @param steps   the steps to repeat
+     * @throws Exception the error of the last attempt
+     */
+    @Then("^eventually within '(\\d+)' ms:$")
+    public void eventuallyWithinSteps(Integer timeout, String steps) throws Exception {
+        this.eventually(timeout, StepRunner.parse(steps));
+    }
+
+    private void eventually(Integer timeout, List<StepRunner.Step> steps) throws Exception {
+        StepRunner runner = new StepRunner(commonspec);
+        long maxInterval = Math.max(Poller.DEFAULT_INITIAL_INTERVAL, Math.min(EVENTUALLY_MAX_INTERVAL, timeout / 10));
+        Poller poller = new Poller(timeout, maxInterval);
+
+        poller.until(() -> {
+            for (StepRunner.Step step : steps) {
+                runner.run(step);
+            }
+            return null;
+        });
+        commonspec.getLogger().debug("Steps {} succeeded after {} attempts in {} ms", steps, poller.getAttempts(), poller.getElapsedMillis());
+    }
+
+
     /**
      * Check value stored in environment variable "is|matches|is higher than|is lower than|contains|is different from" to value provided
      * <pre>
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2018 Privalia (http://privalia.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.privalia.qa.utils;
+
+import org.apache.avro.generic.GenericRecord;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * A set of expected avro records, each one given as the expected values of some fields (json path expressions).
+ * <p>
+ * The expectations are indexed by the value of their most selective field (the one with more distinct expected
+ * values), so every record read from a topic is only compared with the expectations that have the same value in
+ * that field. This allows to check many expectations in a single read of the topic. This class is thread safe
+ */
+public class AvroExpectationSet {
+
+    private final List<AvroFieldPath> paths = new ArrayList<>();
+
+    private final List<List<String>> expectations;
+
+    private final boolean[] matched;
+
+    private int remaining;
+
+    private final int indexColumn;
+
+    private final Map<String, List<Integer>> index = new HashMap<>();
+
+    /**
+     * Builds the set of expectations.
+     *
+     * @param expressions    json path expression of each field
+     * @param expectations   expected value of each field, for every expected record
+     * @param jsonPathReader evaluates a json path expression over the json representation of a record, for the
+     *                       expressions that cannot be read directly from the record
+     */
+    public AvroExpectationSet(List<String> expressions, List<List<String>> expectations, BiFunction<String, String, String> jsonPathReader) {
+        for (String expression : expressions) {
+            this.paths.add(new AvroFieldPath(expression, jsonPathReader));
+        }
+        this.expectations = expectations;
+        this.matched = new boolean[expectations.size()];
+        this.remaining = expectations.size();
+
+        int bestColumn = 0;
+        int bestScore = -1;
+        for (int column = 0; column < this.paths.size(); column++) {
+            Set<String> distinct = new HashSet<>();
+            for (List<String> expectation : expectations) {
+                distinct.add(expectation.get(column));
+            }
+            int score = distinct.size() * 2 + (this.paths.get(column).isCompiled() ? 1 : 0);
+            if (score > bestScore) {
+                bestScore = score;
+                bestColumn = column;
+            }
+        }
+        this.indexColumn = bestColumn;
+
+        for (int i = 0; i < expectations.size(); i++) {
+            this.index.computeIfAbsent(expectations.get(i).get(this.indexColumn), key -> new ArrayList<>()).add(i);
+        }
+    }
+
+    /**
+     * Marks as found all the expectations that match the given record
+     *
+     * @param record the record
+     * @return true if all the expectations have been found
+     */
+    public synchronized boolean visit(GenericRecord record) {
+        if (this.remaining == 0) {
+            return true;
+        }
+
+        AvroFieldPath.RecordJson json = new AvroFieldPath.RecordJson(record);
+        List<Integer> candidates = this.index.get(this.paths.get(this.indexColumn).read(record, json));
+        if (candidates == null) {
+            return false;
+        }
+
+        Map<Integer, String> values = new HashMap<>();
+        for (int candidate : candidates) {
+            if (!this.matched[candidate] && this.matches(record, json, this.expectations.get(candidate), values)) {
+                this.matched[candidate] = true;
+                this.remaining--;
+            }
+        }
+        return this.remaining == 0;
+    }
+
+    private boolean matches(GenericRecord record, AvroFieldPath.RecordJson json, List<String> expectation, Map<Integer, String> values) {
+        for (int column = 0; column < this.paths.size(); column++) {
+            if (column != this.indexColumn) {
+                AvroFieldPath path = this.paths.get(column);
+                String value = values.computeIfAbsent(column, key -> path.read(record, json));
+                if (!Objects.equals(value, expectation.get(column))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the expectations that were not found in any record
+     *
+     * @return expected values of the expectations not found
+     */
+    public synchronized List<List<String>> getUnmatched() {
+        List<List<String>> unmatched = new ArrayList<>();
+        for (int i = 0; i < this.expectations.size(); i++) {
+            if (!this.matched[i]) {
+                unmatched.add(Collections.unmodifiableList(this.expectations.get(i)));
+            }
+        }
+        return unmatched;
+    }
+
+    public String getIndexExpression() {
+        return this.paths.get(this.indexColumn).getExpression();
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2018 Privalia (http://privalia.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.privalia.qa.utils;
+
+import org.apache.avro.generic.GenericEnumSymbol;
+import org.apache.avro.generic.GenericRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A json path expression (i.e. $.user.address.city or $.items[0].id) compiled to read the value directly from
+ * the fields of an avro {@link GenericRecord}, without converting the record to json.
+ * <p>
+ * Only expressions made of field names and array indexes can be compiled. For any other expression (filters,
+ * wildcards, deep scan...), or when the value is not a simple type (string, int, long, boolean or enum), the value
+ * is read from the json representation of the record with the given json path reader, so the result is always the
+ * same as evaluating the expression over the json representation of the record
+ */
+public class AvroFieldPath {
+
+    private static final Pattern STEP = Pattern.compile("\\G(?:\\.?([A-Za-z_][A-Za-z0-9_]*)|\\[(\\d+)\\])");
+
+    private final String expression;
+
+    private final List<Object> steps;
+
+    private final BiFunction<String, String, String> jsonPathReader;
+
+    /**
+     * Compiles the expression.
+     *
+     * @param expression     json path expression
+     * @param jsonPathReader function that evaluates a json path expression (second argument) over a json string
+     *                       (first argument), used when the value cannot be read directly from the record
+     */
+    public AvroFieldPath(String expression, BiFunction<String, String, String> jsonPathReader) {
+        this.expression = expression;
+        this.jsonPathReader = jsonPathReader;
+        this.steps = compile(expression);
+    }
+
+    private static List<Object> compile(String expression) {
+        String path = expression.startsWith("$") ? expression.substring(1) : expression;
+        if (path.isEmpty()) {
+            return null;
+        }
+
+        List<Object> steps = new ArrayList<>();
+        Matcher matcher = STEP.matcher(path);
+        int end = 0;
+        while (matcher.find()) {
+            if (matcher.group(1) != null) {
+                if (end > 0 && path.charAt(end) != '.') {
+                    return null;
+                }
+                steps.add(matcher.group(1));
+            } else {
+                steps.add(Integer.valueOf(matcher.group(2)));
+            }
+            end = matcher.end();
+        }
+        return (end == path.length()) ? steps : null;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * Returns true if the value can be read directly from the fields of the record
+     *
+     * @return true if the expression was compiled
+     */
+    public boolean isCompiled() {
+        return steps != null;
+    }
+
+    /**
+     * Reads the value of the expression from the record
+     *
+     * @param record the record
+     * @param json   json representation of the record, only computed if needed
+     * @return value as string
+     */
+    public String read(GenericRecord record, RecordJson json) {
+        if (steps != null) {
+            Object value = this.resolve(record);
+            if (value instanceof CharSequence || value instanceof Integer || value instanceof Long || value instanceof Boolean || value instanceof GenericEnumSymbol) {
+                return value.toString();
+            }
+        }
+        return jsonPathReader.apply(json.get(), expression);
+    }
+
+    private Object resolve(GenericRecord record) {
+        Object current = record;
+        for (Object step : steps) {
+            if (step instanceof String && current instanceof GenericRecord) {
+                GenericRecord currentRecord = (GenericRecord) current;
+                if (currentRecord.getSchema().getField((String) step) == null) {
+                    return null;
+                }
+                current = currentRecord.get((String) step);
+            } else if (step instanceof Integer && current instanceof List) {
+                List<?> list = (List<?>) current;
+                int index = (Integer) step;
+                if (index >= list.size()) {
+                    return null;
+                }
+                current = list.get(index);
+            } else {
+                return null;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Json representation of a record, computed the first time it is needed
+     */
+    public static class RecordJson {
+
+        private final GenericRecord record;
+
+        private String json;
+
+        public RecordJson(GenericRecord record) {
+            this.record = record;
+        }
+
+        public String get() {
+            if (json == null) {
+                json = record.toString();
+            }
+            return json;
+        }
+    }
+}
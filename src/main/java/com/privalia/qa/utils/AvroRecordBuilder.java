@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2018 Privalia (http://privalia.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.privalia.qa.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.gson.Gson;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates avro {@link GenericRecord} from a list of properties (field name -> value as string).
+ * <p>
+ * Parsed schemas are cached by the fingerprint of their text, and for every schema, the conversion needed
+ * by each field (int, long, decimal as bytes, nested records, arrays...) is computed only once. So, building
+ * many records with the same schema does not parse the schema or walk its fields again. This class is thread safe
+ */
+public class AvroRecordBuilder {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final Gson GSON = new Gson();
+
+    private final Logger logger = LoggerFactory.getLogger(AvroRecordBuilder.class);
+
+    private final Map<Long, Schema> schemas = new ConcurrentHashMap<>();
+
+    private final Map<Schema, Map<String, FieldConverter>> plans = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    /**
+     * Converts the string representation of a value to the object expected by the avro field
+     */
+    private interface FieldConverter {
+        Object convert(String value) throws IOException;
+    }
+
+    /**
+     * Returns the parsed schema, parsing it only the first time
+     *
+     * @param schema schema as string
+     * @return parsed schema
+     */
+    public Schema parseSchema(String schema) {
+        long fingerprint = SchemaNormalization.fingerprint64(schema.getBytes(StandardCharsets.UTF_8));
+        return this.schemas.computeIfAbsent(fingerprint, key -> new Schema.Parser().parse(schema));
+    }
+
+    /**
+     * Converts a json object to a list of properties. Values that are not strings (numbers, booleans, objects
+     * or arrays) are converted to their json representation
+     *
+     * @param json json object as string
+     * @return list of properties (Key -> Value)
+     * @throws IOException if the json could not be parsed
+     */
+    public Map<String, String> toProperties(String json) throws IOException {
+        Map<String, Object> values = MAPPER.readValue(json, HashMap.class);
+        Map<String, String> properties = new HashMap<>();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            properties.put(entry.getKey(), asString(entry.getValue()));
+        }
+        return properties;
+    }
+
+    /**
+     * Creates a {@link GenericRecord} given its schema and the list of key -> value
+     *
+     * @param schema       Schema as string
+     * @param propertyList Property list (Key -> Value)
+     * @return {@link GenericRecord}
+     * @throws IOException if a nested record or array could not be parsed
+     */
+    public GenericRecord build(String schema, Map<String, String> propertyList) throws IOException {
+        return this.build(this.parseSchema(schema), propertyList);
+    }
+
+    /**
+     * Creates a {@link GenericRecord} given its schema and the list of key -> value
+     *
+     * @param schema       Parsed schema
+     * @param propertyList Property list (Key -> Value). Values that are not strings are converted to json
+     * @return {@link GenericRecord}
+     * @throws IOException if a nested record or array could not be parsed
+     */
+    public GenericRecord build(Schema schema, Map<String, ?> propertyList) throws IOException {
+
+        //for cases of null records
+        if (propertyList == null) {
+            return null;
+        }
+
+        Map<String, FieldConverter> plan = this.getPlan(schema);
+        GenericRecord avroRecord = new GenericData.Record(schema);
+
+        for (Map.Entry<String, ?> entry : propertyList.entrySet()) {
+            FieldConverter converter = plan.get(entry.getKey());
+            if (converter != null) {
+                avroRecord.put(entry.getKey(), converter.convert(asString(entry.getValue())));
+            } else {
+                logger.warn("the field " + entry.getKey() + " is not present in the schema and will be ignored");
+            }
+        }
+
+        return avroRecord;
+    }
+
+    private Map<String, FieldConverter> getPlan(Schema schema) {
+        Map<String, FieldConverter> plan = this.plans.get(schema);
+        if (plan == null) {
+            plan = new HashMap<>();
+            for (Schema.Field field : schema.getFields()) {
+                plan.put(field.name(), this.getConverter(field.schema()));
+            }
+            this.plans.put(schema, plan);
+        }
+        return plan;
+    }
+
+    private FieldConverter getConverter(Schema schema) {
+
+        switch (schema.getType()) {
+            case INT:
+                return Integer::valueOf;
+
+            case LONG:
+                return Long::parseLong;
+
+            case FLOAT:
+                return Float::parseFloat;
+
+            case STRING:
+                return value -> value;
+
+            case BOOLEAN:
+                return value -> "true".equals(value);
+
+            case BYTES:
+                return value -> ByteBuffer.wrap(new BigDecimal(value).unscaledValue().toByteArray());
+
+            case ARRAY:
+                return this.getArrayConverter(schema.getElementType());
+
+            case RECORD:
+                return value -> {
+                    if (value == null) {
+                        return null;
+                    }
+                    Map<String, Object> result;
+                    try {
+                        result = MAPPER.readValue(value, HashMap.class);
+                    } catch (IOException e) {
+                        throw new IOException("Could not map " + value + " to a record type", e);
+                    }
+                    return this.build(schema, result);
+                };
+
+            case UNION:
+                FieldConverter converter = value -> null;
+                for (Schema type : schema.getTypes()) {
+                    if (type.getType() != Schema.Type.NULL) {
+                        converter = this.getConverter(type);
+                    }
+                }
+                return converter;
+
+            default:
+                logger.warn("Unrecognized type in schema: " + schema.getType().getName());
+                return value -> value;
+        }
+    }
+
+    private FieldConverter getArrayConverter(Schema elementSchema) {
+
+        FieldConverter elementConverter = this.getConverter(elementSchema);
+
+        return value -> {
+            List<Object> elements;
+            try {
+                elements = MAPPER.readValue(value, List.class);
+            } catch (IOException e) {
+                throw new IOException("Could not map " + value + " to array", e);
+            }
+
+            List<Object> objectArray = new ArrayList<>(elements.size());
+            for (Object element : elements) {
+                if (element instanceof Map && elementSchema.getType() == Schema.Type.RECORD) {
+                    objectArray.add(this.build(elementSchema, (Map<String, ?>) element));
+                } else {
+                    objectArray.add(elementConverter.convert(asString(element)));
+                }
+            }
+            return objectArray;
+        };
+    }
+
+    private static String asString(Object value) {
+        if (value == null || value instanceof String) {
+            return (String) value;
+        }
+        return GSON.toJson(value);
+    }
+}
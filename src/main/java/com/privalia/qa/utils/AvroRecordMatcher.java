@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2018 Privalia (http://privalia.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.privalia.qa.utils;
+
+import org.apache.avro.generic.GenericRecord;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Checks avro records against a list of conditions (json path expression, operation, expected value).
+ * <p>
+ * The expressions are compiled once into {@link AvroFieldPath}s, so the values are read directly from the fields of
+ * each record instead of converting every record to json and parsing it again for every condition. Conditions
+ * that can be checked cheaply (equal over a compiled expression) are evaluated first, so most of the records that
+ * do not match are discarded after reading a single field
+ */
+public class AvroRecordMatcher {
+
+    /**
+     * Evaluates an operation (equal, not equal, contains...) over a value
+     */
+    public interface ConditionEvaluator {
+        boolean test(String value, String operation, String expected);
+    }
+
+    private final List<Condition> conditions = new ArrayList<>();
+
+    private final ConditionEvaluator evaluator;
+
+    private static final class Condition {
+
+        private final AvroFieldPath path;
+
+        private final String operation;
+
+        private final String expected;
+
+        private Condition(AvroFieldPath path, String operation, String expected) {
+            this.path = path;
+            this.operation = operation;
+            this.expected = expected;
+        }
+
+        private int cost() {
+            if ("equal".equals(operation)) {
+                return path.isCompiled() ? 0 : 2;
+            }
+            return path.isCompiled() ? 1 : 3;
+        }
+    }
+
+    /**
+     * Compiles the conditions.
+     *
+     * @param conditions     list of conditions (json path expression, operation, expected value)
+     * @param evaluator      evaluates the operation of each condition over the value read from the record
+     * @param jsonPathReader evaluates a json path expression over the json representation of a record, for the
+     *                       expressions that cannot be read directly from the record
+     */
+    public AvroRecordMatcher(List<List<String>> conditions, ConditionEvaluator evaluator, BiFunction<String, String, String> jsonPathReader) {
+        this.evaluator = evaluator;
+        for (List<String> row : conditions) {
+            this.conditions.add(new Condition(new AvroFieldPath(row.get(0), jsonPathReader), row.get(1), row.get(2)));
+        }
+        this.conditions.sort(Comparator.comparingInt(Condition::cost));
+    }
+
+    /**
+     * Returns true if the record meets all the conditions
+     *
+     * @param record the record
+     * @return true if all the conditions are met
+     */
+    public boolean matches(GenericRecord record) {
+        AvroFieldPath.RecordJson json = new AvroFieldPath.RecordJson(record);
+        for (Condition condition : conditions) {
+            String value = condition.path.read(record, json);
+            if (!evaluator.test(value, condition.operation, condition.expected)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -49,12 +49,17 @@ abstract public class BaseGTest extends AbstractTestNGCucumberTests {
     }
 
     /**
-     * Method executed after a suite.
+     * Method executed after a suite. Releases the resources that are shared
+     * by all the scenarios in the suite
      *
      * @param context the context
      */
     @AfterSuite(alwaysRun = true)
     public void afterGSuite(ITestContext context) {
+        KafkaUtil.INSTANCE.getKafkaUtils().closeProducer();
+        KafkaUtil.INSTANCE.getKafkaUtils().closeAdminClient();
+        KafkaUtil.INSTANCE.getKafkaUtils().discardSnapshots();
+        RestClientUtil.INSTANCE.getRestClientUtils().close();
     }
 
     /**
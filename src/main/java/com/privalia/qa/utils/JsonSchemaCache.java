@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2018 Privalia (http://privalia.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.privalia.qa.utils;
+
+import com.github.fge.jackson.JsonLoader;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.github.fge.jsonschema.main.JsonSchema;
+import com.github.fge.jsonschema.main.JsonSchemaFactory;
+import org.apache.commons.io.IOUtils;
+import org.hjson.JsonValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of compiled json schemas, keyed by the path of the resource that contains the schema.
+ * <p>
+ * Each schema is read, parsed and compiled the first time it is used, and the compiled schema is shared by all the
+ * following validations (compiled schemas are thread safe, so scenarios running in parallel share them). Optionally,
+ * the modification time of the resource is checked before every use, and the schema is compiled again if the
+ * resource was modified
+ */
+public class JsonSchemaCache {
+
+    private final Logger logger = LoggerFactory.getLogger(JsonSchemaCache.class);
+
+    private final JsonSchemaFactory factory = JsonSchemaFactory.byDefault();
+
+    private final ConcurrentMap<String, CachedSchema> schemas = new ConcurrentHashMap<>();
+
+    private final boolean checkModified;
+
+    private final AtomicLong compilations = new AtomicLong();
+
+    /**
+     * A compiled schema and the modification time of its resource
+     */
+    private static final class CachedSchema {
+
+        private final JsonSchema schema;
+
+        private final long lastModified;
+
+        private CachedSchema(JsonSchema schema, long lastModified) {
+            this.schema = schema;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * Instantiates a new cache.
+     *
+     * @param checkModified if true, schemas are compiled again when their resource is modified
+     */
+    public JsonSchemaCache(boolean checkModified) {
+        this.checkModified = checkModified;
+    }
+
+    /**
+     * Returns the compiled schema contained in the given resource
+     *
+     * @param resource path of the resource (i.e. schemas/responseSchema.json)
+     * @return the compiled schema
+     * @throws IOException         if the resource does not exist or cannot be read
+     * @throws ProcessingException if the resource is not a valid json schema
+     */
+    public JsonSchema get(String resource) throws IOException, ProcessingException {
+        URL url = getClass().getClassLoader().getResource(resource);
+        if (url == null) {
+            throw new IOException("File not found: " + resource);
+        }
+
+        CachedSchema cached = this.schemas.get(resource);
+        if (cached != null && this.checkModified && cached.lastModified != this.lastModified(url)) {
+            this.logger.debug("Schema {} was modified, compiling it again", resource);
+            this.schemas.remove(resource, cached);
+            cached = null;
+        }
+        if (cached != null) {
+            return cached.schema;
+        }
+
+        try {
+            return this.schemas.computeIfAbsent(resource, key -> this.compile(url)).schema;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (IllegalArgumentException e) {
+            if (e.getCause() instanceof ProcessingException) {
+                throw (ProcessingException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private CachedSchema compile(URL url) {
+        long lastModified = this.checkModified ? this.lastModified(url) : 0;
+        try (InputStream stream = url.openStream()) {
+            String json = JsonValue.readHjson(IOUtils.toString(stream, StandardCharsets.UTF_8)).toString();
+            JsonSchema schema = this.factory.getJsonSchema(JsonLoader.fromString(json));
+            this.compilations.incrementAndGet();
+            return new CachedSchema(schema, lastModified);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ProcessingException e) {
+            throw new IllegalArgumentException("Invalid json schema in " + url, e);
+        }
+    }
+
+    private long lastModified(URL url) {
+        try {
+            if ("file".equals(url.getProtocol())) {
+                return new File(url.toURI()).lastModified();
+            }
+            return url.openConnection().getLastModified();
+        } catch (IOException | URISyntaxException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the number of schemas compiled since the cache was created
+     *
+     * @return number of compilations
+     */
+    public long getCompilations() {
+        return this.compilations.get();
+    }
+
+    /**
+     * Removes all the schemas from the cache
+     */
+    public void clear() {
+        this.schemas.clear();
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2018 Privalia (http://privalia.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.privalia.qa.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Evaluates a set of json path expressions over a json document in a single streaming pass.
+ * <p>
+ * The document is read token by token, and only the elements selected by the expressions are kept in memory, so
+ * very large documents (i.e. the body of a response of several hundred MB) can be checked without building the
+ * whole document in memory, and without parsing it again for every expression. The parsing stops as soon as all
+ * the expressions have been found. For the expressions used to get the size of an array, the elements of the array
+ * are counted without being kept in memory.
+ * <p>
+ * Only definite paths are supported: names and indexes, such as {@code $.store.book[0].title},
+ * {@code $['store']['book']} or {@code $.[0].userId}. Wildcards, deep scan, filters, slices and functions require the
+ * whole document, use {@link #isSupported(String)} to check if an expression can be evaluated
+ */
+public class JsonStreamEvaluator {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private static final Pattern SEGMENT = Pattern.compile("\\.?\\[(\\d+)\\]|\\.?\\['([^']*)'\\]|\\.?\\[\"([^\"]*)\"\\]|\\.([^.\\[\\]*()?@,:~'\" ]+)");
+
+    private final Node root = new Node();
+
+    private int targets;
+
+    private int remaining;
+
+    private final Set<String> found = new HashSet<>();
+
+    private final Map<String, String> values = new HashMap<>();
+
+    private final Map<String, Integer> sizes = new HashMap<>();
+
+    /**
+     * Expressions that select an element of the document
+     */
+    private static final class Node {
+
+        private final Map<Object, Node> children = new HashMap<>();
+
+        private final List<String> paths = new ArrayList<>();
+
+        private final List<String> values = new ArrayList<>();
+
+        private final List<String> sizes = new ArrayList<>();
+    }
+
+    /**
+     * Returns true if the expression can be evaluated in streaming mode
+     *
+     * @param expression json path expression
+     * @return true if the expression only contains names and indexes
+     */
+    public static boolean isSupported(String expression) {
+        return parse(expression) != null;
+    }
+
+    private static List<Object> parse(String expression) {
+        if (expression == null || !expression.startsWith("$")) {
+            return null;
+        }
+        List<Object> segments = new ArrayList<>();
+        Matcher matcher = SEGMENT.matcher(expression);
+        int position = 1;
+        while (position < expression.length()) {
+            if (!matcher.find(position) || matcher.start() != position) {
+                return null;
+            }
+            if (matcher.group(1) != null) {
+                segments.add(Integer.valueOf(matcher.group(1)));
+            } else {
+                segments.add(matcher.group(2) != null ? matcher.group(2) : (matcher.group(3) != null ? matcher.group(3) : matcher.group(4)));
+            }
+            position = matcher.end();
+        }
+        return segments;
+    }
+
+    private Node node(String expression) {
+        List<Object> segments = parse(expression);
+        if (segments == null) {
+            throw new IllegalArgumentException("The expression '" + expression + "' cannot be evaluated in streaming mode. Only names and indexes are supported (i.e. $.items[0].id)");
+        }
+        Node node = this.root;
+        for (Object segment : segments) {
+            node = node.children.computeIfAbsent(segment, key -> new Node());
+        }
+        return node;
+    }
+
+    /**
+     * Adds an expression whose presence in the document is checked
+     *
+     * @param expression json path expression
+     * @return this evaluator
+     */
+    public JsonStreamEvaluator addPath(String expression) {
+        Node node = this.node(expression);
+        if (!node.paths.contains(expression)) {
+            node.paths.add(expression);
+            this.targets++;
+        }
+        return this;
+    }
+
+    /**
+     * Adds an expression whose value (the text of a single value, or the json of an object or array) is needed
+     *
+     * @param expression json path expression
+     * @return this evaluator
+     */
+    public JsonStreamEvaluator addValue(String expression) {
+        Node node = this.node(expression);
+        if (!node.values.contains(expression)) {
+            node.values.add(expression);
+            this.targets++;
+        }
+        return this;
+    }
+
+    /**
+     * Adds an expression whose size (number of elements of an array) is needed
+     *
+     * @param expression json path expression
+     * @return this evaluator
+     */
+    public JsonStreamEvaluator addSize(String expression) {
+        Node node = this.node(expression);
+        if (!node.sizes.contains(expression)) {
+            node.sizes.add(expression);
+            this.targets++;
+        }
+        return this;
+    }
+
+    /**
+     * Evaluates the expressions over the given document
+     *
+     * @param document the json document
+     * @throws IOException if the document cannot be read or is not valid json
+     */
+    public void evaluate(InputStream document) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(document)) {
+            this.evaluate(parser);
+        }
+    }
+
+    /**
+     * Evaluates the expressions over the given document
+     *
+     * @param document the json document
+     * @throws IOException if the document cannot be read or is not valid json
+     */
+    public void evaluate(Reader document) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(document)) {
+            this.evaluate(parser);
+        }
+    }
+
+    private void evaluate(JsonParser parser) throws IOException {
+        this.found.clear();
+        this.values.clear();
+        this.sizes.clear();
+        this.remaining = this.targets;
+        if (parser.nextToken() != null) {
+            this.read(parser, this.root);
+        }
+    }
+
+    private boolean isDone() {
+        return this.remaining == 0;
+    }
+
+    /**
+     * Marks the expressions of one kind (path, value or size) of a node as evaluated. The same expression can be
+     * added with several kinds, and each one counts separately, so the parsing does not stop while the size of an
+     * array whose value was already captured is still being counted
+     */
+    private void complete(List<String> expressions) {
+        this.found.addAll(expressions);
+        this.remaining -= expressions.size();
+    }
+
+    private void read(JsonParser parser, Node node) throws IOException {
+        this.complete(node.paths);
+
+        if (node.values.isEmpty()) {
+            if (node.sizes.isEmpty() && node.children.isEmpty()) {
+                parser.skipChildren();
+            } else {
+                this.readStructure(parser, node);
+            }
+            return;
+        }
+
+        boolean structure = parser.currentToken().isStructStart();
+        String value = this.capture(parser);
+        for (String expression : node.values) {
+            this.values.put(expression, value);
+        }
+        this.complete(node.values);
+        if (structure && (!node.sizes.isEmpty() || !node.children.isEmpty())) {
+            try (JsonParser element = FACTORY.createParser(value)) {
+                element.nextToken();
+                this.readStructure(element, node);
+            }
+        } else {
+            this.complete(node.sizes);
+        }
+    }
+
+    private void readStructure(JsonParser parser, Node node) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_ARRAY) {
+            int index = 0;
+            while (!this.isDone() && parser.nextToken() != JsonToken.END_ARRAY) {
+                this.readChild(parser, node.children.get(index));
+                index++;
+            }
+            for (String expression : node.sizes) {
+                this.sizes.put(expression, index);
+            }
+        } else if (token == JsonToken.START_OBJECT) {
+            while (!this.isDone() && parser.nextToken() == JsonToken.FIELD_NAME) {
+                Node child = node.children.get(parser.getCurrentName());
+                parser.nextToken();
+                this.readChild(parser, child);
+            }
+        }
+        this.complete(node.sizes);
+    }
+
+    private void readChild(JsonParser parser, Node child) throws IOException {
+        if (child != null) {
+            this.read(parser, child);
+        } else {
+            parser.skipChildren();
+        }
+    }
+
+    private String capture(JsonParser parser) throws IOException {
+        switch (parser.currentToken()) {
+            case START_OBJECT:
+            case START_ARRAY:
+                StringWriter writer = new StringWriter();
+                try (JsonGenerator generator = FACTORY.createGenerator(writer)) {
+                    generator.copyCurrentStructure(parser);
+                }
+                return writer.toString();
+            case VALUE_NUMBER_FLOAT:
+                return String.valueOf(parser.getDoubleValue());
+            case VALUE_NULL:
+                return "null";
+            default:
+                return parser.getText();
+        }
+    }
+
+    /**
+     * Returns true if the element selected by the expression was found in the document
+     *
+     * @param expression json path expression
+     * @return true if found
+     */
+    public boolean isFound(String expression) {
+        return this.found.contains(expression);
+    }
+
+    /**
+     * Returns the value of the element selected by the expression
+     *
+     * @param expression json path expression (added with {@link #addValue(String)})
+     * @return the text of the value, the json of the object or array, or null if the element was not found
+     */
+    public String getValue(String expression) {
+        return this.values.get(expression);
+    }
+
+    /**
+     * Returns the size of the array selected by the expression
+     *
+     * @param expression json path expression (added with {@link #addSize(String)})
+     * @return number of elements of the array, or null if the element was not found or is not an array
+     */
+    public Integer getSize(String expression) {
+        return this.sizes.get(expression);
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2018 Privalia (http://privalia.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.privalia.qa.utils;
+
+import com.csvreader.CsvReader;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.avro.Schema;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the records of a file one by one, as key/value pairs ready to be sent to a kafka topic. Only the next
+ * record is kept in memory, so files of any size can be read.
+ * <p>
+ * Supported formats:
+ * <ul>
+ * <li>json: one json object per line. The value is the line itself</li>
+ * <li>csv: the first row contains the name of the columns. The value is a json object with the values of the row</li>
+ * <li>avro: one json object per line, converted to an avro record with the given schema</li>
+ * </ul>
+ * If a schema is given, json and csv records are also converted to avro records. The key of every record can be
+ * taken from one of its fields (or columns), otherwise the records have no key
+ */
+public class KafkaRecordFileReader implements Iterator<Map.Entry<String, Object>>, Closeable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() { };
+
+    private final String format;
+
+    private final String keyField;
+
+    private final Schema schema;
+
+    private final AvroRecordBuilder avroRecordBuilder;
+
+    private BufferedReader lineReader;
+
+    private CsvReader csvReader;
+
+    private String[] columns;
+
+    private Map.Entry<String, Object> next;
+
+    private long lineNumber;
+
+    /**
+     * Instantiates a new reader.
+     *
+     * @param reader            reader of the file
+     * @param format            format of the file (json, csv or avro)
+     * @param keyField          name of the field (or column) used as key of the records (can be null)
+     * @param schema            schema used to convert the records to avro (can be null, except for the avro format)
+     * @param avroRecordBuilder builder used to convert the records to avro
+     * @throws IOException      IOException
+     */
+    public KafkaRecordFileReader(Reader reader, String format, String keyField, Schema schema, AvroRecordBuilder avroRecordBuilder) throws IOException {
+        this.format = format;
+        this.keyField = keyField;
+        this.schema = schema;
+        this.avroRecordBuilder = avroRecordBuilder;
+
+        switch (format) {
+            case "json":
+                this.lineReader = new BufferedReader(reader);
+                break;
+
+            case "avro":
+                if (schema == null) {
+                    throw new IllegalArgumentException("An avro schema is required to read avro records");
+                }
+                this.lineReader = new BufferedReader(reader);
+                break;
+
+            case "csv":
+                this.csvReader = new CsvReader(reader);
+                if (this.csvReader.readRecord()) {
+                    this.columns = this.csvReader.getValues();
+                    this.lineNumber = 1;
+                }
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unsupported file format: " + format);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (this.next == null) {
+            try {
+                this.next = (this.csvReader != null) ? this.readCsvRecord() : this.readJsonRecord();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error reading " + this.format + " record at line " + this.lineNumber, e);
+            }
+        }
+        return this.next != null;
+    }
+
+    @Override
+    public Map.Entry<String, Object> next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Map.Entry<String, Object> record = this.next;
+        this.next = null;
+        return record;
+    }
+
+    private Map.Entry<String, Object> readJsonRecord() throws IOException {
+        String line;
+        do {
+            line = this.lineReader.readLine();
+            if (line == null) {
+                return null;
+            }
+            this.lineNumber++;
+        } while (line.trim().isEmpty());
+
+        if (this.keyField == null && this.schema == null) {
+            return new AbstractMap.SimpleImmutableEntry<>(null, line);
+        }
+
+        Map<String, Object> fields = MAPPER.readValue(line, MAP_TYPE);
+        String key = null;
+        if (this.keyField != null) {
+            Object field = fields.get(this.keyField);
+            key = (field == null || field instanceof String) ? (String) field : MAPPER.writeValueAsString(field);
+        }
+
+        Object value = (this.schema != null) ? this.avroRecordBuilder.build(this.schema, fields) : line;
+        return new AbstractMap.SimpleImmutableEntry<>(key, value);
+    }
+
+    private Map.Entry<String, Object> readCsvRecord() throws IOException {
+        if (this.columns == null || !this.csvReader.readRecord()) {
+            return null;
+        }
+        this.lineNumber++;
+
+        Map<String, String> row = new LinkedHashMap<>();
+        for (int i = 0; i < this.columns.length; i++) {
+            row.put(this.columns[i], this.csvReader.get(i));
+        }
+
+        String key = (this.keyField != null) ? row.get(this.keyField) : null;
+        Object value = (this.schema != null) ? this.avroRecordBuilder.build(this.schema, row) : MAPPER.writeValueAsString(row);
+        return new AbstractMap.SimpleImmutableEntry<>(key, value);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.lineReader != null) {
+            this.lineReader.close();
+        }
+        if (this.csvReader != null) {
+            this.csvReader.close();
+        }
+    }
+}
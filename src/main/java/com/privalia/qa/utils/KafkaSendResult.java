@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2018 Privalia (http://privalia.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.privalia.qa.utils;
+
+/**
+ * Summary of a bulk send operation to a kafka topic
+ */
+public class KafkaSendResult {
+
+    private final int total;
+
+    private final int failed;
+
+    private final long elapsedMillis;
+
+    private final LatencyHistogram latencies;
+
+    /**
+     * Instantiates a new result.
+     *
+     * @param total         number of records that were sent
+     * @param failed        number of records that were not acknowledged by kafka
+     * @param elapsedMillis total time of the operation in milliseconds
+     */
+    public KafkaSendResult(int total, int failed, long elapsedMillis) {
+        this(total, failed, elapsedMillis, null);
+    }
+
+    /**
+     * Instantiates a new result that also contains the acknowledgement latency of every record
+     *
+     * @param total         number of records that were sent
+     * @param failed        number of records that were not acknowledged by kafka
+     * @param elapsedMillis total time of the operation in milliseconds
+     * @param latencies     acknowledgement latencies (can be null)
+     */
+    public KafkaSendResult(int total, int failed, long elapsedMillis, LatencyHistogram latencies) {
+        this.total = total;
+        this.failed = failed;
+        this.elapsedMillis = elapsedMillis;
+        this.latencies = latencies;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public int getSucceeded() {
+        return total - failed;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * Returns the number of acknowledged records per second
+     *
+     * @return records per second
+     */
+    public double getRecordsPerSecond() {
+        if (elapsedMillis == 0) {
+            return this.getSucceeded();
+        }
+        return this.getSucceeded() * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        String summary = String.format("%d records sent in %d ms (%.2f records/sec), %d failed", total, elapsedMillis, this.getRecordsPerSecond(), failed);
+        return (latencies == null) ? summary : summary + ", ack latency " + latencies;
+    }
+}
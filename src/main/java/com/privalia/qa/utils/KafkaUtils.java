@@ -17,11 +17,6 @@
 package com.privalia.qa.utils;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.gson.Gson;
-import kafka.admin.AdminOperationException;
-import kafka.admin.AdminUtils;
-import kafka.admin.BrokerMetadata;
-import kafka.admin.RackAwareMode;
 import kafka.common.KafkaException;
 import kafka.common.TopicAlreadyMarkedForDeletionException;
 import kafka.utils.ZKStringSerializer$;
@@ -29,29 +24,46 @@ import kafka.utils.ZkUtils;
 import okhttp3.*;
 import org.I0Itec.zkclient.ZkClient;
 import org.I0Itec.zkclient.ZkConnection;
-import org.apache.avro.Schema;
-import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.commons.collections.map.HashedMap;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.NewPartitions;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.admin.TopicDescription;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.producer.*;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.TopicPartitionInfo;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.Deserializer;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import scala.Option;
-import scala.collection.JavaConversions;
-import scala.collection.JavaConverters;
-import scala.collection.Seq;
 
+import java.io.File;
 import java.io.IOException;
-import java.math.BigDecimal;
-import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
 
 /**
  * Generic utilities for operations over Kafka.
@@ -77,8 +89,6 @@ public class KafkaUtils {
 
     private boolean isSecureKafkaCluster;
 
-    private RackAwareMode rackAwareMode;
-
     private Properties props;
 
     private Properties propsConsumer;
@@ -87,6 +97,73 @@ public class KafkaUtils {
 
     private String schemaRegistryConnect;
 
+    private Producer<Object, Object> producer;
+
+    private AdminClient adminClient;
+
+    private int producerReuseCount;
+
+    private long readTimeoutMs;
+
+    private int readThreads;
+
+    private boolean tailCacheEnabled;
+
+    private long tailMaxBytes;
+
+    private int streamMaxInFlight;
+
+    private long streamProgressIntervalMs;
+
+    private final Map<String, TopicTail> topicTails = new ConcurrentHashMap<>();
+
+    private final Map<String, TopicSnapshot> topicSnapshots = new ConcurrentHashMap<>();
+
+    private File snapshotDirectory;
+
+    private long snapshotSegmentBytes;
+
+    private final AvroRecordBuilder avroRecordBuilder = new AvroRecordBuilder();
+
+    /**
+     * Header with the correlation id of the records sent with {@link #sendTaggedMessages(List, List, String, long, Map)}
+     */
+    public static final String CORRELATION_ID_HEADER = "gingerspec-correlation-id";
+
+    /**
+     * Header with the send time of the records sent with {@link #sendTaggedMessages(List, List, String, long, Map)}
+     */
+    public static final String SEND_TIMESTAMP_HEADER = "gingerspec-send-timestamp";
+
+    private static final OkHttpClient REGISTRY_CLIENT = new OkHttpClient();
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Map<String, String> schemaCache = new ConcurrentHashMap<>();
+
+    private final Map<String, LatestSchema> latestSchemaCache = new ConcurrentHashMap<>();
+
+    private long latestSchemaTtlMs;
+
+    private final AtomicLong schemaCacheHits = new AtomicLong();
+
+    private final AtomicLong schemaCacheMisses = new AtomicLong();
+
+    /**
+     * Schema fetched for a non numeric version (i.e. latest) and the moment it was fetched
+     */
+    private static class LatestSchema {
+
+        private final String schema;
+
+        private final long fetchedAt;
+
+        LatestSchema(String schema, long fetchedAt) {
+            this.schema = schema;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
     public Properties getPropsConsumer() {
         return propsConsumer;
     }
@@ -104,7 +181,15 @@ public class KafkaUtils {
         this.isSecureKafkaCluster = Boolean.valueOf(System.getProperty("KAFKA_SECURED", "false"));
         this.zookeeperConnect = System.getProperty("ZOOKEEPER_HOSTS", "0.0.0.0:2181");
         this.schemaRegistryConnect = System.getProperty("SCHEMA_REGISTRY_HOST", "http://localhost:8081");
-        this.rackAwareMode = RackAwareMode.Enforced$.MODULE$;
+        this.readTimeoutMs = Long.valueOf(System.getProperty("KAFKA_READ_TIMEOUT", "30000"));
+        this.readThreads = Integer.valueOf(System.getProperty("KAFKA_READ_THREADS", "1"));
+        this.tailCacheEnabled = Boolean.valueOf(System.getProperty("KAFKA_TAIL_CACHE", "true"));
+        this.tailMaxBytes = Long.valueOf(System.getProperty("KAFKA_TAIL_MAX_BYTES", "67108864"));
+        this.latestSchemaTtlMs = Long.valueOf(System.getProperty("SCHEMA_REGISTRY_LATEST_TTL", "0"));
+        this.streamMaxInFlight = Integer.valueOf(System.getProperty("KAFKA_STREAM_MAX_IN_FLIGHT", "1000"));
+        this.streamProgressIntervalMs = Long.valueOf(System.getProperty("KAFKA_STREAM_PROGRESS_INTERVAL", "5000"));
+        this.snapshotDirectory = new File(System.getProperty("KAFKA_SNAPSHOT_DIR", "target/kafka-snapshots"));
+        this.snapshotSegmentBytes = Long.valueOf(System.getProperty("KAFKA_SNAPSHOT_SEGMENT_BYTES", "1073741824"));
         this.topicConfig = new Properties();
         this.props = new Properties();
         props.put("bootstrap.servers", System.getProperty("KAFKA_HOSTS", "0.0.0.0:9092"));
@@ -156,6 +241,44 @@ public class KafkaUtils {
         return zkUtils;
     }
 
+    /**
+     * Returns the admin client used for all topic operations. The client is created the first time it is
+     * needed using the bootstrap servers of the producer properties, and it is reused until
+     * {@link #closeAdminClient()} is called
+     *
+     * @return the admin client
+     */
+    public synchronized AdminClient getAdminClient() {
+        if (this.adminClient == null) {
+            Properties adminProps = new Properties();
+            adminProps.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, this.props.get(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG));
+            adminProps.put(AdminClientConfig.REQUEST_TIMEOUT_MS_CONFIG, this.connectionTimeoutMs);
+            logger.debug("Creating new kafka admin client with properties {}", adminProps);
+            this.adminClient = AdminClient.create(adminProps);
+        }
+        return this.adminClient;
+    }
+
+    /**
+     * Closes the admin client shared by all topic operations (if any)
+     */
+    public synchronized void closeAdminClient() {
+        if (this.adminClient != null) {
+            logger.debug("Closing kafka admin client");
+            this.adminClient.close();
+            this.adminClient = null;
+        }
+    }
+
+    /**
+     * Returns the number of partitions used for new topics when no number is given (-DKAFKA_PARTITIONS, 1 by default)
+     *
+     * @return default number of partitions
+     */
+    public int getDefaultPartitions() {
+        return this.partitions;
+    }
+
     /**
      * Returns the number of partitions for the given topic
      *
@@ -163,13 +286,19 @@ public class KafkaUtils {
      * @return Number of partitions for the topic
      */
     public int getPartitions(String topicName) {
-        List<?> partitions = JavaConversions.seqAsJavaList(
-                zkUtils.getPartitionsForTopics(
-                        JavaConversions.asScalaBuffer(Collections.singletonList(topicName))).head()._2());
-        return partitions.size();
-
+        return this.describeTopics(Collections.singletonList(topicName)).get(topicName).partitions().size();
     }
 
+    /**
+     * Describes all the given topics with a single request
+     *
+     * @param topicNames Names of the topics
+     * @return Description of each topic (partitions, leaders and replicas)
+     * @throws KafkaException if any of the topics could not be described
+     */
+    public Map<String, TopicDescription> describeTopics(Collection<String> topicNames) throws KafkaException {
+        return this.waitFor(this.getAdminClient().describeTopics(topicNames).all(), "describing topics " + topicNames);
+    }
 
     /**
      * Create a Kafka topic.
@@ -180,9 +309,69 @@ public class KafkaUtils {
      */
     public boolean createTopic(String topicName) throws KafkaException {
         logger.debug("Creating topic with name: " + topicName);
-        AdminUtils.createTopic(zkUtils, topicName, partitions, replication, topicConfig, rackAwareMode);
+        this.createTopics(Collections.singletonMap(topicName, this.partitions), false);
         logger.debug("Topic created correctly with name: " + topicName);
-        return AdminUtils.topicExists(zkUtils, topicName);
+        return this.listTopics().contains(topicName);
+    }
+
+    /**
+     * Creates all the given topics with a single request, using the default number of partitions,
+     * replication factor and configuration
+     *
+     * @param topicNames  Names of the topics
+     * @param ifNotExists If true, topics that already exist are ignored. Otherwise, they produce an error
+     * @throws KafkaException if any of the topics could not be created
+     * @see #createTopics(Map, boolean)
+     */
+    public void createTopics(Collection<String> topicNames, boolean ifNotExists) throws KafkaException {
+        Map<String, Integer> topics = new LinkedHashMap<>();
+        for (String topicName : topicNames) {
+            topics.put(topicName, this.partitions);
+        }
+        this.createTopics(topics, ifNotExists);
+    }
+
+    /**
+     * Creates all the given topics with a single request, and waits until the metadata of every topic shows a
+     * leader for each one of its partitions
+     *
+     * @param topics      Name and number of partitions of each topic
+     * @param ifNotExists If true, topics that already exist are ignored. Otherwise, they produce an error
+     * @throws KafkaException if any of the topics could not be created
+     */
+    public void createTopics(Map<String, Integer> topics, boolean ifNotExists) throws KafkaException {
+
+        Map<String, String> configs = new HashMap<>();
+        for (String name : this.topicConfig.stringPropertyNames()) {
+            configs.put(name, this.topicConfig.getProperty(name));
+        }
+
+        List<NewTopic> newTopics = new ArrayList<>();
+        for (Map.Entry<String, Integer> topic : topics.entrySet()) {
+            newTopics.add(new NewTopic(topic.getKey(), topic.getValue(), (short) this.replication).configs(configs));
+        }
+
+        logger.debug("Creating topics {}", topics.keySet());
+        Map<String, KafkaFuture<Void>> results = this.getAdminClient().createTopics(newTopics).values();
+        List<String> failed = new ArrayList<>();
+        for (Map.Entry<String, KafkaFuture<Void>> result : results.entrySet()) {
+            try {
+                this.waitFor(result.getValue(), "creating topic " + result.getKey());
+            } catch (KafkaException e) {
+                if (ifNotExists && e.getCause() instanceof TopicExistsException) {
+                    logger.debug("Topic {} already exists", result.getKey());
+                } else {
+                    logger.error("Topic {} could not be created: {}", result.getKey(), e.getMessage());
+                    failed.add(result.getKey());
+                }
+            }
+        }
+
+        if (!failed.isEmpty()) {
+            throw new KafkaException("Topics " + failed + " could not be created");
+        }
+
+        this.waitForMetadata(topics.keySet(), true);
     }
 
     /**
@@ -195,9 +384,26 @@ public class KafkaUtils {
      */
     public boolean deleteTopic(String topicName) throws KafkaException, TopicAlreadyMarkedForDeletionException {
         logger.debug("Deleting topic with name: " + topicName);
-        AdminUtils.deleteTopic(zkUtils, topicName);
+        this.deleteTopics(Collections.singletonList(topicName));
         logger.debug("Topic with name: " + topicName + " correctly deleted");
-        return !AdminUtils.topicExists(zkUtils, topicName);
+        return !this.listTopics().contains(topicName);
+    }
+
+    /**
+     * Deletes all the given topics with a single request, and waits until none of them is listed
+     * in the cluster metadata
+     *
+     * @param topicNames Names of the topics
+     * @throws KafkaException if any of the topics could not be deleted
+     */
+    public void deleteTopics(Collection<String> topicNames) throws KafkaException {
+        logger.debug("Deleting topics {}", topicNames);
+        this.waitFor(this.getAdminClient().deleteTopics(topicNames).all(), "deleting topics " + topicNames);
+        this.waitForMetadata(topicNames, false);
+        for (String topicName : topicNames) {
+            this.clearTopicTail(topicName);
+            this.discardSnapshot(topicName);
+        }
     }
 
     /**
@@ -207,7 +413,7 @@ public class KafkaUtils {
      * @throws KafkaException the kafka exception
      */
     public List<String> listTopics() throws KafkaException {
-        return scala.collection.JavaConversions.seqAsJavaList(zkUtils.getAllTopics());
+        return new ArrayList<>(this.waitFor(this.getAdminClient().listTopics().names(), "listing topics"));
     }
 
 
@@ -219,25 +425,99 @@ public class KafkaUtils {
      * @throws KafkaException the kafka exception
      */
     public void modifyTopicPartitioning(String topicName, int numPartitions) throws KafkaException {
-        if (AdminUtils.topicExists(zkUtils, topicName)) {
+        if (this.listTopics().contains(topicName)) {
             logger.debug("Altering topic {}", topicName);
             try {
-
-                Seq<String> names = JavaConverters.asScalaBuffer(Arrays.asList(topicName));
-                Seq<BrokerMetadata> brokers = AdminUtils.getBrokerMetadatas(zkUtils, RackAwareMode.Enforced$.MODULE$, Option.empty());
-                scala.collection.mutable.Map<String, scala.collection.Map<Object, Seq<Object>>> assignment = (scala.collection.mutable.Map<String, scala.collection.Map<Object, Seq<Object>>>) zkUtils.getPartitionAssignmentForTopics(names);
-                Map<String, scala.collection.Map<Object, Seq<Object>>> partitionaAssigmentMap = JavaConverters.mutableMapAsJavaMap(assignment);
-                AdminUtils.addPartitions(zkUtils, topicName, partitionaAssigmentMap.get(topicName), brokers, numPartitions, Option.empty(), false);
-
-                logger.debug("Topic {} altered with partitions : {}", topicName, partitions);
-            } catch (AdminOperationException aoe) {
-                logger.debug("Error while altering partitions for topic : {}", topicName, aoe);
+                Map<String, NewPartitions> newPartitions = Collections.singletonMap(topicName, NewPartitions.increaseTo(numPartitions));
+                this.waitFor(this.getAdminClient().createPartitions(newPartitions).all(), "altering partitions of topic " + topicName);
+                this.waitForPartitions(topicName, numPartitions);
+                logger.debug("Topic {} altered with partitions : {}", topicName, numPartitions);
+            } catch (KafkaException e) {
+                logger.debug("Error while altering partitions for topic : {}", topicName, e);
             }
         } else {
             logger.debug("Topic {} doesn't exists", topicName);
         }
     }
 
+    /**
+     * Waits until the given topics are present (and every partition has a leader) or absent in the cluster metadata
+     *
+     * @param topicNames Names of the topics
+     * @param present    true to wait until all topics exist, false to wait until none of them exists
+     */
+    private void waitForMetadata(Collection<String> topicNames, boolean present) {
+        long deadline = System.currentTimeMillis() + this.connectionTimeoutMs;
+        while (System.currentTimeMillis() < deadline) {
+            Set<String> existing = new HashSet<>(this.listTopics());
+            if (!present && Collections.disjoint(existing, topicNames)) {
+                return;
+            }
+            if (present && existing.containsAll(topicNames) && this.haveLeaders(topicNames)) {
+                return;
+            }
+            this.pause(100);
+        }
+        throw new KafkaException("Timeout waiting for topics " + topicNames + " to be " + (present ? "created" : "deleted"));
+    }
+
+    private void waitForPartitions(String topicName, int numPartitions) {
+        long deadline = System.currentTimeMillis() + this.connectionTimeoutMs;
+        while (this.getPartitions(topicName) < numPartitions) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new KafkaException("Timeout waiting for topic " + topicName + " to have " + numPartitions + " partitions");
+            }
+            this.pause(100);
+        }
+    }
+
+    private boolean haveLeaders(Collection<String> topicNames) {
+        try {
+            for (TopicDescription description : this.describeTopics(topicNames).values()) {
+                for (TopicPartitionInfo partition : description.partitions()) {
+                    if (partition.leader() == null) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        } catch (KafkaException e) {
+            logger.debug("Topics {} not ready yet: {}", topicNames, e.getMessage());
+            return false;
+        }
+    }
+
+    private void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KafkaException("Interrupted while waiting for kafka metadata", e);
+        }
+    }
+
+    /**
+     * Waits for the result of an admin operation, up to the connection timeout
+     *
+     * @param future    result of the operation
+     * @param operation description of the operation (for errors)
+     * @param <T>       type of the result
+     * @return the result of the operation
+     * @throws KafkaException if the operation fails or times out. The cause is the error returned by kafka
+     */
+    private <T> T waitFor(KafkaFuture<T> future, String operation) throws KafkaException {
+        try {
+            return future.get(this.connectionTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KafkaException("Interrupted while " + operation, e);
+        } catch (ExecutionException e) {
+            throw new KafkaException("Error " + operation + ": " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new KafkaException("Timeout " + operation, e);
+        }
+    }
+
     /**
      * Send a message to a Kafka topic.
      *
@@ -246,9 +526,9 @@ public class KafkaUtils {
      */
     @Deprecated
     public void sendMessage(String message, String topicName) {
-        Producer<String, String> producer = new KafkaProducer<>(props);
-        producer.send(new ProducerRecord<String, String>(topicName, message));
-        producer.close();
+        Producer<Object, Object> producer = this.getProducer();
+        producer.send(new ProducerRecord<>(topicName, message));
+        producer.flush();
     }
 
     /**
@@ -270,48 +550,23 @@ public class KafkaUtils {
         Class keyClass = this.getProperClass(keySerializer);
         Class valueClass = this.getProperClass(valueSerializer);
 
-        Object finalMessage = null;
-        Object finalKey = null;
-
-        //Value can be string, int or avro
-        if (valueClass.equals(String.class)) {
-            finalMessage = message.toString();
-        }
-        if (valueClass.equals(Long.class)) {
-            finalMessage = Long.parseLong(message);
-        }
-        if (valueClass.equals(GenericRecord.class)) {
-            GenericRecord record = this.getAvroRecords().get(message);
-            finalMessage = record;
-        }
-
-        //Key can be string or int
-        if (key != null) {
-            if (keyClass.equals(String.class)) {
-                finalKey = key.toString();
-            }
-            if (keyClass.equals(Long.class)) {
-                finalKey = Long.parseLong(key);
-            }
-        } else {
-            finalKey = null;
-        }
-
+        Object finalMessage = this.toRecordObject(message, valueClass);
+        Object finalKey = this.toRecordObject(key, keyClass);
 
         this.sendAndConfirmMessage(finalMessage, finalKey, topicName, timeoutSeconds, keyClass, valueClass);
 
     }
 
     private <K, V> void sendAndConfirmMessage(Object message, Object key, String topicName, long timeoutSeconds, K keyClass, V valueClass) throws InterruptedException, ExecutionException, TimeoutException {
-        Producer<K, V> producer = new KafkaProducer<>(props);
+        Producer<Object, Object> producer = this.getProducer();
         try {
             long time = System.currentTimeMillis();
 
-            ProducerRecord<K, V> record;
+            ProducerRecord<Object, Object> record;
             if (key != null) {
-                record = new ProducerRecord(topicName, key, message);
+                record = new ProducerRecord<>(topicName, key, message);
             } else {
-                record = new ProducerRecord(topicName, message);
+                record = new ProducerRecord<>(topicName, message);
             }
 
             RecordMetadata metadata = (RecordMetadata) producer.send(record).get(timeoutSeconds, TimeUnit.SECONDS);
@@ -320,12 +575,305 @@ public class KafkaUtils {
         } catch (InterruptedException | ExecutionException | TimeoutException e) {
             logger.error("Message not sent or acknowlegded by Kafka {}", e.getMessage());
             throw e;
-        } finally {
-            producer.flush();
-            producer.close();
         }
     }
 
+    /**
+     * Sends all the given messages to the topic without blocking on each acknowledgement. The records are
+     * pipelined by the producer (so they are grouped according to the linger.ms and batch.size producer
+     * properties) and the method waits for all of them to be acknowledged at the end. As in
+     * {@link #sendAndConfirmMessage(String, String, String, long)}, the type of the key and value is inferred
+     * from the producer properties for key and value serializer types
+     *
+     * @param messages       Messages to be sent
+     * @param keys           Key of each message (null to send all the messages without key)
+     * @param topicName      name of topic
+     * @param timeoutSeconds Number of seconds to wait for all the acknowledgements once all messages were sent
+     * @return summary of the operation (total, failed and elapsed time)
+     * @throws InterruptedException InterruptedException
+     */
+    public KafkaSendResult sendMessages(List<String> messages, List<String> keys, String topicName, long timeoutSeconds) throws InterruptedException {
+        return this.sendMessages(messages, keys, topicName, timeoutSeconds, null);
+    }
+
+    /**
+     * Same as {@link #sendMessages(List, List, String, long)}, but every record is tagged with a random correlation
+     * id ({@link #CORRELATION_ID_HEADER} header) and the time it was sent ({@link #SEND_TIMESTAMP_HEADER} header,
+     * milliseconds since epoch). This allows to follow the records through a pipeline of services that keep
+     * the headers, with {@link #measurePipelineLatency(String, Map)}
+     *
+     * @param messages       Messages to be sent
+     * @param keys           Key of each message (null to send all the messages without key)
+     * @param topicName      name of topic
+     * @param timeoutSeconds Number of seconds to wait for all the acknowledgements once all messages were sent
+     * @param sentTimestamps Map where the correlation id and send time of every record is stored
+     * @return summary of the operation (total, failed and elapsed time)
+     * @throws InterruptedException InterruptedException
+     */
+    public KafkaSendResult sendTaggedMessages(List<String> messages, List<String> keys, String topicName, long timeoutSeconds,
+                                              Map<String, Long> sentTimestamps) throws InterruptedException {
+        return this.sendMessages(messages, keys, topicName, timeoutSeconds, sentTimestamps);
+    }
+
+    private KafkaSendResult sendMessages(List<String> messages, List<String> keys, String topicName, long timeoutSeconds,
+                                         Map<String, Long> sentTimestamps) throws InterruptedException {
+
+        Class keyClass = this.getProperClass(this.props.getProperty("key.serializer"));
+        Class valueClass = this.getProperClass(this.props.getProperty("value.serializer"));
+
+        Producer<Object, Object> producer = this.getProducer();
+        List<Future<RecordMetadata>> futures = new ArrayList<>(messages.size());
+        int failed = 0;
+        long time = System.currentTimeMillis();
+
+        for (int i = 0; i < messages.size(); i++) {
+            Object finalKey = (keys != null) ? this.toRecordObject(keys.get(i), keyClass) : null;
+            Object finalMessage = this.toRecordObject(messages.get(i), valueClass);
+            ProducerRecord<Object, Object> record = new ProducerRecord<>(topicName, finalKey, finalMessage);
+            if (sentTimestamps != null) {
+                String correlationId = UUID.randomUUID().toString();
+                long timestamp = System.currentTimeMillis();
+                record.headers().add(CORRELATION_ID_HEADER, correlationId.getBytes(StandardCharsets.UTF_8));
+                record.headers().add(SEND_TIMESTAMP_HEADER, String.valueOf(timestamp).getBytes(StandardCharsets.UTF_8));
+                sentTimestamps.put(correlationId, timestamp);
+            }
+            try {
+                futures.add(producer.send(record));
+            } catch (org.apache.kafka.common.KafkaException e) {
+                logger.error("Message could not be sent to Kafka {}", e.getMessage());
+                failed++;
+            }
+        }
+
+        producer.flush();
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(timeoutSeconds);
+
+        for (Future<RecordMetadata> future : futures) {
+            try {
+                future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                logger.debug("Message not acknowlegded by Kafka {}", e.getMessage());
+                failed++;
+            }
+        }
+
+        KafkaSendResult result = new KafkaSendResult(messages.size(), failed, System.currentTimeMillis() - time);
+        logger.debug("Bulk send to topic {} finished: {}", topicName, result);
+        return result;
+    }
+
+    /**
+     * Sends messages to the topic at a fixed rate, until the given number of messages is sent or the given
+     * time has passed (whatever happens first). The acknowledgement latency of every message is recorded.
+     * <p>
+     * Messages are scheduled at regular intervals from the start of the operation. If the producer falls
+     * behind (i.e. send operations block because the buffer is full), the late messages are sent as soon as
+     * possible, so the returned throughput shows the rate really achieved
+     *
+     * @param topicName  name of the topic
+     * @param messages   returns the message to send for every index (starting at 0)
+     * @param keys       returns the key to use for every index (can be null)
+     * @param rate       target rate in messages per second
+     * @param count      max number of messages to send (0 for no limit)
+     * @param durationMs max time to send messages in milliseconds (0 for no limit)
+     * @return result of the operation, including the histogram of acknowledgement latencies
+     * @throws InterruptedException InterruptedException
+     */
+    public KafkaSendResult produceAtRate(String topicName, IntFunction<String> messages, IntFunction<String> keys,
+                                        int rate, int count, long durationMs) throws InterruptedException {
+
+        if (rate <= 0 || (count <= 0 && durationMs <= 0)) {
+            throw new IllegalArgumentException("A positive rate and a limit of messages or time are required");
+        }
+
+        Class keyClass = this.getProperClass(this.props.getProperty("key.serializer"));
+        Class valueClass = this.getProperClass(this.props.getProperty("value.serializer"));
+
+        Producer<Object, Object> producer = this.getProducer();
+        LatencyHistogram latencies = new LatencyHistogram();
+        AtomicInteger failed = new AtomicInteger();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long durationNanos = TimeUnit.MILLISECONDS.toNanos(durationMs);
+        int sent = 0;
+
+        while (count <= 0 || sent < count) {
+            long offset = sent * intervalNanos;
+            if (durationMs > 0 && offset >= durationNanos) {
+                break;
+            }
+            long scheduled = start + offset;
+
+            long wait;
+            while ((wait = scheduled - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException("Interrupted while producing messages to " + topicName);
+                }
+            }
+
+            Object finalKey = (keys != null) ? this.toRecordObject(keys.apply(sent), keyClass) : null;
+            Object finalMessage = this.toRecordObject(messages.apply(sent), valueClass);
+            long sendTime = System.nanoTime();
+            try {
+                producer.send(new ProducerRecord<>(topicName, finalKey, finalMessage), (metadata, exception) -> {
+                    if (exception != null) {
+                        failed.incrementAndGet();
+                    } else {
+                        latencies.record(System.nanoTime() - sendTime, TimeUnit.NANOSECONDS);
+                    }
+                });
+            } catch (org.apache.kafka.common.KafkaException e) {
+                logger.error("Message could not be sent to Kafka {}", e.getMessage());
+                failed.incrementAndGet();
+            }
+            sent++;
+        }
+
+        producer.flush();
+
+        KafkaSendResult result = new KafkaSendResult(sent, failed.get(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), latencies);
+        logger.debug("Load test on topic {} finished: {}", topicName, result);
+        return result;
+    }
+
+    /**
+     * Sends all the records returned by the iterator to the topic, reading them one by one. At most maxInFlight
+     * records are waiting for the acknowledgement of kafka at any time: when the limit is reached, no more records
+     * are read until kafka acknowledges some of them, so the memory used does not depend on the number of records.
+     * <p>
+     * The key of every record is converted to the type of the key serializer. The value is converted to the type
+     * of the value serializer when it is a string, and sent as is otherwise (i.e. an avro record)
+     *
+     * @param topicName          name of the topic
+     * @param records            key and value of the records to send
+     * @param maxInFlight        max number of records waiting for acknowledgement
+     * @param timeoutSeconds     Number of seconds to wait for the last acknowledgements once all records were sent
+     * @param progressIntervalMs the number of records sent is logged every progressIntervalMs milliseconds (0 to disable)
+     * @return result of the operation, including the histogram of acknowledgement latencies
+     * @throws InterruptedException InterruptedException
+     */
+    public KafkaSendResult streamRecords(String topicName, Iterator<? extends Map.Entry<String, ?>> records, int maxInFlight,
+                                         long timeoutSeconds, long progressIntervalMs) throws InterruptedException {
+
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("The max number of records in flight must be positive");
+        }
+
+        Class keyClass = this.getProperClass(this.props.getProperty("key.serializer"));
+        Class valueClass = this.getProperClass(this.props.getProperty("value.serializer"));
+
+        Producer<Object, Object> producer = this.getProducer();
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        LatencyHistogram latencies = new LatencyHistogram();
+        AtomicInteger failed = new AtomicInteger();
+        long start = System.nanoTime();
+        long progressIntervalNanos = TimeUnit.MILLISECONDS.toNanos(progressIntervalMs);
+        long nextProgress = start + progressIntervalNanos;
+        int sent = 0;
+
+        while (records.hasNext()) {
+            Map.Entry<String, ?> entry = records.next();
+            Object finalKey = this.toRecordObject(entry.getKey(), keyClass);
+            Object finalMessage = (entry.getValue() instanceof String) ? this.toRecordObject((String) entry.getValue(), valueClass) : entry.getValue();
+
+            inFlight.acquire();
+            long sendTime = System.nanoTime();
+            try {
+                producer.send(new ProducerRecord<>(topicName, finalKey, finalMessage), (metadata, exception) -> {
+                    if (exception != null) {
+                        failed.incrementAndGet();
+                    } else {
+                        latencies.record(System.nanoTime() - sendTime, TimeUnit.NANOSECONDS);
+                    }
+                    inFlight.release();
+                });
+            } catch (org.apache.kafka.common.KafkaException e) {
+                logger.error("Message could not be sent to Kafka {}", e.getMessage());
+                failed.incrementAndGet();
+                inFlight.release();
+            }
+            sent++;
+
+            if (progressIntervalNanos > 0 && System.nanoTime() - nextProgress >= 0) {
+                long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                logger.info("Sent {} records to topic {} in {} ms ({} records/sec)", sent, topicName, elapsedMillis, sent * 1000L / Math.max(1, elapsedMillis));
+                nextProgress += progressIntervalNanos;
+            }
+        }
+
+        producer.flush();
+        if (inFlight.tryAcquire(maxInFlight, timeoutSeconds, TimeUnit.SECONDS)) {
+            inFlight.release(maxInFlight);
+        } else {
+            int pending = maxInFlight - inFlight.availablePermits();
+            logger.debug("{} messages not acknowlegded by Kafka", pending);
+            failed.addAndGet(pending);
+        }
+
+        KafkaSendResult result = new KafkaSendResult(sent, failed.get(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), latencies);
+        logger.debug("Stream to topic {} finished: {}", topicName, result);
+        return result;
+    }
+
+    /**
+     * Converts the given string to the type used by the serializer (String, Long or a previously
+     * created avro record with that name)
+     *
+     * @param value     the value as string
+     * @param type      class of the serializer type
+     * @return          the object to use in the record
+     */
+    private Object toRecordObject(String value, Class type) {
+        if (value == null) {
+            return null;
+        }
+        if (type.equals(Long.class)) {
+            return Long.parseLong(value);
+        }
+        if (type.equals(GenericRecord.class)) {
+            return this.getAvroRecords().get(value);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the producer shared by all send operations. The producer is created with the current
+     * producer properties the first time it is needed, and it is reused until the properties change
+     * or {@link #closeProducer()} is called
+     *
+     * @return      the cached producer
+     */
+    private synchronized Producer<Object, Object> getProducer() {
+        if (this.producer == null) {
+            logger.debug("Creating new kafka producer with properties {}", this.props);
+            this.producer = new KafkaProducer<>(this.props);
+        } else {
+            this.producerReuseCount++;
+        }
+        return this.producer;
+    }
+
+    /**
+     * Closes the cached producer (if any). A new producer will be created on the next send operation
+     */
+    public synchronized void closeProducer() {
+        if (this.producer != null) {
+            logger.debug("Closing kafka producer. Producer was reused {} times", this.producerReuseCount);
+            this.producer.close();
+            this.producer = null;
+        }
+    }
+
+    /**
+     * Returns the number of times the cached producer was reused instead of creating a new one
+     *
+     * @return number of reuses
+     */
+    public int getProducerReuseCount() {
+        return this.producerReuseCount;
+    }
+
 
     /**
      * Returns the appropiate class for the given property
@@ -360,8 +908,12 @@ public class KafkaUtils {
     }
 
     /**
-     * Fetch messages from the given partition using poll(). Since there is no warranty that the pool will
-     * return messages, the function is enclosed in a loop for 5 seconds
+     * Fetch all messages from the given topic. The partitions of the topic are read from the beginning up to
+     * the end offsets they had when the read started, or until the read timeout (KAFKA_READ_TIMEOUT) expires.
+     * <p>
+     * All messages are kept in memory in a map indexed by the key of the record, so records that share the same
+     * key are collapsed into the last one. Use {@link #scanTopic(String, Predicate)} to check every record of
+     * big topics
      *
      * @param topic Name of the topic from which retrieve messages
      * @return List of messages in the topic
@@ -378,377 +930,739 @@ public class KafkaUtils {
     }
 
     public <K, V> Map readTopicFromBeginning(String topic, K keyClass, V valueClass) {
-        Map<K, V> result = new LinkedHashMap<>();
-        KafkaConsumer<K, V> consumer = new KafkaConsumer<>(propsConsumer);
-        consumer.subscribe(Arrays.asList(topic));
-
-        try {
-            long endTimeMillis = System.currentTimeMillis() + 5000;
-            while ((System.currentTimeMillis() < endTimeMillis)) {
-                ConsumerRecords<K, V> records = consumer.poll(100);
-                for (ConsumerRecord<K, V> record : records) {
-                    logger.debug(record.offset() + ": " + record.value());
-                    result.put(record.key(), record.value());
-                }
-                consumer.commitSync();
-            }
-        } finally {
-            consumer.unsubscribe();
-            consumer.close();
-        }
+        Map<K, V> result = Collections.synchronizedMap(new LinkedHashMap<>());
 
+        this.<K, V>scanTopic(topic, record -> {
+            result.put(record.key(), record.value());
+            return false;
+        });
 
         logger.debug("Found " + result.size() + " messages in topic " + topic + ". " + result.toString());
         return result;
     }
 
-
     /**
-     * Set remote schema registry url and port for all future requests
+     * Reads the given topic from the beginning and returns as soon as a record that matches the condition
+     * is found. Same as {@link #readTopicFromBeginning(String)}, the read stops when all partitions reach
+     * the end offsets they had when the read started or when the read timeout expires
      *
-     * @param host host (defaults to http://0.0.0.0:8081)
+     * @param topic     Name of the topic
+     * @param condition Condition the record must match
+     * @param <K>       type of the key
+     * @param <V>       type of the value
+     * @return true if a record matching the condition was found
      */
-    public void setSchemaRegistryUrl(String host) {
-        logger.debug("Setting schema registry remote url to " + host);
-        this.schemaRegistryConnect = host;
-    }
-
-    public String getSchemaRegistryUrl() {
-        logger.debug("Getting schema registry url");
-        return this.schemaRegistryConnect;
+    public <K, V> boolean topicContains(String topic, Predicate<ConsumerRecord<K, V>> condition) {
+        boolean found = this.scanTopic(topic, condition);
+        logger.debug("Matching message {} in topic {}", found ? "found" : "not found", topic);
+        return found;
     }
 
     /**
-     * Publish a new version of the schema under the given subject
+     * Scans the topic from the beginning, passing every record to the given visitor. Records are not stored,
+     * so memory usage does not depend on the size of the topic, and every record is visited (even if several
+     * records share the same key). The partitions are explicitly assigned (so no consumer group rebalance is
+     * needed) and their end offsets are captured before the first poll. The scan stops when the visitor returns
+     * true, when every partition reached its end offset, or when the read timeout expires.
+     * <p>
+     * If the number of read threads (KAFKA_READ_THREADS) is greater than 1, the partitions are distributed among
+     * several consumers that read them concurrently. In that case, the visitor may be called from several threads
+     * at the same time
+     * <p>
+     * If the tail cache is enabled (KAFKA_TAIL_CACHE, true by default) and a single read thread is used, the records read are kept in memory in a
+     * {@link TopicTail} until {@link #clearTopicTails()} is called (at the end of every scenario), so the next scans
+     * of the same topic visit those records first and then only fetch the new ones. Topics whose records go over
+     * KAFKA_TAIL_MAX_BYTES are read from the beginning every time, as if the cache was disabled
      *
-     * @param subject Name of the subject
-     * @param schema  Schema object as string
-     * @return response object from the schema server
-     * @throws IOException IOException
+     * @param topic   Name of the topic
+     * @param visitor Function applied to every record. Returning true stops the scan
+     * @param <K>     type of the key
+     * @param <V>     type of the value
+     * @return true if the scan was stopped by the visitor
      */
-    public Response registerNewSchema(String subject, String schema) throws IOException {
-        logger.debug("Registering new version of schema for subject " + subject);
+    public <K, V> boolean scanTopic(String topic, Predicate<ConsumerRecord<K, V>> visitor) {
 
-        String jsonEncodedString = "{\"schema\": " + JSONObject.quote(schema) + "}";
+        TopicSnapshot snapshot = this.topicSnapshots.get(topic);
+        if (snapshot != null) {
+            return this.scanSnapshot(snapshot, visitor);
+        }
 
-        OkHttpClient client = new OkHttpClient();
+        if (this.useTailCache()) {
+            TopicTail tail = this.topicTails.computeIfAbsent(topic, name -> new TopicTail(name, this.propsConsumer, this.tailMaxBytes));
+            if (!tail.isOverflowed()) {
+                return tail.scan(visitor, this.readTimeoutMs);
+            }
+        }
 
-        MediaType mediaType = MediaType.parse("application/vnd.schemaregistry.v1+json");
-        RequestBody body = RequestBody.create(mediaType, jsonEncodedString);
-        Request request = new Request.Builder()
-                .url(this.schemaRegistryConnect + "/subjects/" + subject + "/versions")
-                .post(body)
-                .addHeader("Content-Type", "application/vnd.schemaregistry.v1+json")
-                .build();
+        try (KafkaConsumer<K, V> consumer = new KafkaConsumer<>(propsConsumer)) {
+
+            List<PartitionInfo> partitionInfos = consumer.partitionsFor(topic);
+            if (partitionInfos == null || partitionInfos.isEmpty()) {
+                logger.debug("No partitions found for topic " + topic);
+                return false;
+            }
+
+            List<TopicPartition> partitions = new ArrayList<>();
+            for (PartitionInfo partitionInfo : partitionInfos) {
+                partitions.add(new TopicPartition(topic, partitionInfo.partition()));
+            }
 
-        return client.newCall(request).execute();
+            int threads = Math.min(this.readThreads, partitions.size());
+            if (threads > 1) {
+                return this.scanPartitionsInParallel(partitions, threads, visitor);
+            }
 
+            return this.scanPartitions(consumer, partitions, visitor, new AtomicBoolean(false));
+        }
     }
 
     /**
-     * Fetch version of the schema registered under the specified subject in the registry
+     * Distributes the partitions among the given number of consumers, each one running in its own thread
      *
-     * @param subject Subject name
-     * @param version Version of the schema to fetch
-     * @return Json encoded string of the schema
-     * @throws IOException IOException
+     * @param partitions Partitions to read
+     * @param threads    Number of concurrent consumers
+     * @param visitor    Function applied to every record. Returning true stops all the consumers
+     * @param <K>        type of the key
+     * @param <V>        type of the value
+     * @return true if the scan was stopped by the visitor
      */
-    public String getSchemaFromRegistry(String subject, String version) throws IOException {
-        logger.debug("Fetching schema version " + version + " from subject " + subject);
+    private <K, V> boolean scanPartitionsInParallel(List<TopicPartition> partitions, int threads, Predicate<ConsumerRecord<K, V>> visitor) {
 
-        OkHttpClient client = new OkHttpClient();
+        logger.debug("Reading " + partitions.size() + " partitions using " + threads + " consumers");
+        AtomicBoolean stop = new AtomicBoolean(false);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
 
-        Request request = new Request.Builder()
-                .url(this.schemaRegistryConnect + "/subjects/" + subject + "/versions/" + version)
-                .get()
-                .addHeader("Content-Type", "application/json")
-                .build();
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                List<TopicPartition> assignment = new ArrayList<>();
+                for (int j = i; j < partitions.size(); j += threads) {
+                    assignment.add(partitions.get(j));
+                }
+                futures.add(executor.submit(() -> {
+                    try (KafkaConsumer<K, V> consumer = new KafkaConsumer<>(propsConsumer)) {
+                        return this.scanPartitions(consumer, assignment, visitor, stop);
+                    }
+                }));
+            }
 
-        ObjectMapper om = new ObjectMapper();
-        ResponseBody response = client.newCall(request).execute().body();
-        Map fieldMapped = om.readValue(response.byteStream(), Map.class);
-        String schema = (String) fieldMapped.get("schema");
-        return schema;
+            boolean found = false;
+            for (Future<Boolean> future : futures) {
+                found |= future.get();
+            }
+            return found;
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KafkaException("Interrupted while reading partitions " + partitions, e);
+        } catch (ExecutionException e) {
+            throw new KafkaException("Error reading partitions " + partitions, e.getCause());
+        } finally {
+            stop.set(true);
+            executor.shutdown();
+        }
     }
 
     /**
-     * Modify a single property of the producer
+     * Reads the given partitions from the beginning with the given consumer until every partition reached the
+     * end offset it had when the read started, the read timeout expires, or the stop flag is set
      *
-     * @param key   Property name
-     * @param value Property new value
+     * @param consumer   Consumer to use
+     * @param partitions Partitions to assign to the consumer
+     * @param visitor    Function applied to every record. Returning true sets the stop flag
+     * @param stop       Flag shared by all the consumers reading the topic
+     * @param <K>        type of the key
+     * @param <V>        type of the value
+     * @return true if the read was stopped by the visitor
      */
-    public void modifyProducerProperties(String key, String value) {
-        this.props.put(key, value);
-    }
+    private <K, V> boolean scanPartitions(KafkaConsumer<K, V> consumer, List<TopicPartition> partitions, Predicate<ConsumerRecord<K, V>> visitor, AtomicBoolean stop) {
+
+        consumer.assign(partitions);
+        consumer.seekToBeginning(partitions);
+        Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+
+        Set<TopicPartition> pending = new HashSet<>(partitions);
+        pending.removeIf(partition -> consumer.position(partition) >= endOffsets.get(partition));
+
+        long endTimeMillis = System.currentTimeMillis() + this.readTimeoutMs;
+        while (!pending.isEmpty() && !stop.get() && System.currentTimeMillis() < endTimeMillis) {
+            ConsumerRecords<K, V> records = consumer.poll(100);
+            for (ConsumerRecord<K, V> record : records) {
+                logger.debug("{}-{}: {}", record.partition(), record.offset(), record.value());
+                if (visitor.test(record)) {
+                    stop.set(true);
+                    return true;
+                }
+                if (stop.get()) {
+                    return false;
+                }
+            }
+            pending.removeIf(partition -> consumer.position(partition) >= endOffsets.get(partition));
+        }
 
+        if (!pending.isEmpty() && !stop.get()) {
+            logger.warn("Read timeout of " + this.readTimeoutMs + " ms expired before reading all messages in partitions " + pending);
+        }
+
+        return false;
+    }
 
     /**
-     * Modify a single property of the producer
+     * Reads the topic from the beginning until the visitor returns true or the timeout expires. Unlike
+     * {@link #scanTopic(String, Predicate)}, the read does not stop when the end of the topic is reached, so records
+     * written to the topic while it is being read are also visited
      *
-     * @param key   Property name
-     * @param value Property new value
+     * @param topic     Name of the topic
+     * @param visitor   Function applied to every record. Returning true stops the read
+     * @param timeoutMs Maximum time to wait in milliseconds
+     * @param <K>       type of the key
+     * @param <V>       type of the value
+     * @return true if the read was stopped by the visitor
      */
-    public void modifyConsumerProperties(String key, String value) {
-        this.propsConsumer.put(key, value);
-    }
+    public <K, V> boolean followTopic(String topic, Predicate<ConsumerRecord<K, V>> visitor, long timeoutMs) {
+
+        try (KafkaConsumer<K, V> consumer = new KafkaConsumer<>(propsConsumer)) {
+
+            List<PartitionInfo> partitionInfos = consumer.partitionsFor(topic);
+            if (partitionInfos == null || partitionInfos.isEmpty()) {
+                logger.debug("No partitions found for topic " + topic);
+                return false;
+            }
+
+            List<TopicPartition> partitions = new ArrayList<>();
+            for (PartitionInfo partitionInfo : partitionInfos) {
+                partitions.add(new TopicPartition(topic, partitionInfo.partition()));
+            }
+
+            consumer.assign(partitions);
+            consumer.seekToBeginning(partitions);
+
+            long endTimeMillis = System.currentTimeMillis() + timeoutMs;
+
+            while (System.currentTimeMillis() < endTimeMillis) {
+                for (ConsumerRecord<K, V> record : consumer.poll(100)) {
+                    logger.debug("{}-{}: {}", record.partition(), record.offset(), record.value());
+                    if (visitor.test(record)) {
+                        return true;
+                    }
+                }
+            }
 
+            return false;
+        }
+    }
 
     /**
-     * given a json representation of the data, creates a generic record with the given schema
+     * Reads the output topic of a pipeline looking for the records sent with
+     * {@link #sendTaggedMessages(List, List, String, long, Map)}. Records are matched by the
+     * {@link #CORRELATION_ID_HEADER} header. The read stops when all the records are found or when the read timeout
+     * expires. The latency of each record is measured from the time the original record was sent until:
+     * <ul>
+     * <li>the time the record is consumed from the output topic (useRecordTimestamps false). This is an upper
+     * bound: records already written when the read starts count the time until they are read</li>
+     * <li>the timestamp of the record in the output topic (useRecordTimestamps true). This is only valid if the
+     * pipeline writes a new timestamp (LogAppendTime topics, or producers that do not copy the timestamp of the
+     * input record). Kafka Streams and mirroring services copy the CreateTime of the input record, so their
+     * latency is reported as 0</li>
+     * </ul>
      *
-     * @param key    Name of the generic record
-     * @param json   Json string with data
-     * @param schema Schema to be used to serialize the object
-     * @throws IOException IOException
+     * @param topic              Name of the output topic
+     * @param sentTimestamps     Correlation id and send time of every record sent
+     * @param useRecordTimestamps If true, the timestamp of the output records is used instead of the consume time
+     * @return result with the latencies of the matched records and the ids of the ones not found
      */
-    public void createGenericRecord(String key, String json, String schema) throws IOException {
-
-        /*
-          This is the official way of creating a generic record using the standard
-          library. However, the library requires the fields of type byte to be represented
-          in a very special way, which I never figured out what it was. Thats why i decided to
-          create my own method for creating a generic record
-         */
+    public PipelineLatencyResult measurePipelineLatency(String topic, Map<String, Long> sentTimestamps, boolean useRecordTimestamps) {
+
+        Set<String> unmatched = Collections.synchronizedSet(new HashSet<>(sentTimestamps.keySet()));
+        LatencyHistogram latencies = new LatencyHistogram();
+
+        if (!unmatched.isEmpty()) {
+            this.followTopic(topic, (ConsumerRecord<Object, Object> record) -> {
+                Header header = record.headers().lastHeader(CORRELATION_ID_HEADER);
+                if (header != null) {
+                    String correlationId = new String(header.value(), StandardCharsets.UTF_8);
+                    if (unmatched.remove(correlationId)) {
+                        long end = useRecordTimestamps ? record.timestamp() : System.currentTimeMillis();
+                        latencies.record(end - sentTimestamps.get(correlationId), TimeUnit.MILLISECONDS);
+                    }
+                }
+                return unmatched.isEmpty();
+            }, this.readTimeoutMs);
+        }
 
-        /*
-        Schema.Parser schemaParser = new Schema.Parser();
-        Schema s = schemaParser.parse(schema);
-        DecoderFactory decoderFactory = new DecoderFactory();
-        Decoder decoder = decoderFactory.jsonDecoder(s, json);
-        DatumReader<GenericData.Record> reader =
-                new GenericDatumReader<>(s);
-        GenericRecord genericRecord = reader.read(null, decoder);
-        this.avroRecords.put(key, genericRecord);
-        */
+        if (useRecordTimestamps && latencies.getCount() > 0 && latencies.getMax() == 0) {
+            logger.warn("All the end-to-end latencies in topic {} are 0 or less. The pipeline probably copies the timestamp of the input records, measure the latency with the consume time instead", topic);
+        }
+        PipelineLatencyResult result = new PipelineLatencyResult(sentTimestamps.size(), latencies, unmatched);
+        logger.debug("Pipeline latency measured in topic {}: {}", topic, result);
+        return result;
+    }
 
+    /**
+     * Returns the records of the topic with the given key. If the tail cache is enabled, only the records
+     * written since the last read of the topic are fetched, and the records are looked up by key in memory
+     *
+     * @param topic Name of the topic
+     * @param key   Key of the records (with the type returned by the key deserializer)
+     * @return records with that key
+     */
+    public List<ConsumerRecord<Object, Object>> getRecordsWithKey(String topic, Object key) {
+
+        if (this.useTailCache() && !this.topicSnapshots.containsKey(topic)) {
+            TopicTail tail = this.topicTails.computeIfAbsent(topic, name -> new TopicTail(name, this.propsConsumer, this.tailMaxBytes));
+            if (!tail.isOverflowed()) {
+                tail.scan(record -> false, this.readTimeoutMs);
+                if (!tail.isOverflowed()) {
+                    return tail.getRecordsWithKey(key);
+                }
+            }
+        }
 
-        /*
-          My way of creating a generic record
-         */
-        Map<String, String> propertyList = new HashedMap();
-        HashMap<String, String> result = new ObjectMapper().readValue(json, HashMap.class);
+        List<ConsumerRecord<Object, Object>> records = Collections.synchronizedList(new ArrayList<>());
+        this.scanTopic(topic, (ConsumerRecord<Object, Object> record) -> {
+            if (Objects.equals(key, record.key())) {
+                records.add(record);
+            }
+            return false;
+        });
+        return records;
+    }
 
-        for (String item : result.keySet()) {
+    private boolean useTailCache() {
+        return this.tailCacheEnabled && this.readThreads == 1;
+    }
 
-            try {
-                propertyList.put(item, result.get(item));
-            } catch (Exception e) {
-                propertyList.put(item, new Gson().toJson(result.get(item)));
-            }
+    /**
+     * Discards the records kept in memory for the given topic
+     *
+     * @param topic Name of the topic
+     */
+    public void clearTopicTail(String topic) {
+        TopicTail tail = this.topicTails.remove(topic);
+        if (tail != null) {
+            tail.close();
+        }
+    }
 
+    /**
+     * Discards the records kept in memory for all topics and closes their consumers
+     */
+    public void clearTopicTails() {
+        for (String topic : new ArrayList<>(this.topicTails.keySet())) {
+            this.clearTopicTail(topic);
         }
+    }
 
-        this.createGenericRecord(key, propertyList, schema);
+    /**
+     * Reads all the records of the topic and stores them in local files. From then on, all the reads of the topic
+     * (scanTopic, topicContains, readTopicFromBeginning...) use the local copy instead of kafka, until the snapshot
+     * is discarded. Records are stored as bytes and deserialized when read, so the consumer deserializers can
+     * still be changed after the snapshot is taken
+     *
+     * @param topic name of the topic
+     * @return the snapshot
+     * @throws IOException IOException
+     */
+    public TopicSnapshot snapshotTopic(String topic) throws IOException {
+        this.discardSnapshot(topic);
+        this.clearTopicTail(topic);
+        TopicSnapshot snapshot = TopicSnapshot.capture(topic, this.propsConsumer, new File(this.snapshotDirectory, topic), this.snapshotSegmentBytes, this.readTimeoutMs);
+        this.topicSnapshots.put(topic, snapshot);
+        logger.debug("Topic {} will be read from the snapshot in {} ({} records)", topic, snapshot.getDirectory(), snapshot.getRecordCount());
+        return snapshot;
+    }
 
+    /**
+     * Returns the snapshot of the topic
+     *
+     * @param topic name of the topic
+     * @return the snapshot, or null if no snapshot was taken
+     */
+    public TopicSnapshot getSnapshot(String topic) {
+        return this.topicSnapshots.get(topic);
     }
 
     /**
-     * Creates a {@link GenericRecord} to be sent through kafka using avro serializers.
-     * The message is stored in an internal map using the specified key for later use.
+     * Removes the snapshot of the topic (if any). The following reads of the topic will use kafka again
      *
-     * @param key          Name of the generic record
-     * @param propertyList List of properties and values
-     * @param schema       Schema to be used to serialize the object
+     * @param topic name of the topic
      */
-    public void createGenericRecord(String key, Map<String, String> propertyList, String schema) {
+    public void discardSnapshot(String topic) {
+        TopicSnapshot snapshot = this.topicSnapshots.remove(topic);
+        if (snapshot != null) {
+            snapshot.delete();
+        }
+    }
+
+    /**
+     * Removes the snapshots of all topics
+     */
+    public void discardSnapshots() {
+        for (String topic : new ArrayList<>(this.topicSnapshots.keySet())) {
+            this.discardSnapshot(topic);
+        }
+    }
 
+    private <K, V> boolean scanSnapshot(TopicSnapshot snapshot, Predicate<ConsumerRecord<K, V>> visitor) {
+        Deserializer<K> keyDeserializer = this.createDeserializer("key.deserializer", true);
+        Deserializer<V> valueDeserializer = this.createDeserializer("value.deserializer", false);
         try {
-            this.avroRecords.put(key, this.buildRecord(schema, propertyList));
+            return snapshot.scan(keyDeserializer, valueDeserializer, visitor);
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new KafkaException("Error reading the snapshot of topic " + snapshot.getTopic(), e);
+        } finally {
+            keyDeserializer.close();
+            valueDeserializer.close();
         }
     }
 
+    private <T> Deserializer<T> createDeserializer(String property, boolean isKey) {
+        Deserializer<T> deserializer;
+        try {
+            deserializer = (Deserializer<T>) Class.forName(this.propsConsumer.getProperty(property)).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new KafkaException("Could not create the " + property + " " + this.propsConsumer.getProperty(property), e);
+        }
+        Map<String, Object> configs = new HashMap<>();
+        for (String name : this.propsConsumer.stringPropertyNames()) {
+            configs.put(name, this.propsConsumer.getProperty(name));
+        }
+        deserializer.configure(configs, isKey);
+        return deserializer;
+    }
 
     /**
-     * Creates a {@link GenericRecord} given its schema and the list of key -> value
+     * Sets the directory where the snapshots of the topics are stored
      *
-     * @param schema                    Schema as string
-     * @param propertyList              Property list (Key -> Value)
-     * @return {@link GenericRecord}
-     * @throws IOException              the IOException
+     * @param snapshotDirectory the directory
      */
-    private GenericRecord buildRecord(String schema, Map<String, String> propertyList) throws IOException {
+    public void setSnapshotDirectory(File snapshotDirectory) {
+        this.snapshotDirectory = snapshotDirectory;
+    }
 
-        Schema.Parser parser = new Schema.Parser();
-        Schema s = parser.parse(schema);
-        GenericRecord avroRecord = new GenericData.Record(s);
+    public File getSnapshotDirectory() {
+        return this.snapshotDirectory;
+    }
 
-        //for cases of null records
-        if (propertyList == null) {
-            return null;
-        }
+    /**
+     * Enables or disables keeping the records read from every topic in memory between reads
+     *
+     * @param tailCacheEnabled true to enable the cache
+     */
+    public void setTailCacheEnabled(boolean tailCacheEnabled) {
+        this.tailCacheEnabled = tailCacheEnabled;
+        this.clearTopicTails();
+    }
 
-        for (Map.Entry<String, String> entry : propertyList.entrySet()) {
+    public boolean isTailCacheEnabled() {
+        return this.tailCacheEnabled;
+    }
 
-            Schema.Field field = s.getField(entry.getKey());
-            if (field != null) {
+    /**
+     * Sets the maximum memory (estimated from the serialized size of the records) used to keep the records
+     * of a single topic
+     *
+     * @param tailMaxBytes max size in bytes
+     */
+    public void setTailMaxBytes(long tailMaxBytes) {
+        this.tailMaxBytes = tailMaxBytes;
+        this.clearTopicTails();
+    }
 
-                String type = field.schema().getType().getName().toLowerCase();
-                String value;
-                try {
-                    value = entry.getValue();
-                } catch (Exception e) {
-                    value = new Gson().toJson(entry.getValue());
-                }
+    public long getTailMaxBytes() {
+        return this.tailMaxBytes;
+    }
 
+    /**
+     * Sets the max number of records waiting for acknowledgement when streaming records to a topic
+     *
+     * @param streamMaxInFlight max number of records in flight
+     */
+    public void setStreamMaxInFlight(int streamMaxInFlight) {
+        this.streamMaxInFlight = streamMaxInFlight;
+    }
 
-                if (type.matches("int")) {
-                    avroRecord.put(entry.getKey(), Integer.valueOf(value));
-                } else if (type.matches("bytes")) {
-                    avroRecord.put(entry.getKey(), ByteBuffer.wrap(new BigDecimal(value).unscaledValue().toByteArray()));
-                } else if (type.matches("long")) {
-                    avroRecord.put(entry.getKey(), Long.parseLong(value));
-                } else if (type.matches("float")) {
-                    avroRecord.put(entry.getKey(), Float.parseFloat(value));
-                } else if (type.matches("string")) {
-                    avroRecord.put(entry.getKey(), value);
-                } else if (type.matches("boolean")) {
-                    avroRecord.put(entry.getKey(), (value.matches("true") ? true : false));
-                } else if (type.matches("array")) {
-                    List<Object> objectArray = new ArrayList<>();
-                    objectArray = this.getObjectsfromArray(entry.getKey(), value, s);
-                    avroRecord.put(entry.getKey(), objectArray);
-                } else if (type.matches("record")) {
-                    HashMap<String, String> result = null;
-                    try {
-                        result = new ObjectMapper().readValue(value, HashMap.class);
-                    } catch (IOException e) {
-                        throw new IOException("Could not map " + value + " to a record type", e);
-                    }
-                    GenericRecord temp = this.buildRecord(s.getField(entry.getKey()).schema().toString(), result);
-                    avroRecord.put(entry.getKey(), temp);
-                } else if (type.matches("union")) {
+    public int getStreamMaxInFlight() {
+        return this.streamMaxInFlight;
+    }
 
-                    for (Schema sch : field.schema().getTypes()) {
+    /**
+     * Sets how often the progress is logged when streaming records to a topic
+     *
+     * @param streamProgressIntervalMs interval in milliseconds (0 to disable)
+     */
+    public void setStreamProgressInterval(long streamProgressIntervalMs) {
+        this.streamProgressIntervalMs = streamProgressIntervalMs;
+    }
 
-                        String t = sch.getName().toLowerCase();
+    public long getStreamProgressInterval() {
+        return this.streamProgressIntervalMs;
+    }
 
-                        switch (t) {
+    public AvroRecordBuilder getAvroRecordBuilder() {
+        return this.avroRecordBuilder;
+    }
 
-                            case "null":
-                                break;
+    /**
+     * Sets the maximum time to wait when reading a topic
+     *
+     * @param readTimeoutMs timeout in milliseconds
+     */
+    public void setReadTimeout(long readTimeoutMs) {
+        this.readTimeoutMs = readTimeoutMs;
+    }
 
-                            case "array":
-                                List<Object> objectArray = new ArrayList<>();
-                                objectArray = this.getObjectsfromArray(entry.getKey(), value, sch);
-                                avroRecord.put(entry.getKey(), objectArray);
-                                break;
+    public long getReadTimeout() {
+        return this.readTimeoutMs;
+    }
 
-                            case "string":
-                                avroRecord.put(entry.getKey(), value);
-                                break;
+    /**
+     * Sets the maximum number of consumers used to read the partitions of a topic concurrently
+     *
+     * @param readThreads number of consumers (1 to read all partitions with a single consumer)
+     */
+    public void setReadThreads(int readThreads) {
+        this.readThreads = Math.max(1, readThreads);
+    }
 
-                            case "bytes":
-                                avroRecord.put(entry.getKey(), ByteBuffer.wrap(new BigDecimal(value).unscaledValue().toByteArray()));
-                                break;
+    public int getReadThreads() {
+        return this.readThreads;
+    }
 
-                            case "long":
-                                avroRecord.put(entry.getKey(), Long.parseLong(value));
-                                break;
 
-                            case "float":
-                                avroRecord.put(entry.getKey(), Float.parseFloat(value));
-                                break;
+    /**
+     * Set remote schema registry url and port for all future requests
+     *
+     * @param host host (defaults to http://0.0.0.0:8081)
+     */
+    public void setSchemaRegistryUrl(String host) {
+        logger.debug("Setting schema registry remote url to " + host);
+        if (!host.equals(this.schemaRegistryConnect)) {
+            this.clearSchemaCache();
+        }
+        this.schemaRegistryConnect = host;
+    }
 
-                            case "int":
-                                avroRecord.put(entry.getKey(), Integer.valueOf(value));
-                                break;
+    public String getSchemaRegistryUrl() {
+        logger.debug("Getting schema registry url");
+        return this.schemaRegistryConnect;
+    }
 
-                            case "boolean":
-                                avroRecord.put(entry.getKey(), (value.matches("true") ? true : false));
-                                break;
+    /**
+     * Publish a new version of the schema under the given subject. The cached latest
+     * version of the subject (if any) is discarded
+     *
+     * @param subject Name of the subject
+     * @param schema  Schema object as string
+     * @return response object from the schema server
+     * @throws IOException IOException
+     */
+    public Response registerNewSchema(String subject, String schema) throws IOException {
+        logger.debug("Registering new version of schema for subject " + subject);
 
+        String jsonEncodedString = "{\"schema\": " + JSONObject.quote(schema) + "}";
 
-                            default:
-                                if (value != null) {
-                                    GenericRecord temp = this.buildRecord(sch.toString(), new ObjectMapper().readValue(value, HashMap.class));
-                                    avroRecord.put(entry.getKey(), temp);
-                                } else {
-                                    avroRecord.put(entry.getKey(), null);
-                                }
+        MediaType mediaType = MediaType.parse("application/vnd.schemaregistry.v1+json");
+        RequestBody body = RequestBody.create(mediaType, jsonEncodedString);
+        Request request = new Request.Builder()
+                .url(this.schemaRegistryConnect + "/subjects/" + subject + "/versions")
+                .post(body)
+                .addHeader("Content-Type", "application/vnd.schemaregistry.v1+json")
+                .build();
 
-                        }
+        this.latestSchemaCache.remove(subject);
+        return REGISTRY_CLIENT.newCall(request).execute();
 
-                    }
+    }
 
-                } else {
-                    logger.warn("Unrecognized type in schema: " + type);
-                    avroRecord.put(entry.getKey(), value);
-                }
-            } else {
-                logger.warn("the field " + entry.getKey() + " is not present in the schema and will be ignored");
+    /**
+     * Fetch version of the schema registered under the specified subject in the registry.
+     * <p>
+     * A registered version of a subject never changes, so numeric versions are fetched only once and
+     * kept in memory. Other versions (i.e. latest) are only cached if -DSCHEMA_REGISTRY_LATEST_TTL
+     * is set, and only for that amount of milliseconds
+     *
+     * @param subject Subject name
+     * @param version Version of the schema to fetch
+     * @return Json encoded string of the schema
+     * @throws IOException IOException
+     */
+    public String getSchemaFromRegistry(String subject, String version) throws IOException {
+
+        String cacheKey = subject + "/" + version;
+
+        if (version.matches("\\d+")) {
+            String schema = this.schemaCache.get(cacheKey);
+            if (schema != null) {
+                this.schemaCacheHits.incrementAndGet();
+                logger.debug("Schema version " + version + " of subject " + subject + " found in cache");
+                return schema;
             }
+            schema = this.fetchSchema(subject, version);
+            if (schema != null) {
+                this.schemaCache.put(cacheKey, schema);
+            }
+            return schema;
         }
 
-        return avroRecord;
+        if (this.latestSchemaTtlMs > 0) {
+            LatestSchema cached = this.latestSchemaCache.get(subject);
+            if (cached != null && System.currentTimeMillis() - cached.fetchedAt < this.latestSchemaTtlMs) {
+                this.schemaCacheHits.incrementAndGet();
+                logger.debug("Schema version " + version + " of subject " + subject + " found in cache");
+                return cached.schema;
+            }
+        }
+
+        String schema = this.fetchSchema(subject, version);
+        if (schema != null && this.latestSchemaTtlMs > 0) {
+            this.latestSchemaCache.put(subject, new LatestSchema(schema, System.currentTimeMillis()));
+        }
+        return schema;
     }
 
-    private List<Object> getObjectsfromArray(String entry, String value, Schema s) throws IOException {
+    private String fetchSchema(String subject, String version) throws IOException {
+        logger.debug("Fetching schema version " + version + " from subject " + subject);
+        this.schemaCacheMisses.incrementAndGet();
 
-        List<Object> objectArray = new ArrayList<>();
-        String t = null;
+        Request request = new Request.Builder()
+                .url(this.schemaRegistryConnect + "/subjects/" + subject + "/versions/" + version)
+                .get()
+                .addHeader("Content-Type", "application/json")
+                .build();
 
-        try {
-            t = s.getField(entry).schema().getElementType().getType().getName().toLowerCase();
-        } catch (Exception e) {
-            t = s.getElementType().getType().getName().toLowerCase();
+        try (Response response = REGISTRY_CLIENT.newCall(request).execute()) {
+            Map fieldMapped = MAPPER.readValue(response.body().byteStream(), Map.class);
+            return (String) fieldMapped.get("schema");
         }
+    }
+
+    /**
+     * Discards all the schemas fetched from the registry
+     */
+    public void clearSchemaCache() {
+        this.schemaCache.clear();
+        this.latestSchemaCache.clear();
+    }
+
+    /**
+     * Sets for how long the schema returned for a non numeric version (i.e. latest) is cached.
+     * 0 disables the cache for these versions
+     *
+     * @param latestSchemaTtlMs time to live in milliseconds
+     */
+    public void setLatestSchemaTtl(long latestSchemaTtlMs) {
+        this.latestSchemaTtlMs = latestSchemaTtlMs;
+        this.latestSchemaCache.clear();
+    }
 
+    public long getLatestSchemaTtl() {
+        return this.latestSchemaTtlMs;
+    }
 
-        if (t.matches("record")) {
+    /**
+     * Returns the number of schemas that were served from the cache instead of the schema registry
+     *
+     * @return cache hits
+     */
+    public long getSchemaCacheHits() {
+        return this.schemaCacheHits.get();
+    }
 
-            List<HashMap<String, String>> elements = null;
-            try {
-                elements = new ObjectMapper().readValue(value, List.class);
-            } catch (IOException e) {
-                throw new IOException("Could not map " + value + " to array", e);
-            }
-            String elementsSchema = null;
-            try {
-                elementsSchema = s.getField(entry).schema().getElementType().toString();
-            } catch (Exception e) {
-                elementsSchema = s.getElementType().toString();
-            }
+    /**
+     * Returns the number of schemas that had to be fetched from the schema registry
+     *
+     * @return cache misses
+     */
+    public long getSchemaCacheMisses() {
+        return this.schemaCacheMisses.get();
+    }
 
-            for (HashMap<String, String> element : elements) {
-                objectArray.add(this.buildRecord(elementsSchema, element));
+    /**
+     * Modify a single property of the producer. If the value of the property changes, the cached
+     * producer is closed so the next send operation uses the new configuration (the admin client
+     * is also closed if the bootstrap servers change)
+     *
+     * @param key   Property name
+     * @param value Property new value
+     */
+    public void modifyProducerProperties(String key, String value) {
+        Object previous = this.props.put(key, value);
+        if (previous == null || !previous.toString().equals(value)) {
+            this.closeProducer();
+            if (AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG.equals(key)) {
+                this.closeAdminClient();
             }
-        } else {
+        }
+    }
 
-            List<String> elements = null;
-            for (String element : elements) {
 
-                switch (t) {
-                    case "string":
-                        objectArray.add(element);
-                        break;
+    /**
+     * Modify a single property of the consumer. If the value of the property changes, the records
+     * kept in memory for every topic are discarded, since they were read with the old configuration
+     *
+     * @param key   Property name
+     * @param value Property new value
+     */
+    public void modifyConsumerProperties(String key, String value) {
+        Object previous = this.propsConsumer.put(key, value);
+        if (previous == null || !previous.toString().equals(value)) {
+            this.clearTopicTails();
+        }
+    }
 
-                    case "bytes":
-                        objectArray.add(ByteBuffer.wrap(new BigDecimal(element).unscaledValue().toByteArray()));
-                        break;
 
-                    case "long":
-                        objectArray.add(Long.parseLong(element));
-                        break;
+    /**
+     * given a json representation of the data, creates a generic record with the given schema
+     *
+     * @param key    Name of the generic record
+     * @param json   Json string with data
+     * @param schema Schema to be used to serialize the object
+     * @throws IOException IOException
+     */
+    public void createGenericRecord(String key, String json, String schema) throws IOException {
 
-                    case "boolean":
-                        objectArray.add((element.matches("true") ? true : false));
-                        break;
+        /*
+          This is the official way of creating a generic record using the standard
+          library. However, the library requires the fields of type byte to be represented
+          in a very special way, which I never figured out what it was. Thats why i decided to
+          create my own method for creating a generic record
+         */
 
-                    case "int":
-                        objectArray.add(Integer.valueOf(element));
-                        break;
+        /*
+        Schema.Parser schemaParser = new Schema.Parser();
+        Schema s = schemaParser.parse(schema);
+        DecoderFactory decoderFactory = new DecoderFactory();
+        Decoder decoder = decoderFactory.jsonDecoder(s, json);
+        DatumReader<GenericData.Record> reader =
+                new GenericDatumReader<>(s);
+        GenericRecord genericRecord = reader.read(null, decoder);
+        this.avroRecords.put(key, genericRecord);
+        */
 
-                    default:
-                        objectArray.add(element);
-                }
-            }
-        }
 
-        return objectArray;
+        /*
+          My way of creating a generic record
+         */
+        Map<String, String> propertyList = this.avroRecordBuilder.toProperties(json);
+        this.createGenericRecord(key, propertyList, schema);
 
     }
 
-}
\ No newline at end of file
+    /**
+     * Creates a {@link GenericRecord} to be sent through kafka using avro serializers.
+     * The message is stored in an internal map using the specified key for later use.
+     *
+     * @param key          Name of the generic record
+     * @param propertyList List of properties and values
+     * @param schema       Schema to be used to serialize the object
+     */
+    public void createGenericRecord(String key, Map<String, String> propertyList, String schema) {
+
+        try {
+            this.avroRecords.put(key, this.avroRecordBuilder.build(schema, propertyList));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2018 Privalia (http://privalia.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.privalia.qa.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread safe histogram of latencies, recorded in microseconds.
+ * <p>
+ * Values are kept in log-linear buckets (every power of two is divided in 128 buckets), so the memory used is
+ * fixed no matter how many values are recorded, and the value returned for any percentile is at most 1% above
+ * the real one. Values lower than 256 microseconds are stored exactly. Min, max and mean are always exact
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKETS = 128;
+
+    private static final int MAX_EXPONENT = 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray(2 * SUB_BUCKETS + MAX_EXPONENT * SUB_BUCKETS);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong sum = new AtomicLong();
+
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a latency
+     *
+     * @param value latency in microseconds (negative values are recorded as 0)
+     */
+    public void record(long value) {
+        long micros = Math.max(0, value);
+        this.counts.incrementAndGet(indexOf(micros));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(micros);
+        this.min.accumulateAndGet(micros, Math::min);
+        this.max.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * Records a latency given in any time unit
+     *
+     * @param value latency
+     * @param unit  unit of the latency
+     */
+    public void record(long value, TimeUnit unit) {
+        this.record(unit.toMicros(value));
+    }
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+    /**
+     * Returns the lowest recorded value
+     *
+     * @return value in microseconds (0 if nothing was recorded)
+     */
+    public long getMin() {
+        return this.getCount() == 0 ? 0 : this.min.get();
+    }
+
+    /**
+     * Returns the highest recorded value
+     *
+     * @return value in microseconds
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * Returns the mean of all the recorded values
+     *
+     * @return value in microseconds
+     */
+    public double getMean() {
+        long total = this.getCount();
+        return total == 0 ? 0 : (double) this.sum.get() / total;
+    }
+
+    /**
+     * Returns the value below which the given percentage of the recorded values fall
+     *
+     * @param percentile percentile (0 - 100)
+     * @return value in microseconds (0 if nothing was recorded)
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = this.getCount();
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100.0 * total));
+        long accumulated = 0;
+        for (int i = 0; i < this.counts.length(); i++) {
+            accumulated += this.counts.get(i);
+            if (accumulated >= target) {
+                return Math.min(highestValueOf(i), this.getMax());
+            }
+        }
+        return this.getMax();
+    }
+
+    /**
+     * Returns the value of the given percentile in milliseconds
+     *
+     * @param percentile percentile (0 - 100)
+     * @return value in milliseconds
+     */
+    public double getMillisAtPercentile(double percentile) {
+        return this.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("p50=%.2f ms, p95=%.2f ms, p99=%.2f ms, max=%.2f ms", this.getMillisAtPercentile(50),
+                this.getMillisAtPercentile(95), this.getMillisAtPercentile(99), this.getMax() / 1000.0);
+    }
+
+    private static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(value) - 7, MAX_EXPONENT);
+        long subBucket = Math.min(value >> exponent, 2 * SUB_BUCKETS - 1);
+        return 2 * SUB_BUCKETS + (exponent - 1) * SUB_BUCKETS + (int) (subBucket - SUB_BUCKETS);
+    }
+
+    private static long highestValueOf(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = (index - 2 * SUB_BUCKETS) / SUB_BUCKETS + 1;
+        long subBucket = (index - 2 * SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << exponent) - 1;
+    }
+}
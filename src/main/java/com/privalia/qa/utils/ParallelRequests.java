@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2018 Privalia (http://privalia.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.privalia.qa.utils;
+
+import com.ning.http.client.ListenableFuture;
+import com.ning.http.client.Response;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Requests sent without waiting for their responses, identified by an alias.
+ * <p>
+ * Every request is added as soon as it is sent, so all of them run at the same time. The responses are collected
+ * when {@link #awaitAll(long)} is called (all of them share the same timeout), so a group of independent requests
+ * takes the time of the slowest one instead of the sum of all of them
+ */
+public class ParallelRequests {
+
+    private final Map<String, Future<Response>> pending = new LinkedHashMap<>();
+
+    private final Map<String, Long> startTimes = new LinkedHashMap<>();
+
+    private final Map<String, Long> endTimes = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    private final Map<String, Result> results = new LinkedHashMap<>();
+
+    /**
+     * Response (or error) of a request
+     */
+    public static final class Result {
+
+        private final String alias;
+
+        private final HttpResponse response;
+
+        private final Throwable error;
+
+        private final long elapsedMillis;
+
+        private Result(String alias, HttpResponse response, Throwable error, long elapsedMillis) {
+            this.alias = alias;
+            this.response = response;
+            this.error = error;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public String getAlias() {
+            return alias;
+        }
+
+        /**
+         * Returns the response of the request
+         *
+         * @return the response, or null if the request failed
+         */
+        public HttpResponse getResponse() {
+            return response;
+        }
+
+        /**
+         * Returns the error of the request
+         *
+         * @return the error (connection error, timeout...), or null if a response was received
+         */
+        public Throwable getError() {
+            return error;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return alias + ": " + (error != null ? error.toString() : "status " + response.getStatusCode()) + " in " + elapsedMillis + " ms";
+        }
+    }
+
+    /**
+     * Adds a request that was already sent
+     *
+     * @param alias    alias of the request, unique among the requests not awaited yet
+     * @param response future response of the request
+     */
+    public synchronized void add(String alias, Future<Response> response) {
+        if (this.pending.containsKey(alias)) {
+            response.cancel(true);
+            throw new IllegalArgumentException("There is already a request with alias '" + alias + "'");
+        }
+        this.results.remove(alias);
+        this.pending.put(alias, response);
+        this.startTimes.put(alias, System.nanoTime());
+        if (response instanceof ListenableFuture) {
+            Runnable recordEndTime = () -> this.endTimes.put(alias, System.nanoTime());
+            ((ListenableFuture<Response>) response).addListener(recordEndTime, Runnable::run);
+        }
+    }
+
+    /**
+     * Returns the number of requests sent and not awaited yet
+     *
+     * @return number of pending requests
+     */
+    public synchronized int getPendingCount() {
+        return this.pending.size();
+    }
+
+    /**
+     * Waits for the responses of all the pending requests. The requests without response after the timeout are
+     * cancelled, and their result contains a {@link TimeoutException}
+     *
+     * @param timeoutMillis max time to wait for all the responses in milliseconds
+     * @return results of the requests awaited, in the order in which they were sent
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public synchronized List<Result> awaitAll(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        List<Result> awaited = new ArrayList<>();
+
+        for (Map.Entry<String, Future<Response>> request : this.pending.entrySet()) {
+            String alias = request.getKey();
+            HttpResponse response = null;
+            Throwable error = null;
+            try {
+                Response result = request.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                response = new HttpResponse(result.getStatusCode(), result.getResponseBody(), result.getCookies());
+            } catch (ExecutionException e) {
+                error = e.getCause();
+            } catch (TimeoutException e) {
+                request.getValue().cancel(true);
+                error = new TimeoutException("No response after " + timeoutMillis + " ms");
+            } catch (IOException e) {
+                error = e;
+            }
+
+            Long endTime = this.endTimes.remove(alias);
+            long elapsed = ((endTime != null && error == null) ? endTime : System.nanoTime()) - this.startTimes.remove(alias);
+            Result result = new Result(alias, response, error, TimeUnit.NANOSECONDS.toMillis(elapsed));
+            this.results.put(alias, result);
+            awaited.add(result);
+        }
+        this.pending.clear();
+        return awaited;
+    }
+
+    /**
+     * Returns the result of an awaited request
+     *
+     * @param alias alias of the request
+     * @return the result, or null if there is no awaited request with that alias
+     */
+    public synchronized Result getResult(String alias) {
+        return this.results.get(alias);
+    }
+
+    /**
+     * Returns the results of all the awaited requests
+     *
+     * @return results of the requests, in the order in which they were sent
+     */
+    public synchronized List<Result> getResults() {
+        return new ArrayList<>(this.results.values());
+    }
+
+    /**
+     * Cancels the pending requests and discards all the results
+     */
+    public synchronized void clear() {
+        for (Future<Response> response : this.pending.values()) {
+            response.cancel(true);
+        }
+        this.pending.clear();
+        this.startTimes.clear();
+        this.endTimes.clear();
+        this.results.clear();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2018 Privalia (http://privalia.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.privalia.qa.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * End-to-end latency of the records sent to the input topic of a pipeline and found in its output topic
+ */
+public class PipelineLatencyResult {
+
+    private static final int MAX_REPORTED_UNMATCHED = 10;
+
+    private final int sent;
+
+    private final LatencyHistogram latencies;
+
+    private final List<String> unmatched;
+
+    /**
+     * Instantiates a new result.
+     *
+     * @param sent      number of records sent to the input topic
+     * @param latencies end-to-end latencies of the records found in the output topic
+     * @param unmatched correlation ids of the records not found in the output topic
+     */
+    public PipelineLatencyResult(int sent, LatencyHistogram latencies, Collection<String> unmatched) {
+        this.sent = sent;
+        this.latencies = latencies;
+        synchronized (unmatched) {
+            this.unmatched = Collections.unmodifiableList(new ArrayList<>(unmatched));
+        }
+    }
+
+    public int getSent() {
+        return sent;
+    }
+
+    public int getMatched() {
+        return sent - unmatched.size();
+    }
+
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    public List<String> getUnmatched() {
+        return unmatched;
+    }
+
+    @Override
+    public String toString() {
+        String summary = String.format("%d of %d records found, end-to-end latency %s", this.getMatched(), sent, latencies);
+        if (unmatched.isEmpty()) {
+            return summary;
+        }
+        List<String> reported = unmatched.subList(0, Math.min(MAX_REPORTED_UNMATCHED, unmatched.size()));
+        return summary + ", missing correlation ids " + reported + (unmatched.size() > reported.size() ? "..." : "");
+    }
+}
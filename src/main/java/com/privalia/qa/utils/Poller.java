@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2018 Privalia (http://privalia.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.privalia.qa.utils;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repeats a check until it succeeds or a deadline is reached.
+ * <p>
+ * The check is considered failed while it throws an {@link AssertionError}, and the poller returns as soon as it
+ * succeeds. The time between attempts starts small (50 ms by default) and grows exponentially (with some random
+ * jitter, so checks from several threads do not run in lockstep) up to a max interval, so a condition that becomes
+ * true quickly is detected quickly, and a condition that takes long is not checked too often. The last attempt is
+ * made at the deadline. Any other exception stops the polling immediately
+ */
+public class Poller {
+
+    /**
+     * A check that fails by throwing an {@link AssertionError}
+     *
+     * @param <T> type of the result of the check
+     */
+    public interface Attempt<T> {
+        T run() throws Exception;
+    }
+
+    public static final long DEFAULT_INITIAL_INTERVAL = 50;
+
+    public static final double DEFAULT_MULTIPLIER = 2;
+
+    public static final double DEFAULT_JITTER = 0.2;
+
+    private final long timeoutMillis;
+
+    private final long initialIntervalMillis;
+
+    private final long maxIntervalMillis;
+
+    private final double multiplier;
+
+    private final double jitter;
+
+    private int attempts;
+
+    private long elapsedMillis;
+
+    /**
+     * Instantiates a new poller with the default backoff.
+     *
+     * @param timeoutMillis     max time to wait for the check to succeed in milliseconds
+     * @param maxIntervalMillis max time between two attempts in milliseconds
+     */
+    public Poller(long timeoutMillis, long maxIntervalMillis) {
+        this(timeoutMillis, Math.min(DEFAULT_INITIAL_INTERVAL, maxIntervalMillis), maxIntervalMillis, DEFAULT_MULTIPLIER, DEFAULT_JITTER);
+    }
+
+    /**
+     * Instantiates a new poller.
+     *
+     * @param timeoutMillis         max time to wait for the check to succeed in milliseconds
+     * @param initialIntervalMillis time between the first and the second attempt in milliseconds
+     * @param maxIntervalMillis     max time between two attempts in milliseconds
+     * @param multiplier            factor applied to the interval after every attempt
+     * @param jitter                max random variation of every interval (i.e. 0.2 for +/- 20%)
+     */
+    public Poller(long timeoutMillis, long initialIntervalMillis, long maxIntervalMillis, double multiplier, double jitter) {
+        if (timeoutMillis < 0 || initialIntervalMillis <= 0 || maxIntervalMillis < initialIntervalMillis || multiplier < 1 || jitter < 0 || jitter >= 1) {
+            throw new IllegalArgumentException("Invalid polling configuration");
+        }
+        this.timeoutMillis = timeoutMillis;
+        this.initialIntervalMillis = initialIntervalMillis;
+        this.maxIntervalMillis = maxIntervalMillis;
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+    }
+
+    /**
+     * Runs the check until it succeeds or the deadline is reached
+     *
+     * @param attempt the check
+     * @param <T>     type of the result of the check
+     * @return the result of the first successful attempt
+     * @throws Exception the error of the last attempt if the check did not succeed before the deadline, or the
+     *                   first exception that is not an {@link AssertionError}
+     */
+    public <T> T until(Attempt<T> attempt) throws Exception {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(this.timeoutMillis);
+        double interval = this.initialIntervalMillis;
+        this.attempts = 0;
+
+        while (true) {
+            this.attempts++;
+            try {
+                T result = attempt.run();
+                this.elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                return result;
+            } catch (AssertionError e) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    this.elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    AssertionError error = new AssertionError("Condition not met after " + this.attempts + " attempts in "
+                            + this.elapsedMillis + " ms: " + e.getMessage(), e);
+                    error.setStackTrace(e.getStackTrace());
+                    throw error;
+                }
+
+                double variation = 1 + (ThreadLocalRandom.current().nextDouble() * 2 - 1) * this.jitter;
+                long sleep = Math.min(TimeUnit.MILLISECONDS.toNanos((long) (interval * variation)), remaining);
+                TimeUnit.NANOSECONDS.sleep(sleep);
+                interval = Math.min(interval * this.multiplier, this.maxIntervalMillis);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of attempts of the last polling
+     *
+     * @return number of attempts
+     */
+    public int getAttempts() {
+        return this.attempts;
+    }
+
+    /**
+     * Returns the time taken by the last polling
+     *
+     * @return time in milliseconds
+     */
+    public long getElapsedMillis() {
+        return this.elapsedMillis;
+    }
+}
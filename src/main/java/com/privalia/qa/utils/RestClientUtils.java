@@ -0,0 +1,723 @@
+/*
+ * Copyright (C) 2018 Privalia (http://privalia.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.privalia.qa.utils;
+
+import com.ning.http.client.AsyncCompletionHandler;
+import com.ning.http.client.AsyncHandler;
+import com.ning.http.client.AsyncHandlerExtensions;
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.AsyncHttpClientConfig;
+import com.ning.http.client.HttpResponseBodyPart;
+import com.ning.http.client.HttpResponseHeaders;
+import com.ning.http.client.HttpResponseStatus;
+import com.ning.http.client.Request;
+import com.ning.http.client.filter.FilterContext;
+import com.ning.http.client.filter.RequestFilter;
+import io.restassured.RestAssured;
+import io.restassured.config.HttpClientConfig;
+import io.restassured.config.RestAssuredConfig;
+import io.restassured.config.SSLConfig;
+import io.restassured.response.Response;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.OperatedClientConnection;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.entity.BufferedHttpEntity;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.BasicClientConnectionManager;
+import org.apache.http.impl.conn.DefaultClientConnectionOperator;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.params.HttpParams;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Manages the {@link AsyncHttpClient} and the REST-assured configuration used by the REST steps.
+ * <p>
+ * By default, a single client with a pool of keep-alive connections is shared by all the scenarios of the suite,
+ * so the connections (and the TLS handshakes) are reused between requests and scenarios. Cookies and headers are
+ * not kept by the client (they are added to every request from the state of the scenario), so sharing the client
+ * does not share them between scenarios. The pool can be configured with the VM arguments:
+ * <ul>
+ * <li>-DREST_CONNECTION_POOLING: false to create a new client without pooling for every scenario (default true)</li>
+ * <li>-DREST_MAX_CONNECTIONS_PER_HOST: max number of connections to the same host (default 20)</li>
+ * <li>-DREST_MAX_CONNECTIONS: max number of connections (default 100)</li>
+ * <li>-DREST_POOL_IDLE_TIMEOUT: time in milliseconds an idle connection is kept in the pool (default 60000)</li>
+ * <li>-DREST_KEEP_ALIVE: max time in milliseconds a connection is kept alive, if the server does not ask for
+ * less (default 30000)</li>
+ * </ul>
+ * The same pool settings are used for the requests sent with REST-assured: a single connection manager is created
+ * for the JVM, and every scenario gets its own http client on top of it (so the proxy, credentials or cookies set
+ * by a scenario are not seen by the others). The number of requests, connections opened and connections reused is
+ * reported when the client is closed.
+ * <p>
+ * The SSL configuration of the shared connection manager is fixed when it is created: https connections accept any
+ * certificate (as the async client does), so the relaxed validation of a scenario does not change anything. A
+ * scenario that sets its own keystore or truststore cannot use the shared connections: its requests are sent
+ * without pooling (see {@link #needsOwnConnectionManager(RestAssuredConfig)}), so the other scenarios keep reusing theirs
+ */
+public class RestClientUtils {
+
+    private static final ThreadLocal<TimingProbe> CURRENT_TIMING = new ThreadLocal<>();
+
+    private final Logger logger = LoggerFactory.getLogger(RestClientUtils.class);
+
+    private final boolean pooling;
+
+    private final int maxConnectionsPerHost;
+
+    private final int maxConnections;
+
+    private final int pooledConnectionIdleTimeout;
+
+    private final int keepAlive;
+
+    private final JsonSchemaCache schemaCache;
+
+    private AsyncHttpClient sharedClient;
+
+    private PoolingClientConnectionManager connectionManager;
+
+    private ScheduledExecutorService idleConnectionMonitor;
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong openedConnections = new AtomicLong();
+
+    private final AtomicLong reusedConnections = new AtomicLong();
+
+    /**
+     * Generic contructor of RestClientUtils.
+     */
+    public RestClientUtils() {
+        this.pooling = Boolean.valueOf(System.getProperty("REST_CONNECTION_POOLING", "true"));
+        this.maxConnectionsPerHost = Integer.valueOf(System.getProperty("REST_MAX_CONNECTIONS_PER_HOST", "20"));
+        this.maxConnections = Integer.valueOf(System.getProperty("REST_MAX_CONNECTIONS", "100"));
+        this.pooledConnectionIdleTimeout = Integer.valueOf(System.getProperty("REST_POOL_IDLE_TIMEOUT", "60000"));
+        this.keepAlive = Integer.valueOf(System.getProperty("REST_KEEP_ALIVE", "30000"));
+        this.schemaCache = new JsonSchemaCache(Boolean.valueOf(System.getProperty("REST_SCHEMA_CHECK_MODIFIED", "false")));
+    }
+
+    /**
+     * Returns the cache of compiled json schemas, shared by all the scenarios. With -DREST_SCHEMA_CHECK_MODIFIED=true,
+     * the schemas are compiled again when their file is modified
+     *
+     * @return the cache of json schemas
+     */
+    public JsonSchemaCache getSchemaCache() {
+        return this.schemaCache;
+    }
+
+    /**
+     * Returns the client for a new scenario. With pooling enabled, the same client is returned for all the
+     * scenarios. Otherwise, a new client is created every time, and it must be released with
+     * {@link #releaseClient(AsyncHttpClient)} at the end of the scenario
+     *
+     * @return the client
+     */
+    public synchronized AsyncHttpClient getClient() {
+        if (!this.pooling) {
+            return this.createClient(false);
+        }
+        if (this.sharedClient == null || this.sharedClient.isClosed()) {
+            logger.debug("Creating shared REST client with up to {} connections per host", this.maxConnectionsPerHost);
+            this.sharedClient = this.createClient(true);
+        }
+        return this.sharedClient;
+    }
+
+    /**
+     * Releases the client used by a scenario. The shared client is kept open for the next scenarios
+     *
+     * @param client the client
+     */
+    public synchronized void releaseClient(AsyncHttpClient client) {
+        if (client != null && client != this.sharedClient) {
+            client.close();
+        }
+    }
+
+    private AsyncHttpClient createClient(boolean allowPooling) {
+        AsyncHttpClientConfig.Builder builder = new AsyncHttpClientConfig.Builder()
+                .setAcceptAnyCertificate(true)
+                .setAllowPoolingConnections(allowPooling)
+                .setAllowPoolingSslConnections(allowPooling)
+                .addRequestFilter(new ConnectionStatsFilter());
+        if (allowPooling) {
+            builder.setMaxConnectionsPerHost(this.maxConnectionsPerHost)
+                    .setMaxConnections(this.maxConnections)
+                    .setPooledConnectionIdleTimeout(this.pooledConnectionIdleTimeout);
+        }
+        return new AsyncHttpClient(builder.build());
+    }
+
+    /**
+     * Returns the REST-assured configuration for a new scenario. With pooling enabled, the http client of the
+     * scenario uses the connection manager shared by the whole JVM, so the connections opened by previous scenarios
+     * are reused. The body of every response is read as soon as it is received, so the connection goes back to the
+     * pool even if the scenario never reads the body. Without pooling, a new connection is opened for every request
+     *
+     * @return the configuration
+     */
+    public RestAssuredConfig getRestAssuredConfig() {
+        return this.getRestAssuredConfig(RestAssured.config());
+    }
+
+    /**
+     * Returns a copy of the given REST-assured configuration that uses a new http client on top of the shared
+     * connection manager (or a new connection manager for every request, if pooling is disabled or the configuration
+     * has its own keystore or truststore). Every thread that sends requests concurrently must use its own http
+     * client, since REST-assured changes the client before every request. The http client measures the timing of
+     * the requests started with {@link #startTiming()}
+     *
+     * @param base the configuration to copy (ssl, encoding, logging...)
+     * @return the configuration
+     */
+    @SuppressWarnings("deprecation")
+    public synchronized RestAssuredConfig getRestAssuredConfig(RestAssuredConfig base) {
+        if (!this.pooling || hasOwnKeyStores(base.getSSLConfig())) {
+            HttpClientConfig.HttpClientFactory factory = () -> this.createHttpClient(new BasicClientConnectionManager() {
+                @Override
+                protected ClientConnectionOperator createConnectionOperator(SchemeRegistry schemeRegistry) {
+                    return new TimedConnectionOperator(schemeRegistry);
+                }
+            });
+            return base.httpClient(base.getHttpClientConfig().dontReuseHttpClientInstance().httpClientFactory(factory));
+        }
+        if (this.connectionManager == null) {
+            this.connectionManager = this.createConnectionManager();
+        }
+
+        PoolingClientConnectionManager manager = this.connectionManager;
+        HttpClientConfig.HttpClientFactory factory = () -> this.createHttpClient(manager);
+        return base.httpClient(base.getHttpClientConfig().reuseHttpClientInstance().httpClientFactory(factory));
+    }
+
+    /**
+     * Checks if the given configuration sets its own keystore or truststore but still uses the shared connection
+     * pool. The https scheme of the pool accepts any certificate and cannot be changed by a scenario, so the
+     * configuration must be replaced with {@link #getRestAssuredConfig(RestAssuredConfig)} before sending the
+     * request, or the keystore and truststore would be silently ignored
+     *
+     * @param config the configuration of the request
+     * @return true if the configuration must not use the shared connection pool
+     */
+    public boolean needsOwnConnectionManager(RestAssuredConfig config) {
+        return this.pooling && config.getHttpClientConfig().isConfiguredToReuseTheSameHttpClientInstance()
+                && hasOwnKeyStores(config.getSSLConfig());
+    }
+
+    private static boolean hasOwnKeyStores(SSLConfig ssl) {
+        return ssl.getPathToKeyStore() != null || ssl.getKeyStore() != null
+                || ssl.getPathToTrustStore() != null || ssl.getTrustStore() != null;
+    }
+
+    @SuppressWarnings("deprecation")
+    private DefaultHttpClient createHttpClient(ClientConnectionManager manager) {
+        DefaultHttpClient client = new DefaultHttpClient(manager);
+        client.setKeepAliveStrategy((response, context) -> {
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return (duration > 0 && duration < this.keepAlive) ? duration : this.keepAlive;
+        });
+        client.addResponseInterceptor((response, context) -> {
+            TimingProbe probe = CURRENT_TIMING.get();
+            if (probe != null && probe.firstByte == 0) {
+                probe.firstByte = System.nanoTime();
+            }
+            HttpEntity entity = response.getEntity();
+            if (entity != null && entity.isStreaming()) {
+                response.setEntity(new BufferedHttpEntity(entity));
+            }
+        });
+        return client;
+    }
+
+    /**
+     * Starts measuring the timing of the next request sent with REST-assured in the current thread
+     */
+    public void startTiming() {
+        CURRENT_TIMING.set(new TimingProbe(System.nanoTime()));
+    }
+
+    /**
+     * Finishes measuring the request started with {@link #startTiming()} in the current thread
+     *
+     * @param method     HTTP verb of the request
+     * @param endPoint   endpoint of the request
+     * @param statusCode status code of the response
+     * @return timing of the request
+     */
+    public RestRequestTiming stopTiming(String method, String endPoint, int statusCode) {
+        long end = System.nanoTime();
+        TimingProbe probe = CURRENT_TIMING.get();
+        CURRENT_TIMING.remove();
+        if (probe == null) {
+            throw new IllegalStateException("No request timing was started in this thread");
+        }
+
+        double connect = (probe.connect < 0) ? -1 : probe.connect / 1e6;
+        double firstByte = (probe.firstByte == 0) ? -1 : (probe.firstByte - probe.start) / 1e6;
+        return new RestRequestTiming(method, endPoint, statusCode, connect, firstByte, (end - probe.start) / 1e6);
+    }
+
+    @SuppressWarnings("deprecation")
+    private PoolingClientConnectionManager createConnectionManager() {
+        logger.debug("Creating REST-assured connection pool with up to {} connections per route", this.maxConnectionsPerHost);
+        SchemeRegistry schemes = SchemeRegistryFactory.createDefault();
+        try {
+            schemes.register(new Scheme("https", 443, new SSLSocketFactory((chain, authType) -> true, SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to create the SSL socket factory of the REST connection pool", e);
+        }
+
+        PoolingClientConnectionManager manager = new PoolingClientConnectionManager(schemes) {
+            @Override
+            protected ClientConnectionOperator createConnectionOperator(SchemeRegistry schemeRegistry) {
+                return new TimedConnectionOperator(schemeRegistry);
+            }
+
+            /**
+             * REST-assured registers the https scheme of every request with SSL settings in the registry of the
+             * connection manager. A copy is returned, so those changes are not shared with the other scenarios
+             */
+            @Override
+            public SchemeRegistry getSchemeRegistry() {
+                SchemeRegistry copy = new SchemeRegistry();
+                for (String name : schemes.getSchemeNames()) {
+                    copy.register(schemes.get(name));
+                }
+                return copy;
+            }
+        };
+        manager.setMaxTotal(this.maxConnections);
+        manager.setDefaultMaxPerRoute(this.maxConnectionsPerHost);
+
+        long period = Math.max(1000, this.pooledConnectionIdleTimeout / 2);
+        this.idleConnectionMonitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rest-idle-connection-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Runnable evictor = () -> {
+            manager.closeExpiredConnections();
+            manager.closeIdleConnections(this.pooledConnectionIdleTimeout, TimeUnit.MILLISECONDS);
+        };
+        this.idleConnectionMonitor.scheduleAtFixedRate(evictor, period, period, TimeUnit.MILLISECONDS);
+        return manager;
+    }
+
+    /**
+     * Sends requests concurrently, and collects the status code and the response time of every request.
+     * <p>
+     * The requests are created one by one in the calling thread (so they can be built from the state of the
+     * scenario, that is not thread safe) and sent by a pool of threads. No more than the given number of requests
+     * are in flight at the same time. With pooling enabled, the concurrency is also limited by the max number of
+     * connections per host
+     *
+     * @param total       number of requests to send
+     * @param concurrency max number of requests sent at the same time
+     * @param requests    returns, for the index of every request (0 to total - 1), the function that sends it
+     * @return summary of the responses
+     * @throws InterruptedException InterruptedException
+     */
+    public RestLoadResult sendConcurrently(int total, int concurrency, IntFunction<Supplier<Response>> requests) throws InterruptedException {
+        if (this.pooling && concurrency > this.maxConnectionsPerHost) {
+            logger.warn("Sending {} concurrent requests with a pool of {} connections per host (-DREST_MAX_CONNECTIONS_PER_HOST)",
+                    concurrency, this.maxConnectionsPerHost);
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "rest-load-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Semaphore inFlight = new Semaphore(concurrency);
+        Map<Integer, LongAdder> statusCodes = new ConcurrentHashMap<>();
+        LatencyHistogram latencies = new LatencyHistogram();
+        AtomicInteger errors = new AtomicInteger();
+        AtomicReference<String> firstError = new AtomicReference<>();
+
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < total; i++) {
+                Supplier<Response> request = requests.apply(i);
+                inFlight.acquire();
+                Runnable send = () -> {
+                    long sent = System.nanoTime();
+                    try {
+                        int statusCode = request.get().getStatusCode();
+                        latencies.record(System.nanoTime() - sent, TimeUnit.NANOSECONDS);
+                        statusCodes.computeIfAbsent(statusCode, key -> new LongAdder()).increment();
+                    } catch (RuntimeException e) {
+                        errors.incrementAndGet();
+                        firstError.compareAndSet(null, e.toString());
+                    } finally {
+                        inFlight.release();
+                    }
+                };
+                executor.execute(send);
+            }
+            inFlight.acquire(concurrency);
+        } finally {
+            executor.shutdownNow();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Map<Integer, Long> counts = new HashMap<>();
+        statusCodes.forEach((statusCode, count) -> counts.put(statusCode, count.sum()));
+        return new RestLoadResult(total, errors.get(), elapsedMillis, counts, latencies, firstError.get());
+    }
+
+    /**
+     * Sends requests at a constant rate during the given time (open model), and collects the status code and the
+     * response time of every request.
+     * <p>
+     * Requests are sent with a non-blocking client, so slow responses do not delay the next requests: a new request
+     * is sent every 1/rate seconds, no matter how many requests are still waiting for a response. The client has no
+     * limit of connections, so new connections are opened when all the pooled ones are busy. The response time is
+     * measured from the moment the request was scheduled, so if the generator falls behind, the delay is included
+     * in the latencies instead of being hidden. Requests without a response after the timeout are counted as errors
+     *
+     * @param requests      returns the request to send for every index (starting at 0)
+     * @param rate          target rate in requests per second
+     * @param durationMs    time to send requests in milliseconds
+     * @param timeoutMillis max time to wait for every response in milliseconds
+     * @return summary of the responses
+     * @throws InterruptedException InterruptedException
+     */
+    public RestLoadResult sendAtRate(IntFunction<Request> requests, int rate, long durationMs, int timeoutMillis) throws InterruptedException {
+        if (rate <= 0 || durationMs <= 0) {
+            throw new IllegalArgumentException("A positive rate and duration are required");
+        }
+
+        int total = (int) Math.max(1, rate * durationMs / 1000);
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        CountDownLatch pending = new CountDownLatch(total);
+        Map<Integer, LongAdder> statusCodes = new ConcurrentHashMap<>();
+        LatencyHistogram latencies = new LatencyHistogram();
+        AtomicReference<String> firstError = new AtomicReference<>();
+
+        AsyncHttpClient client = new AsyncHttpClient(new AsyncHttpClientConfig.Builder()
+                .setAcceptAnyCertificate(true)
+                .setAllowPoolingConnections(true)
+                .setAllowPoolingSslConnections(true)
+                .setMaxConnectionsPerHost(-1)
+                .setMaxConnections(-1)
+                .setRequestTimeout(timeoutMillis)
+                .setPooledConnectionIdleTimeout(this.pooledConnectionIdleTimeout)
+                .addRequestFilter(new ConnectionStatsFilter())
+                .build());
+
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < total; i++) {
+                long scheduled = start + i * intervalNanos;
+                long wait;
+                while ((wait = scheduled - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException("Interrupted while sending requests");
+                    }
+                }
+
+                AsyncCompletionHandler<Void> handler = new AsyncCompletionHandler<Void>() {
+                    @Override
+                    public Void onCompleted(com.ning.http.client.Response response) {
+                        latencies.record(System.nanoTime() - scheduled, TimeUnit.NANOSECONDS);
+                        statusCodes.computeIfAbsent(response.getStatusCode(), key -> new LongAdder()).increment();
+                        pending.countDown();
+                        return null;
+                    }
+
+                    @Override
+                    public void onThrowable(Throwable t) {
+                        firstError.compareAndSet(null, t.toString());
+                        pending.countDown();
+                    }
+                };
+
+                try {
+                    client.executeRequest(requests.apply(i), handler);
+                } catch (RuntimeException e) {
+                    handler.onThrowable(e);
+                }
+            }
+
+            if (!pending.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                logger.warn("{} requests did not get a response in {} ms", pending.getCount(), timeoutMillis);
+            }
+        } finally {
+            client.close();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Map<Integer, Long> counts = new HashMap<>();
+        statusCodes.forEach((statusCode, count) -> counts.put(statusCode, count.sum()));
+        long answered = counts.values().stream().mapToLong(Long::longValue).sum();
+        return new RestLoadResult(total, (int) (total - answered), elapsedMillis, counts, latencies, firstError.get());
+    }
+
+    /**
+     * Closes the shared client and the REST-assured connection pool, and logs the usage of the connection pools
+     */
+    public synchronized void close() {
+        if (this.requests.get() > 0) {
+            logger.info("REST client: {}", this.getStats());
+        }
+        if (this.sharedClient != null) {
+            this.sharedClient.close();
+            this.sharedClient = null;
+        }
+        if (this.connectionManager != null) {
+            PoolStats stats = this.connectionManager.getTotalStats();
+            logger.info("REST-assured connection pool: {} connections available, {} leased, max {}",
+                    stats.getAvailable(), stats.getLeased(), stats.getMax());
+            this.idleConnectionMonitor.shutdownNow();
+            this.connectionManager.shutdown();
+            this.connectionManager = null;
+        }
+    }
+
+    /**
+     * Returns the connection manager shared by the REST-assured requests, if it was already created
+     *
+     * @return the connection manager, or null
+     */
+    public synchronized PoolingClientConnectionManager getConnectionManager() {
+        return this.connectionManager;
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return this.maxConnectionsPerHost;
+    }
+
+    public long getRequests() {
+        return this.requests.get();
+    }
+
+    public long getOpenedConnections() {
+        return this.openedConnections.get();
+    }
+
+    public long getReusedConnections() {
+        return this.reusedConnections.get();
+    }
+
+    /**
+     * Returns the percentage of requests sent over a connection taken from the pool
+     *
+     * @return reuse rate (0 to 100)
+     */
+    public double getReuseRate() {
+        long connections = this.openedConnections.get() + this.reusedConnections.get();
+        return (connections == 0) ? 0 : this.reusedConnections.get() * 100.0 / connections;
+    }
+
+    /**
+     * Returns a summary of the usage of the connection pool
+     *
+     * @return summary
+     */
+    public String getStats() {
+        return String.format("%d requests, %d connections opened, %d connections reused (%.1f%% reuse), pool of %d connections per host (%s)",
+                this.getRequests(), this.getOpenedConnections(), this.getReusedConnections(), this.getReuseRate(),
+                this.maxConnectionsPerHost, this.pooling ? "enabled" : "disabled");
+    }
+
+    /**
+     * Counts the requests, and the connections opened or taken from the pool for every request
+     */
+    private final class ConnectionStatsFilter implements RequestFilter {
+
+        @Override
+        public <T> FilterContext<T> filter(FilterContext<T> ctx) {
+            requests.incrementAndGet();
+            return new FilterContext.FilterContextBuilder<>(ctx).asyncHandler(new ConnectionStatsHandler<>(ctx.getAsyncHandler())).build();
+        }
+    }
+
+    /**
+     * Delegates to the handler of the request, counting the connection events
+     *
+     * @param <T> type of the response
+     */
+    private final class ConnectionStatsHandler<T> implements AsyncHandler<T>, AsyncHandlerExtensions {
+
+        private final AsyncHandler<T> delegate;
+
+        private ConnectionStatsHandler(AsyncHandler<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        private AsyncHandlerExtensions extensions() {
+            return (this.delegate instanceof AsyncHandlerExtensions) ? (AsyncHandlerExtensions) this.delegate : null;
+        }
+
+        @Override
+        public void onThrowable(Throwable t) {
+            this.delegate.onThrowable(t);
+        }
+
+        @Override
+        public STATE onBodyPartReceived(HttpResponseBodyPart bodyPart) throws Exception {
+            return this.delegate.onBodyPartReceived(bodyPart);
+        }
+
+        @Override
+        public STATE onStatusReceived(HttpResponseStatus responseStatus) throws Exception {
+            return this.delegate.onStatusReceived(responseStatus);
+        }
+
+        @Override
+        public STATE onHeadersReceived(HttpResponseHeaders headers) throws Exception {
+            return this.delegate.onHeadersReceived(headers);
+        }
+
+        @Override
+        public T onCompleted() throws Exception {
+            return this.delegate.onCompleted();
+        }
+
+        @Override
+        public void onOpenConnection() {
+            if (this.extensions() != null) {
+                this.extensions().onOpenConnection();
+            }
+        }
+
+        @Override
+        public void onConnectionOpen() {
+            openedConnections.incrementAndGet();
+            if (this.extensions() != null) {
+                this.extensions().onConnectionOpen();
+            }
+        }
+
+        @Override
+        public void onPoolConnection() {
+            if (this.extensions() != null) {
+                this.extensions().onPoolConnection();
+            }
+        }
+
+        @Override
+        public void onConnectionPooled() {
+            reusedConnections.incrementAndGet();
+            if (this.extensions() != null) {
+                this.extensions().onConnectionPooled();
+            }
+        }
+
+        @Override
+        public void onSendRequest(Object request) {
+            if (this.extensions() != null) {
+                this.extensions().onSendRequest(request);
+            }
+        }
+
+        @Override
+        public void onRetry() {
+            if (this.extensions() != null) {
+                this.extensions().onRetry();
+            }
+        }
+
+        @Override
+        public void onDnsResolved(InetAddress address) {
+            if (this.extensions() != null) {
+                this.extensions().onDnsResolved(address);
+            }
+        }
+
+        @Override
+        public void onSslHandshakeCompleted() {
+            if (this.extensions() != null) {
+                this.extensions().onSslHandshakeCompleted();
+            }
+        }
+    }
+
+    /**
+     * Timestamps of the request being measured in a thread
+     */
+    private static final class TimingProbe {
+
+        private final long start;
+
+        private long connect = -1;
+
+        private long firstByte;
+
+        private TimingProbe(long start) {
+            this.start = start;
+        }
+    }
+
+    /**
+     * Measures the time to open new connections (including the TLS handshake), for the request being measured in
+     * the current thread
+     */
+    @SuppressWarnings("deprecation")
+    private static final class TimedConnectionOperator extends DefaultClientConnectionOperator {
+
+        private TimedConnectionOperator(SchemeRegistry schemeRegistry) {
+            super(schemeRegistry);
+        }
+
+        @Override
+        public void openConnection(OperatedClientConnection conn, HttpHost target, InetAddress local, HttpContext context, HttpParams params) throws IOException {
+            long start = System.nanoTime();
+            try {
+                super.openConnection(conn, target, local, context, params);
+            } finally {
+                TimingProbe probe = CURRENT_TIMING.get();
+                if (probe != null) {
+                    probe.connect = Math.max(0, probe.connect) + System.nanoTime() - start;
+                }
+            }
+        }
+    }
+}
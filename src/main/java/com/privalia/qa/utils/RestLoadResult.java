@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2018 Privalia (http://privalia.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.privalia.qa.utils;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Summary of a set of requests sent concurrently to a REST service
+ */
+public class RestLoadResult {
+
+    private final int total;
+
+    private final int errors;
+
+    private final long elapsedMillis;
+
+    private final Map<Integer, Long> statusCodes;
+
+    private final LatencyHistogram latencies;
+
+    private final String firstError;
+
+    /**
+     * Instantiates a new result.
+     *
+     * @param total         number of requests that were sent
+     * @param errors        number of requests that did not get a response (connection errors, timeouts...)
+     * @param elapsedMillis total time of the operation in milliseconds
+     * @param statusCodes   number of responses received with each status code
+     * @param latencies     response time of every request that got a response
+     * @param firstError    message of the first error (can be null)
+     */
+    public RestLoadResult(int total, int errors, long elapsedMillis, Map<Integer, Long> statusCodes, LatencyHistogram latencies, String firstError) {
+        this.total = total;
+        this.errors = errors;
+        this.elapsedMillis = elapsedMillis;
+        this.statusCodes = Collections.unmodifiableMap(new TreeMap<>(statusCodes));
+        this.latencies = latencies;
+        this.firstError = firstError;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getErrors() {
+        return errors;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public Map<Integer, Long> getStatusCodes() {
+        return statusCodes;
+    }
+
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    public String getFirstError() {
+        return firstError;
+    }
+
+    /**
+     * Returns the number of responses received with the given status code
+     *
+     * @param statusCode the status code
+     * @return number of responses
+     */
+    public long getStatusCount(int statusCode) {
+        return statusCodes.getOrDefault(statusCode, 0L);
+    }
+
+    /**
+     * Returns the number of requests that failed: requests without response, and responses with a status code of
+     * 500 or greater
+     *
+     * @return failed requests
+     */
+    public long getFailed() {
+        long failed = errors;
+        for (Map.Entry<Integer, Long> entry : statusCodes.entrySet()) {
+            if (entry.getKey() >= 500) {
+                failed += entry.getValue();
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Returns the percentage of failed requests
+     *
+     * @return error rate (0 to 100)
+     * @see #getFailed()
+     */
+    public double getErrorRate() {
+        return (total == 0) ? 0 : this.getFailed() * 100.0 / total;
+    }
+
+    /**
+     * Returns the number of requests that got a response, whatever its status code
+     *
+     * @return completed requests
+     */
+    public int getCompleted() {
+        return total - errors;
+    }
+
+    /**
+     * Returns the number of requests completed per second. Requests without response (connection errors,
+     * timeouts...) are not counted
+     *
+     * @return requests per second
+     */
+    public double getRequestsPerSecond() {
+        if (elapsedMillis == 0) {
+            return this.getCompleted();
+        }
+        return this.getCompleted() * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        String summary = String.format("%d requests sent in %d ms (%.2f requests/sec), status codes %s, %d errors, latency %s",
+                total, elapsedMillis, this.getRequestsPerSecond(), statusCodes, errors, latencies);
+        return (firstError == null) ? summary : summary + ", first error: " + firstError;
+    }
+}
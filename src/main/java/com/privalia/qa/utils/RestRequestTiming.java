@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2018 Privalia (http://privalia.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.privalia.qa.utils;
+
+/**
+ * Timing of a single request sent to a REST service
+ */
+public class RestRequestTiming {
+
+    private final String method;
+
+    private final String endPoint;
+
+    private final int statusCode;
+
+    private final double connectMillis;
+
+    private final double timeToFirstByteMillis;
+
+    private final double totalMillis;
+
+    /**
+     * Instantiates a new timing.
+     *
+     * @param method                HTTP verb of the request
+     * @param endPoint              endpoint of the request
+     * @param statusCode            status code of the response
+     * @param connectMillis         time to open the connection in milliseconds (-1 if a pooled connection was used)
+     * @param timeToFirstByteMillis time until the headers of the response were received in milliseconds (-1 if unknown)
+     * @param totalMillis           time until the whole response was received in milliseconds
+     */
+    public RestRequestTiming(String method, String endPoint, int statusCode, double connectMillis, double timeToFirstByteMillis, double totalMillis) {
+        this.method = method;
+        this.endPoint = endPoint;
+        this.statusCode = statusCode;
+        this.connectMillis = connectMillis;
+        this.timeToFirstByteMillis = timeToFirstByteMillis;
+        this.totalMillis = totalMillis;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getEndPoint() {
+        return endPoint;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public double getConnectMillis() {
+        return connectMillis;
+    }
+
+    public double getTimeToFirstByteMillis() {
+        return timeToFirstByteMillis;
+    }
+
+    public double getTotalMillis() {
+        return totalMillis;
+    }
+
+    @Override
+    public String toString() {
+        String connect = (connectMillis < 0) ? "reused" : String.format("%.2f ms", connectMillis);
+        String firstByte = (timeToFirstByteMillis < 0) ? "-" : String.format("%.2f ms", timeToFirstByteMillis);
+        return String.format("%s %s -> %d: connect %s, first byte %s, total %.2f ms", method, endPoint, statusCode, connect, firstByte, totalMillis);
+    }
+}
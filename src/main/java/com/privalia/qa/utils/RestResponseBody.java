@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2018 Privalia (http://privalia.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.privalia.qa.utils;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import io.restassured.response.Response;
+import org.hjson.JsonValue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Body of a REST response, parsed only once.
+ * <p>
+ * A scenario usually runs several steps over the same response (checking the text, saving elements, matching
+ * cases, checking the length or the schema...). The body is read from the response the first time it is needed,
+ * and every representation (text, bytes, JsonPath document, Jackson tree) is built the first time it is used and
+ * reused by the following steps, until a new response is received. The json path expressions are also compiled only
+ * once, and shared by all the scenarios
+ */
+public class RestResponseBody {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .setNodeFactory(JsonNodeFactory.withExactBigDecimals(true))
+            .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+
+    private static final int MAX_COMPILED_PATHS = 1000;
+
+    private static final Map<String, JsonPath> COMPILED_PATHS = new ConcurrentHashMap<>();
+
+    private final Response response;
+
+    private byte[] bytes;
+
+    private String text;
+
+    private DocumentContext document;
+
+    private JsonNode tree;
+
+    /**
+     * Instantiates a new response body.
+     *
+     * @param response the REST response
+     */
+    public RestResponseBody(Response response) {
+        this.response = response;
+    }
+
+    /**
+     * Instantiates the body of a json document that was already read (i.e. saved in a variable).
+     *
+     * @param json the json document
+     */
+    public RestResponseBody(String json) {
+        this.response = null;
+        this.text = json;
+    }
+
+    /**
+     * Returns the compiled json path expression, compiling it if it was not used before
+     *
+     * @param expression json path expression
+     * @return compiled expression
+     */
+    public static JsonPath compile(String expression) {
+        JsonPath path = COMPILED_PATHS.get(expression);
+        if (path == null) {
+            path = JsonPath.compile(expression);
+            if (COMPILED_PATHS.size() >= MAX_COMPILED_PATHS) {
+                COMPILED_PATHS.clear();
+            }
+            COMPILED_PATHS.put(expression, path);
+        }
+        return path;
+    }
+
+    /**
+     * Parses a json (or hjson) document, in the same way as {@link com.privalia.qa.specs.CommonG#getJSONPathString(String, String, String)}
+     *
+     * @param json the document
+     * @return JsonPath document
+     */
+    public static DocumentContext parse(String json) {
+        return JsonPath.parse(JsonValue.readHjson(json).toString());
+    }
+
+    /**
+     * Returns the REST response
+     *
+     * @return the response, or null if the body was created from a json document
+     */
+    public Response getResponse() {
+        return this.response;
+    }
+
+    /**
+     * Returns the raw bytes of the body
+     *
+     * @return bytes of the body
+     */
+    public synchronized byte[] asBytes() {
+        if (this.bytes == null) {
+            this.bytes = (this.response != null) ? this.response.getBody().asByteArray() : this.text.getBytes(StandardCharsets.UTF_8);
+        }
+        return this.bytes;
+    }
+
+    /**
+     * Returns the body as text
+     *
+     * @return text of the body
+     */
+    public synchronized String asString() {
+        if (this.text == null) {
+            this.text = this.response.getBody().asString();
+        }
+        return this.text;
+    }
+
+    /**
+     * Returns the length of the body as text (number of characters)
+     *
+     * @return length of the body
+     */
+    public int getLength() {
+        return this.asString().length();
+    }
+
+    /**
+     * Returns the length of the raw body (number of bytes)
+     *
+     * @return length of the body in bytes
+     */
+    public int getByteLength() {
+        return this.asBytes().length;
+    }
+
+    /**
+     * Returns the body parsed as a JsonPath document
+     *
+     * @return JsonPath document
+     */
+    public synchronized DocumentContext getDocument() {
+        if (this.document == null) {
+            this.document = parse(this.asString());
+        }
+        return this.document;
+    }
+
+    /**
+     * Returns the body parsed as a Jackson tree. Decimal numbers are read as exact BigDecimals
+     *
+     * @return Jackson tree
+     */
+    public synchronized JsonNode getTree() {
+        if (this.tree == null) {
+            try {
+                this.tree = MAPPER.readTree(this.asBytes());
+            } catch (IOException e) {
+                throw new UncheckedIOException("The body of the response is not a valid json", e);
+            }
+        }
+        return this.tree;
+    }
+}
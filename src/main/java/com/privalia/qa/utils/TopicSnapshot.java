@@ -0,0 +1,454 @@
+/*
+ * Copyright (C) 2018 Privalia (http://privalia.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.privalia.qa.utils;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * A copy of all the records of a topic stored in local files, so the topic can be read many times without reading
+ * it again from kafka.
+ * <p>
+ * Records are stored in segment files (snapshot-N.segment) with their raw key and value, so they are deserialized
+ * when read with the deserializers configured at that moment. Every record is written as its length followed by
+ * the partition, offset, timestamp, key, value and headers. A segment is never bigger than the max segment size
+ * (a record never spans two segments), and segments are memory mapped for reading. An index file (snapshot.index)
+ * contains, for every partition, the first and last offsets and the position of every {@value #INDEX_INTERVAL}th
+ * record, so the records of a partition can be read starting at any offset
+ */
+public class TopicSnapshot implements Closeable {
+
+    private static final int INDEX_INTERVAL = 256;
+
+    private static final String INDEX_FILE = "snapshot.index";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TopicSnapshot.class);
+
+    private final String topic;
+
+    private final File directory;
+
+    private final int segments;
+
+    private final long recordCount;
+
+    private final Map<Integer, PartitionIndex> partitions;
+
+    private final MappedByteBuffer[] mappedSegments;
+
+    /**
+     * Offsets of a partition, and position of some of its records in the segments
+     */
+    private static final class PartitionIndex {
+
+        private long firstOffset = -1;
+
+        private long lastOffset = -1;
+
+        private long records;
+
+        private final TreeMap<Long, Long> positions = new TreeMap<>();
+    }
+
+    private TopicSnapshot(String topic, File directory, int segments, long recordCount, Map<Integer, PartitionIndex> partitions) {
+        this.topic = topic;
+        this.directory = directory;
+        this.segments = segments;
+        this.recordCount = recordCount;
+        this.partitions = partitions;
+        this.mappedSegments = new MappedByteBuffer[segments];
+    }
+
+    /**
+     * Reads all the records of the topic (up to the end offset every partition has when the capture starts) and
+     * stores them in the given directory. Any previous content of the directory is removed
+     *
+     * @param topic              name of the topic
+     * @param consumerProperties properties of the consumer (deserializers are ignored, records are stored as bytes)
+     * @param directory          directory where the snapshot is stored
+     * @param maxSegmentBytes    max size of every segment file (segments are never bigger than 2GB, so they can be mapped)
+     * @param timeoutMs          max time to read the topic in milliseconds
+     * @return the snapshot
+     * @throws IOException IOException
+     */
+    public static TopicSnapshot capture(String topic, Properties consumerProperties, File directory, long maxSegmentBytes, long timeoutMs) throws IOException {
+
+        Properties properties = new Properties();
+        properties.putAll(consumerProperties);
+        properties.remove("key.deserializer");
+        properties.remove("value.deserializer");
+
+        try (KafkaConsumer<byte[], byte[]> consumer = new KafkaConsumer<>(properties, new ByteArrayDeserializer(), new ByteArrayDeserializer())) {
+            return capture(topic, consumer, directory, maxSegmentBytes, timeoutMs);
+        }
+    }
+
+    static TopicSnapshot capture(String topic, Consumer<byte[], byte[]> consumer, File directory, long maxSegmentBytes, long timeoutMs) throws IOException {
+
+        FileUtils.deleteDirectory(directory);
+        FileUtils.forceMkdir(directory);
+
+        Map<Integer, PartitionIndex> partitions = new HashMap<>();
+        long recordCount = 0;
+        int segment = 0;
+        long segmentBytes = 0;
+        long segmentLimit = Math.min(maxSegmentBytes, Integer.MAX_VALUE);
+        long start = System.currentTimeMillis();
+
+        List<TopicPartition> topicPartitions = new ArrayList<>();
+        List<PartitionInfo> partitionInfos = consumer.partitionsFor(topic);
+        if (partitionInfos != null) {
+            for (PartitionInfo partitionInfo : partitionInfos) {
+                topicPartitions.add(new TopicPartition(topic, partitionInfo.partition()));
+                partitions.put(partitionInfo.partition(), new PartitionIndex());
+            }
+        }
+
+        consumer.assign(topicPartitions);
+        consumer.seekToBeginning(topicPartitions);
+        Map<TopicPartition, Long> endOffsets = consumer.endOffsets(topicPartitions);
+        Set<TopicPartition> pending = new HashSet<>(topicPartitions);
+        pending.removeIf(partition -> consumer.position(partition) >= endOffsets.get(partition));
+
+        DataOutputStream out = openSegment(directory, segment);
+        try {
+            long endTimeMillis = start + timeoutMs;
+            while (!pending.isEmpty() && System.currentTimeMillis() < endTimeMillis) {
+                ConsumerRecords<byte[], byte[]> polled = consumer.poll(100);
+                for (ConsumerRecord<byte[], byte[]> record : polled) {
+                    if (record.offset() >= endOffsets.get(new TopicPartition(record.topic(), record.partition()))) {
+                        continue;
+                    }
+                    byte[] bytes = encode(record);
+                    if (segmentBytes > 0 && segmentBytes + 4 + bytes.length > segmentLimit) {
+                        out.close();
+                        out = openSegment(directory, ++segment);
+                        segmentBytes = 0;
+                    }
+
+                    PartitionIndex index = partitions.get(record.partition());
+                    if (index.records % INDEX_INTERVAL == 0) {
+                        index.positions.put(record.offset(), ((long) segment << 32) | segmentBytes);
+                    }
+                    if (index.firstOffset < 0) {
+                        index.firstOffset = record.offset();
+                    }
+                    index.lastOffset = record.offset();
+                    index.records++;
+
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                    segmentBytes += 4 + bytes.length;
+                    recordCount++;
+                }
+                pending.removeIf(partition -> consumer.position(partition) >= endOffsets.get(partition));
+            }
+        } finally {
+            out.close();
+        }
+
+        if (!pending.isEmpty()) {
+            throw new IOException("Timeout of " + timeoutMs + " ms expired before reading all messages of topic " + topic + " in partitions " + pending);
+        }
+
+        writeIndex(directory, segment + 1, recordCount, partitions);
+        LOGGER.debug("Snapshot of topic {} with {} records stored in {} ({} ms)", topic, recordCount, directory, System.currentTimeMillis() - start);
+        return new TopicSnapshot(topic, directory, segment + 1, recordCount, partitions);
+    }
+
+    /**
+     * Opens a snapshot previously stored in the given directory
+     *
+     * @param topic     name of the topic
+     * @param directory directory of the snapshot
+     * @return the snapshot
+     * @throws IOException IOException
+     */
+    public static TopicSnapshot open(String topic, File directory) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(new File(directory, INDEX_FILE)))) {
+            int segments = in.readInt();
+            long recordCount = in.readLong();
+            int partitionCount = in.readInt();
+            Map<Integer, PartitionIndex> partitions = new HashMap<>();
+            for (int i = 0; i < partitionCount; i++) {
+                PartitionIndex index = new PartitionIndex();
+                int partition = in.readInt();
+                index.firstOffset = in.readLong();
+                index.lastOffset = in.readLong();
+                index.records = in.readLong();
+                int entries = in.readInt();
+                for (int j = 0; j < entries; j++) {
+                    index.positions.put(in.readLong(), in.readLong());
+                }
+                partitions.put(partition, index);
+            }
+            return new TopicSnapshot(topic, directory, segments, recordCount, partitions);
+        }
+    }
+
+    private static DataOutputStream openSegment(File directory, int segment) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(segmentFile(directory, segment)), 1 << 16));
+    }
+
+    private static File segmentFile(File directory, int segment) {
+        return new File(directory, "snapshot-" + segment + ".segment");
+    }
+
+    private static void writeIndex(File directory, int segments, long recordCount, Map<Integer, PartitionIndex> partitions) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(directory, INDEX_FILE))))) {
+            out.writeInt(segments);
+            out.writeLong(recordCount);
+            out.writeInt(partitions.size());
+            for (Map.Entry<Integer, PartitionIndex> entry : partitions.entrySet()) {
+                PartitionIndex index = entry.getValue();
+                out.writeInt(entry.getKey());
+                out.writeLong(index.firstOffset);
+                out.writeLong(index.lastOffset);
+                out.writeLong(index.records);
+                out.writeInt(index.positions.size());
+                for (Map.Entry<Long, Long> position : index.positions.entrySet()) {
+                    out.writeLong(position.getKey());
+                    out.writeLong(position.getValue());
+                }
+            }
+        }
+    }
+
+    private static byte[] encode(ConsumerRecord<byte[], byte[]> record) {
+        int size = 4 + 8 + 8 + 1 + 4 + length(record.key()) + 4 + length(record.value()) + 4;
+        List<byte[]> headerKeys = new ArrayList<>();
+        for (Header header : record.headers()) {
+            byte[] key = header.key().getBytes(StandardCharsets.UTF_8);
+            headerKeys.add(key);
+            size += 4 + key.length + 4 + length(header.value());
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(record.partition());
+        buffer.putLong(record.offset());
+        buffer.putLong(record.timestamp());
+        buffer.put((byte) record.timestampType().ordinal());
+        putBytes(buffer, record.key());
+        putBytes(buffer, record.value());
+        buffer.putInt(headerKeys.size());
+        int i = 0;
+        for (Header header : record.headers()) {
+            putBytes(buffer, headerKeys.get(i++));
+            putBytes(buffer, header.value());
+        }
+        return buffer.array();
+    }
+
+    private static int length(byte[] bytes) {
+        return (bytes == null) ? 0 : bytes.length;
+    }
+
+    private static int serializedSize(byte[] bytes) {
+        return (bytes == null) ? ConsumerRecord.NULL_SIZE : bytes.length;
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Applies the visitor to all the records of the snapshot, in the order they were read from the topic, until
+     * the visitor returns true
+     *
+     * @param keyDeserializer   deserializer of the keys
+     * @param valueDeserializer deserializer of the values
+     * @param visitor           Function applied to every record. Returning true stops the scan
+     * @param <K>               type of the key
+     * @param <V>               type of the value
+     * @return true if the scan was stopped by the visitor
+     * @throws IOException IOException
+     */
+    public <K, V> boolean scan(Deserializer<K> keyDeserializer, Deserializer<V> valueDeserializer, Predicate<ConsumerRecord<K, V>> visitor) throws IOException {
+        return this.scan(-1, 0, keyDeserializer, valueDeserializer, visitor);
+    }
+
+    /**
+     * Applies the visitor to the records of a partition, starting at the given offset, until the visitor
+     * returns true. The offset index is used to skip the records before the offset
+     *
+     * @param partition         number of the partition
+     * @param fromOffset        first offset to read
+     * @param keyDeserializer   deserializer of the keys
+     * @param valueDeserializer deserializer of the values
+     * @param visitor           Function applied to every record. Returning true stops the scan
+     * @param <K>               type of the key
+     * @param <V>               type of the value
+     * @return true if the scan was stopped by the visitor
+     * @throws IOException IOException
+     */
+    public <K, V> boolean scanPartition(int partition, long fromOffset, Deserializer<K> keyDeserializer, Deserializer<V> valueDeserializer,
+                                        Predicate<ConsumerRecord<K, V>> visitor) throws IOException {
+        PartitionIndex index = this.partitions.get(partition);
+        if (index == null || index.records == 0 || fromOffset > index.lastOffset) {
+            return false;
+        }
+        return this.scan(partition, fromOffset, keyDeserializer, valueDeserializer, visitor);
+    }
+
+    private <K, V> boolean scan(int partition, long fromOffset, Deserializer<K> keyDeserializer, Deserializer<V> valueDeserializer,
+                                Predicate<ConsumerRecord<K, V>> visitor) throws IOException {
+
+        int firstSegment = 0;
+        int firstPosition = 0;
+        if (partition >= 0) {
+            Map.Entry<Long, Long> entry = this.partitions.get(partition).positions.floorEntry(fromOffset);
+            if (entry != null) {
+                firstSegment = (int) (entry.getValue() >>> 32);
+                firstPosition = (int) (entry.getValue() & 0xFFFFFFFFL);
+            }
+        }
+
+        for (int segment = firstSegment; segment < this.segments; segment++) {
+            ByteBuffer buffer = this.getSegment(segment).duplicate();
+            buffer.position((segment == firstSegment) ? firstPosition : 0);
+
+            while (buffer.remaining() >= 4) {
+                int length = buffer.getInt();
+                int next = buffer.position() + length;
+                int recordPartition = buffer.getInt();
+                long offset = buffer.getLong();
+
+                if (partition < 0 || (recordPartition == partition && offset >= fromOffset)) {
+                    long timestamp = buffer.getLong();
+                    TimestampType timestampType = TimestampType.values()[buffer.get()];
+                    byte[] key = getBytes(buffer);
+                    byte[] value = getBytes(buffer);
+                    RecordHeaders headers = new RecordHeaders();
+                    int headerCount = buffer.getInt();
+                    for (int i = 0; i < headerCount; i++) {
+                        headers.add(new String(getBytes(buffer), StandardCharsets.UTF_8), getBytes(buffer));
+                    }
+
+                    ConsumerRecord<K, V> record = new ConsumerRecord<>(this.topic, recordPartition, offset, timestamp, timestampType,
+                            null, serializedSize(key), serializedSize(value), keyDeserializer.deserialize(this.topic, key),
+                            valueDeserializer.deserialize(this.topic, value), headers);
+                    if (visitor.test(record)) {
+                        return true;
+                    }
+                }
+                buffer.position(next);
+            }
+        }
+        return false;
+    }
+
+    private synchronized MappedByteBuffer getSegment(int segment) throws IOException {
+        if (this.mappedSegments[segment] == null) {
+            try (RandomAccessFile file = new RandomAccessFile(segmentFile(this.directory, segment), "r")) {
+                this.mappedSegments[segment] = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            }
+        }
+        return this.mappedSegments[segment];
+    }
+
+    public String getTopic() {
+        return this.topic;
+    }
+
+    public File getDirectory() {
+        return this.directory;
+    }
+
+    public long getRecordCount() {
+        return this.recordCount;
+    }
+
+    /**
+     * Returns the number of records of the partition in the snapshot
+     *
+     * @param partition number of the partition
+     * @return number of records
+     */
+    public long getRecordCount(int partition) {
+        PartitionIndex index = this.partitions.get(partition);
+        return (index == null) ? 0 : index.records;
+    }
+
+    /**
+     * Releases the memory mapped segments. The files are kept, so the snapshot can be opened again with
+     * {@link #open(String, File)}
+     */
+    @Override
+    public synchronized void close() {
+        for (int i = 0; i < this.mappedSegments.length; i++) {
+            this.mappedSegments[i] = null;
+        }
+    }
+
+    /**
+     * Closes the snapshot and removes its files
+     */
+    public void delete() {
+        this.close();
+        FileUtils.deleteQuietly(this.directory);
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2018 Privalia (http://privalia.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.privalia.qa.utils;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Records of a topic that were already read, and the offset where the read of each partition has to continue.
+ * <p>
+ * Every scan first visits the records already in memory and then fetches only the records written to the topic
+ * since the last scan, so asserting several times on the same topic does not read it again from the beginning.
+ * Records are also indexed by key. The memory used by the records is estimated from their serialized size. If it
+ * goes over the limit, the records are discarded and the tail is marked as overflowed, so the topic must be read
+ * again from the beginning by other means
+ */
+public class TopicTail implements Closeable {
+
+    private static final long RECORD_OVERHEAD_BYTES = 128;
+
+    private final Logger logger = LoggerFactory.getLogger(TopicTail.class);
+
+    private final String topic;
+
+    private final Properties consumerProperties;
+
+    private final long maxBytes;
+
+    private final List<ConsumerRecord<Object, Object>> records = new ArrayList<>();
+
+    private final Map<Object, List<ConsumerRecord<Object, Object>>> recordsByKey = new HashMap<>();
+
+    private final Map<TopicPartition, Long> positions = new HashMap<>();
+
+    private long bytes;
+
+    private boolean overflowed;
+
+    private KafkaConsumer<Object, Object> consumer;
+
+    /**
+     * Instantiates a new tail for the topic.
+     *
+     * @param topic              name of the topic
+     * @param consumerProperties properties of the consumer used to read the topic
+     * @param maxBytes           max estimated size of the records kept in memory
+     */
+    public TopicTail(String topic, Properties consumerProperties, long maxBytes) {
+        this.topic = topic;
+        this.consumerProperties = consumerProperties;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Applies the visitor to all the records of the topic, starting with the ones already in memory and continuing
+     * with the new ones, until every partition reaches the end offset it had when the scan started, the timeout
+     * expires or the visitor returns true
+     *
+     * @param visitor   Function applied to every record. Returning true stops the scan
+     * @param timeoutMs Maximum time to wait for new records in milliseconds
+     * @param <K>       type of the key
+     * @param <V>       type of the value
+     * @return true if the scan was stopped by the visitor
+     */
+    public synchronized <K, V> boolean scan(Predicate<ConsumerRecord<K, V>> visitor, long timeoutMs) {
+
+        Predicate<ConsumerRecord<Object, Object>> recordVisitor = (Predicate) visitor;
+
+        for (ConsumerRecord<Object, Object> record : this.records) {
+            if (recordVisitor.test(record)) {
+                return true;
+            }
+        }
+
+        if (this.consumer == null) {
+            this.consumer = new KafkaConsumer<>(this.consumerProperties);
+        }
+
+        List<PartitionInfo> partitionInfos = this.consumer.partitionsFor(this.topic);
+        if (partitionInfos == null || partitionInfos.isEmpty()) {
+            logger.debug("No partitions found for topic {}", this.topic);
+            return false;
+        }
+
+        List<TopicPartition> partitions = new ArrayList<>();
+        for (PartitionInfo partitionInfo : partitionInfos) {
+            partitions.add(new TopicPartition(this.topic, partitionInfo.partition()));
+        }
+
+        this.consumer.assign(partitions);
+        Map<TopicPartition, Long> beginningOffsets = this.consumer.beginningOffsets(partitions);
+        Map<TopicPartition, Long> endOffsets = this.consumer.endOffsets(partitions);
+        for (TopicPartition partition : partitions) {
+            this.positions.putIfAbsent(partition, beginningOffsets.get(partition));
+            this.consumer.seek(partition, this.positions.get(partition));
+        }
+
+        Set<TopicPartition> pending = new HashSet<>(partitions);
+        pending.removeIf(partition -> this.positions.get(partition) >= endOffsets.get(partition));
+
+        long endTimeMillis = System.currentTimeMillis() + timeoutMs;
+        while (!pending.isEmpty() && System.currentTimeMillis() < endTimeMillis) {
+            ConsumerRecords<Object, Object> polled = this.consumer.poll(100);
+            for (ConsumerRecord<Object, Object> record : polled) {
+                logger.debug("{}-{}: {}", record.partition(), record.offset(), record.value());
+                this.add(record);
+                this.positions.put(new TopicPartition(record.topic(), record.partition()), record.offset() + 1);
+                if (recordVisitor.test(record)) {
+                    return true;
+                }
+            }
+            for (TopicPartition partition : pending) {
+                this.positions.put(partition, this.consumer.position(partition));
+            }
+            pending.removeIf(partition -> this.positions.get(partition) >= endOffsets.get(partition));
+        }
+
+        if (!pending.isEmpty()) {
+            logger.warn("Read timeout of {} ms expired before reading all messages in partitions {}", timeoutMs, pending);
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the records already in memory with the given key. Call {@link #scan(Predicate, long)} first
+     * to fetch the latest records of the topic
+     *
+     * @param key key of the record
+     * @return records with that key, in the order they were read
+     */
+    public synchronized List<ConsumerRecord<Object, Object>> getRecordsWithKey(Object key) {
+        return new ArrayList<>(this.recordsByKey.getOrDefault(key, Collections.emptyList()));
+    }
+
+    /**
+     * Returns true if the records read from the topic went over the memory limit. In that case, no record is kept
+     * in memory and {@link #scan(Predicate, long)} should not be used anymore
+     *
+     * @return true if the tail overflowed
+     */
+    public synchronized boolean isOverflowed() {
+        return this.overflowed;
+    }
+
+    public synchronized int size() {
+        return this.records.size();
+    }
+
+    public synchronized long getEstimatedBytes() {
+        return this.bytes;
+    }
+
+    private void add(ConsumerRecord<Object, Object> record) {
+        if (this.overflowed) {
+            return;
+        }
+
+        this.bytes += Math.max(0, record.serializedKeySize()) + Math.max(0, record.serializedValueSize()) + RECORD_OVERHEAD_BYTES;
+        if (this.bytes > this.maxBytes) {
+            logger.warn("Records of topic {} are over the limit of {} bytes, they will not be kept in memory", this.topic, this.maxBytes);
+            this.overflowed = true;
+            this.records.clear();
+            this.recordsByKey.clear();
+            return;
+        }
+
+        this.records.add(record);
+        this.recordsByKey.computeIfAbsent(record.key(), key -> new ArrayList<>()).add(record);
+    }
+
+    /**
+     * Discards all the records and closes the consumer
+     */
+    @Override
+    public synchronized void close() {
+        this.records.clear();
+        this.recordsByKey.clear();
+        this.positions.clear();
+        if (this.consumer != null) {
+            this.consumer.close();
+            this.consumer = null;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.privalia.qa.specs;
+
+import com.privalia.qa.utils.RestClientUtil;
+import com.privalia.qa.utils.ThreadProperty;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.Test;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+import static io.restassured.RestAssured.given;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class StepRunnerTest {
+
+    @Test
+    public void stepsAreParsedWithTheirDatatablesTest() {
+
+        List<StepRunner.Step> steps = StepRunner.parse("Given I query the database with 'SELECT 1;'\n"
+                + "  # comment\n"
+                + "Then I check that result is:\n"
+                + "  | id | name |\n"
+                + "  | 1  | Paul |\n");
+
+        assertThat(steps).hasSize(2);
+        assertThat(steps.get(0).getText()).isEqualTo("I query the database with 'SELECT 1;'");
+        assertThat(steps.get(0).getRows()).isEmpty();
+        assertThat(steps.get(1).getText()).isEqualTo("I check that result is:");
+        assertThat(steps.get(1).getRows()).hasSize(2);
+        assertThat(steps.get(1).getRows().get(1)).containsExactly("1", "Paul");
+    }
+
+    @Test
+    public void stepsShareTheStateOfTheScenarioTest() throws Exception {
+        ThreadProperty.set("class", this.getClass().getCanonicalName());
+
+        CommonG commong = new CommonG();
+        StepRunner runner = new StepRunner(commong);
+
+        for (StepRunner.Step step : StepRunner.parse("I run 'echo step-runner' locally\nthe command output contains 'step-runner'")) {
+            runner.run(step);
+        }
+        assertThat(commong.getCommandResult()).contains("step-runner");
+    }
+
+    @Test
+    public void stepsSeeTheResultsOfTheStepsRunByCucumberTest() throws Exception {
+        ThreadProperty.set("class", this.getClass().getCanonicalName());
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            CommonG commong = new CommonG();
+            commong.setRestRequest(given().config(RestClientUtil.INSTANCE.getRestClientUtils().getRestAssuredConfig()));
+            RestSpec rest = new RestSpec(commong);
+            rest.setupApp(null, "localhost:" + server.getAddress().getPort());
+            rest.sendConcurrentRequests(10, "GET", "/", 2, null, null);
+
+            UtilsGSpec utils = new UtilsGSpec(commong);
+            utils.eventuallyWithin(1000, "the REST load test throughput is at least '1' requests per second");
+            assertThat(commong.getRestLoadResult().getTotal()).isEqualTo(10);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void eventuallyFailsWhenTheConditionIsNotMetTest() {
+        ThreadProperty.set("class", this.getClass().getCanonicalName());
+
+        UtilsGSpec utils = new UtilsGSpec(new CommonG());
+
+        assertThatThrownBy(() -> utils.eventuallyWithinSteps(300, "I run 'echo nothing' locally\nthe command output contains 'something'"))
+                .isInstanceOf(AssertionError.class).hasMessageContaining("Condition not met after");
+        assertThatThrownBy(() -> utils.eventuallyWithin(100, "this step does not exist"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
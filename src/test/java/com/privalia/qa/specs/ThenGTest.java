@@ -197,6 +197,37 @@ public class ThenGTest {
 
     }
 
+    @Test
+    public void testStreamingCasesInJSON() throws Exception {
+        String baseData = "consulMesosJSON.conf";
+        String envVar = "exampleEnvVar";
+        ThreadProperty.set("class", this.getClass().getCanonicalName());
+        CommonG commong = new CommonG();
+        RestSpec theng = new RestSpec(commong);
+
+        String result = new String(Files.readAllBytes(
+                Paths.get(getClass().getClassLoader().getResource(baseData).getFile())));
+
+        ThreadProperty.set(envVar, result);
+
+        List<String> row1 = Arrays.asList("$", "size", "4");
+        List<String> row2 = Arrays.asList("$.[0].ServiceTags", "contains", "leader");
+        List<String> row3 = Arrays.asList("$.[1].Node", "equal", "test3.dummy.com");
+        List<String> row4 = Arrays.asList("$.[0].ServicePort", "equal", "5050");
+        List<String> row5 = Arrays.asList("$.[9]", "does not exists", "");
+
+        List<List<String>> rawData = Arrays.asList(row1, row2, row3, row4, row5);
+
+        DataTable table = DataTable.create(rawData);
+
+        System.setProperty("REST_JSON_STREAMING", "true");
+        try {
+            theng.matchWithExpresion(envVar, table);
+        } finally {
+            System.clearProperty("REST_JSON_STREAMING");
+        }
+    }
+
     @Test(expectedExceptions = AssertionError.class)
     public void testNotParsedArraySizeInJSON() throws Exception {
         String baseData = "consulMesosJSON.conf";
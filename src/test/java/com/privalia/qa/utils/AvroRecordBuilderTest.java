@@ -0,0 +1,70 @@
+package com.privalia.qa.utils;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AvroRecordBuilderTest {
+
+    private static final String SCHEMA = "{\"type\":\"record\",\"name\":\"Person\",\"fields\":["
+            + "{\"name\":\"name\",\"type\":\"string\"},"
+            + "{\"name\":\"age\",\"type\":\"int\"},"
+            + "{\"name\":\"id\",\"type\":[\"null\",\"long\"]},"
+            + "{\"name\":\"active\",\"type\":\"boolean\"},"
+            + "{\"name\":\"amount\",\"type\":\"bytes\"},"
+            + "{\"name\":\"tags\",\"type\":{\"type\":\"array\",\"items\":\"string\"}},"
+            + "{\"name\":\"address\",\"type\":{\"type\":\"record\",\"name\":\"Address\",\"fields\":["
+            + "{\"name\":\"city\",\"type\":\"string\"},{\"name\":\"number\",\"type\":\"int\"}]}}]}";
+
+    @Test
+    public void buildRecordFromJsonTest() throws IOException {
+
+        AvroRecordBuilder builder = new AvroRecordBuilder();
+        String json = "{\"name\":\"John\",\"age\":30,\"id\":12,\"active\":true,\"amount\":\"12.50\","
+                + "\"tags\":[\"a\",\"b\"],\"address\":{\"city\":\"Barcelona\",\"number\":5},\"unknown\":1}";
+
+        GenericRecord record = builder.build(builder.parseSchema(SCHEMA), builder.toProperties(json));
+
+        assertThat(record.get("name")).isEqualTo("John");
+        assertThat(record.get("age")).isEqualTo(30);
+        assertThat(record.get("id")).isEqualTo(12L);
+        assertThat(record.get("active")).isEqualTo(true);
+        assertThat(record.get("amount")).isEqualTo(ByteBuffer.wrap(new byte[]{0x04, (byte) 0xE2}));
+        assertThat((List<Object>) record.get("tags")).containsExactly("a", "b");
+        assertThat(((GenericRecord) record.get("address")).get("city")).isEqualTo("Barcelona");
+        assertThat(((GenericRecord) record.get("address")).get("number")).isEqualTo(5);
+    }
+
+    @Test
+    public void schemaIsParsedOnlyOnceTest() {
+
+        AvroRecordBuilder builder = new AvroRecordBuilder();
+        Schema first = builder.parseSchema(SCHEMA);
+        Schema second = builder.parseSchema(new String(SCHEMA));
+
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    public void sameSchemaBuildsEqualRecordsTest() throws IOException {
+
+        AvroRecordBuilder builder = new AvroRecordBuilder();
+        Map<String, String> properties = new HashMap<>();
+        properties.put("name", "John");
+        properties.put("age", "30");
+
+        GenericRecord first = builder.build(SCHEMA, properties);
+        GenericRecord second = builder.build(SCHEMA, properties);
+
+        assertThat(second).isEqualTo(first);
+        assertThat(builder.build(SCHEMA, null)).isNull();
+    }
+}
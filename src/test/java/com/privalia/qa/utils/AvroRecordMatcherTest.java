@@ -0,0 +1,101 @@
+package com.privalia.qa.utils;
+
+import com.jayway.jsonpath.JsonPath;
+import org.apache.avro.generic.GenericRecord;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AvroRecordMatcherTest {
+
+    private static final String SCHEMA = "{\"type\":\"record\",\"name\":\"Order\",\"fields\":["
+            + "{\"name\":\"id\",\"type\":\"long\"},"
+            + "{\"name\":\"status\",\"type\":\"string\"},"
+            + "{\"name\":\"price\",\"type\":\"float\"},"
+            + "{\"name\":\"items\",\"type\":{\"type\":\"array\",\"items\":\"string\"}},"
+            + "{\"name\":\"user\",\"type\":{\"type\":\"record\",\"name\":\"User\",\"fields\":["
+            + "{\"name\":\"name\",\"type\":\"string\"},{\"name\":\"age\",\"type\":\"int\"}]}}]}";
+
+    private final AtomicInteger jsonReads = new AtomicInteger(0);
+
+    private final BiFunction<String, String, String> jsonPathReader = (json, expression) -> {
+        jsonReads.incrementAndGet();
+        return JsonPath.parse(json).read(expression).toString();
+    };
+
+    @BeforeMethod
+    public void resetJsonReads() {
+        jsonReads.set(0);
+    }
+
+    private GenericRecord record(AvroRecordBuilder builder, long id, String status, String name) throws IOException {
+        String json = "{\"id\":" + id + ",\"status\":\"" + status + "\",\"price\":10.5,\"items\":[\"a\",\"b\"],"
+                + "\"user\":{\"name\":\"" + name + "\",\"age\":30}}";
+        return builder.build(builder.parseSchema(SCHEMA), builder.toProperties(json));
+    }
+
+    @Test
+    public void compiledExpressionsAreReadFromTheRecordTest() throws IOException {
+
+        GenericRecord record = record(new AvroRecordBuilder(), 1, "SENT", "Paul");
+        AvroFieldPath.RecordJson json = new AvroFieldPath.RecordJson(record);
+
+        assertThat(new AvroFieldPath("$.user.name", jsonPathReader).read(record, json)).isEqualTo("Paul");
+        assertThat(new AvroFieldPath("user.age", jsonPathReader).read(record, json)).isEqualTo("30");
+        assertThat(new AvroFieldPath("$.items[1]", jsonPathReader).read(record, json)).isEqualTo("b");
+        assertThat(new AvroFieldPath("id", jsonPathReader).read(record, json)).isEqualTo("1");
+        assertThat(jsonReads.get()).isEqualTo(0);
+
+        AvroFieldPath price = new AvroFieldPath("$.price", jsonPathReader);
+        assertThat(price.read(record, json)).isEqualTo("10.5");
+        assertThat(jsonReads.get()).isEqualTo(1);
+
+        assertThat(new AvroFieldPath("$.items[*]", jsonPathReader).isCompiled()).isFalse();
+        assertThat(new AvroFieldPath("$..name", jsonPathReader).isCompiled()).isFalse();
+        assertThat(new AvroFieldPath("$.items[0]name", jsonPathReader).isCompiled()).isFalse();
+    }
+
+    @Test
+    public void matcherChecksAllConditionsTest() throws IOException {
+
+        AvroRecordBuilder builder = new AvroRecordBuilder();
+        List<List<String>> conditions = Arrays.asList(
+                Arrays.asList("user.age", "not equal", "40"),
+                Arrays.asList("user.name", "equal", "Paul"));
+        AvroRecordMatcher.ConditionEvaluator evaluator = (value, operation, expected) ->
+                "equal".equals(operation) ? expected.equals(value) : !expected.equals(value);
+        AvroRecordMatcher matcher = new AvroRecordMatcher(conditions, evaluator, jsonPathReader);
+
+        assertThat(matcher.matches(record(builder, 1, "SENT", "Paul"))).isTrue();
+        assertThat(matcher.matches(record(builder, 2, "SENT", "John"))).isFalse();
+        assertThat(jsonReads.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void expectationSetFindsAllRecordsTest() throws IOException {
+
+        AvroRecordBuilder builder = new AvroRecordBuilder();
+        List<List<String>> expected = Arrays.asList(
+                Arrays.asList("SENT", "1", "Paul"),
+                Arrays.asList("SENT", "2", "John"),
+                Arrays.asList("PAID", "3", "Anna"));
+        AvroExpectationSet expectations = new AvroExpectationSet(Arrays.asList("status", "$.id", "user.name"), expected, jsonPathReader);
+
+        assertThat(expectations.getIndexExpression()).isEqualTo("$.id");
+        assertThat(expectations.visit(record(builder, 2, "SENT", "John"))).isFalse();
+        assertThat(expectations.visit(record(builder, 1, "SENT", "Mark"))).isFalse();
+        assertThat(expectations.visit(record(builder, 4, "PAID", "Anna"))).isFalse();
+        assertThat(expectations.getUnmatched()).containsExactly(expected.get(0), expected.get(2));
+
+        assertThat(expectations.visit(record(builder, 1, "SENT", "Paul"))).isFalse();
+        assertThat(expectations.visit(record(builder, 3, "PAID", "Anna"))).isTrue();
+        assertThat(expectations.getUnmatched()).isEmpty();
+    }
+}
@@ -0,0 +1,73 @@
+package com.privalia.qa.utils;
+
+import com.github.fge.jackson.JsonLoader;
+import com.github.fge.jsonschema.main.JsonSchema;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class JsonSchemaCacheTest {
+
+    private static final String POSTS = "[{\"userId\":1,\"id\":1,\"title\":\"a\",\"body\":\"b\"}]";
+
+    @Test
+    public void schemasAreCompiledOnlyOnceTest() throws Exception {
+
+        JsonSchemaCache cache = new JsonSchemaCache(false);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CompletableFuture<?>[] validations = new CompletableFuture<?>[50];
+            for (int i = 0; i < validations.length; i++) {
+                validations[i] = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return cache.get("schemas/responseSchema.json").validate(JsonLoader.fromString(POSTS)).isSuccess();
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }, executor);
+            }
+            CompletableFuture.allOf(validations).join();
+            for (CompletableFuture<?> validation : validations) {
+                assertThat(validation.get()).isEqualTo(true);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(cache.getCompilations()).isEqualTo(1);
+        assertThat(cache.get("schemas/responseSchema.json").validate(JsonLoader.fromString("[{\"id\":1}]")).isSuccess()).isFalse();
+        assertThatThrownBy(() -> cache.get("schemas/notFound.json")).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void modifiedSchemasAreCompiledAgainTest() throws Exception {
+
+        File folder = new File(getClass().getClassLoader().getResource("schemas/responseSchema.json").toURI()).getParentFile();
+        File file = new File(folder, "modifiedSchema.json");
+        try {
+            Files.write(file.toPath(), "{\"type\":\"array\"}".getBytes(StandardCharsets.UTF_8));
+            JsonSchemaCache cache = new JsonSchemaCache(true);
+            JsonSchema schema = cache.get("schemas/modifiedSchema.json");
+
+            assertThat(cache.get("schemas/modifiedSchema.json")).isSameAs(schema);
+            assertThat(schema.validate(JsonLoader.fromString("{}")).isSuccess()).isFalse();
+
+            Files.write(file.toPath(), "{\"type\":\"object\"}".getBytes(StandardCharsets.UTF_8));
+            assertThat(file.setLastModified(file.lastModified() + 2000)).isTrue();
+
+            assertThat(cache.get("schemas/modifiedSchema.json").validate(JsonLoader.fromString("{}")).isSuccess()).isTrue();
+            assertThat(cache.getCompilations()).isEqualTo(2);
+        } finally {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.privalia.qa.utils;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class JsonStreamEvaluatorTest {
+
+    private static final String JSON = "{\"store\":{\"book\":[{\"title\":\"Sayings\",\"price\":8.95,\"tags\":[\"a\",\"b\"]},"
+            + "{\"title\":\"Sword\",\"price\":12.99,\"isbn\":null}],\"name\":\"the store\"},\"open\":true}";
+
+    /**
+     * Generates an array of objects without keeping it in memory
+     */
+    private static final class LargeArrayStream extends InputStream {
+
+        private final int elements;
+
+        private int element = -1;
+
+        private byte[] chunk = "[".getBytes(StandardCharsets.UTF_8);
+
+        private int position;
+
+        private LargeArrayStream(int elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        public int read() {
+            if (position == chunk.length) {
+                element++;
+                if (element > elements) {
+                    return -1;
+                }
+                String next = (element == elements) ? "]" : (element > 0 ? "," : "") + "{\"id\":" + element + ",\"payload\":\"" + element + "-xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx\"}";
+                chunk = next.getBytes(StandardCharsets.UTF_8);
+                position = 0;
+            }
+            return chunk[position++];
+        }
+    }
+
+    @Test
+    public void expressionsAreEvaluatedInASinglePassTest() throws IOException {
+
+        JsonStreamEvaluator evaluator = new JsonStreamEvaluator()
+                .addValue("$.store.book[1].title")
+                .addValue("$['store']['name']")
+                .addValue("$.store.book[0].price")
+                .addValue("$.store.book[0].tags")
+                .addValue("$.store.book[0]")
+                .addValue("$.open")
+                .addValue("$.store.book[1].isbn")
+                .addSize("$.store.book")
+                .addSize("$.store.book[0].tags")
+                .addSize("$.store")
+                .addPath("$.store.book[5]");
+
+        evaluator.evaluate(new StringReader(JSON));
+
+        assertThat(evaluator.getValue("$.store.book[1].title")).isEqualTo("Sword");
+        assertThat(evaluator.getValue("$['store']['name']")).isEqualTo("the store");
+        assertThat(evaluator.getValue("$.store.book[0].price")).isEqualTo("8.95");
+        assertThat(evaluator.getValue("$.store.book[0].tags")).isEqualTo("[\"a\",\"b\"]");
+        assertThat(evaluator.getValue("$.store.book[0]")).isEqualTo("{\"title\":\"Sayings\",\"price\":8.95,\"tags\":[\"a\",\"b\"]}");
+        assertThat(evaluator.getValue("$.open")).isEqualTo("true");
+        assertThat(evaluator.getValue("$.store.book[1].isbn")).isEqualTo("null");
+        assertThat(evaluator.getSize("$.store.book")).isEqualTo(2);
+        assertThat(evaluator.getSize("$.store.book[0].tags")).isEqualTo(2);
+        assertThat(evaluator.isFound("$.store")).isTrue();
+        assertThat(evaluator.getSize("$.store")).isNull();
+        assertThat(evaluator.isFound("$.store.book[5]")).isFalse();
+    }
+
+    @Test
+    public void sizeAndValueOfTheSameExpressionTest() throws IOException {
+
+        JsonStreamEvaluator evaluator = new JsonStreamEvaluator()
+                .addSize("$.tags")
+                .addValue("$.tags");
+
+        evaluator.evaluate(new StringReader("{\"tags\":[\"a\",\"b\"],\"other\":1}"));
+
+        assertThat(evaluator.getValue("$.tags")).isEqualTo("[\"a\",\"b\"]");
+        assertThat(evaluator.getSize("$.tags")).isEqualTo(2);
+
+        evaluator = new JsonStreamEvaluator()
+                .addValue("$.store.book")
+                .addSize("$.store.book")
+                .addPath("$.store.book");
+
+        evaluator.evaluate(new StringReader(JSON));
+
+        assertThat(evaluator.getSize("$.store.book")).isEqualTo(2);
+        assertThat(evaluator.isFound("$.store.book")).isTrue();
+    }
+
+    @Test
+    public void onlyDefinitePathsAreSupportedTest() {
+
+        assertThat(JsonStreamEvaluator.isSupported("$")).isTrue();
+        assertThat(JsonStreamEvaluator.isSupported("$.[0].userId")).isTrue();
+        assertThat(JsonStreamEvaluator.isSupported("$[\"a b\"][2]")).isTrue();
+        assertThat(JsonStreamEvaluator.isSupported("$.store.book[*].title")).isFalse();
+        assertThat(JsonStreamEvaluator.isSupported("$..title")).isFalse();
+        assertThat(JsonStreamEvaluator.isSupported("$.book[?(@.price < 10)]")).isFalse();
+        assertThat(JsonStreamEvaluator.isSupported("$.book.length()")).isFalse();
+        assertThat(JsonStreamEvaluator.isSupported("$.book[-1]")).isFalse();
+        assertThat(JsonStreamEvaluator.isSupported("[0].Node")).isFalse();
+
+        assertThatThrownBy(() -> new JsonStreamEvaluator().addValue("$..title")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void largeDocumentsAreNotKeptInMemoryTest() throws IOException {
+
+        JsonStreamEvaluator evaluator = new JsonStreamEvaluator()
+                .addSize("$")
+                .addValue("$[499999].payload")
+                .addValue("$[10].id");
+
+        evaluator.evaluate(new LargeArrayStream(500000));
+
+        assertThat(evaluator.getSize("$")).isEqualTo(500000);
+        assertThat(evaluator.getValue("$[499999].payload")).startsWith("499999-");
+        assertThat(evaluator.getValue("$[10].id")).isEqualTo("10");
+    }
+}
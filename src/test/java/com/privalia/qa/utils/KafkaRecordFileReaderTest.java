@@ -0,0 +1,75 @@
+package com.privalia.qa.utils;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KafkaRecordFileReaderTest {
+
+    private static final String SCHEMA = "{\"type\":\"record\",\"name\":\"Person\",\"fields\":["
+            + "{\"name\":\"id\",\"type\":\"long\"},{\"name\":\"name\",\"type\":\"string\"}]}";
+
+    @Test
+    public void readJsonLinesTest() throws IOException {
+
+        String file = "{\"id\":1,\"name\":\"Paul\"}\n\n{\"id\":2,\"name\":\"John\"}\n";
+        try (KafkaRecordFileReader reader = new KafkaRecordFileReader(new StringReader(file), "json", "id", null, new AvroRecordBuilder())) {
+            Map.Entry<String, Object> first = reader.next();
+            assertThat(first.getKey()).isEqualTo("1");
+            assertThat(first.getValue()).isEqualTo("{\"id\":1,\"name\":\"Paul\"}");
+            assertThat(reader.next().getKey()).isEqualTo("2");
+            assertThat(reader.hasNext()).isFalse();
+        }
+    }
+
+    @Test
+    public void readCsvRowsTest() throws IOException {
+
+        String file = "id,name\n1,Paul\n2,\"Smith, John\"\n";
+        try (KafkaRecordFileReader reader = new KafkaRecordFileReader(new StringReader(file), "csv", null, null, new AvroRecordBuilder())) {
+            Map.Entry<String, Object> first = reader.next();
+            assertThat(first.getKey()).isNull();
+            assertThat(first.getValue()).isEqualTo("{\"id\":\"1\",\"name\":\"Paul\"}");
+            assertThat(reader.next().getValue()).isEqualTo("{\"id\":\"2\",\"name\":\"Smith, John\"}");
+            assertThat(reader.hasNext()).isFalse();
+        }
+    }
+
+    @Test
+    public void readAvroRecordsTest() throws IOException {
+
+        AvroRecordBuilder builder = new AvroRecordBuilder();
+        Schema schema = builder.parseSchema(SCHEMA);
+
+        String json = "{\"id\":1,\"name\":\"Paul\"}\n";
+        try (KafkaRecordFileReader reader = new KafkaRecordFileReader(new StringReader(json), "avro", "name", schema, builder)) {
+            Map.Entry<String, Object> record = reader.next();
+            assertThat(record.getKey()).isEqualTo("Paul");
+            assertThat(((GenericRecord) record.getValue()).get("id")).isEqualTo(1L);
+        }
+
+        try (KafkaRecordFileReader reader = new KafkaRecordFileReader(new StringReader(json), "json", "id", schema, builder)) {
+            Map.Entry<String, Object> record = reader.next();
+            assertThat(record.getKey()).isEqualTo("1");
+            assertThat(((GenericRecord) record.getValue()).get("name").toString()).isEqualTo("Paul");
+        }
+
+        String csv = "id,name\n7,Anna\n";
+        try (KafkaRecordFileReader reader = new KafkaRecordFileReader(new StringReader(csv), "csv", "id", schema, builder)) {
+            Map.Entry<String, Object> record = reader.next();
+            assertThat(record.getKey()).isEqualTo("7");
+            assertThat(((GenericRecord) record.getValue()).get("name")).isEqualTo("Anna");
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void avroFormatRequiresSchemaTest() throws IOException {
+        new KafkaRecordFileReader(new StringReader(""), "avro", null, null, new AvroRecordBuilder());
+    }
+}
@@ -28,9 +28,12 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -57,6 +60,16 @@ public class KafkaUtilsIT {
         kafka_utils.deleteTopic("testTopic");
     }
 
+    @Test(enabled = false)
+    public void createAndDeleteSeveralTopicsTest() {
+        List<String> topics = Arrays.asList("testBatch1", "testBatch2", "testBatch3");
+        kafka_utils.createTopics(topics, true);
+        assertThat(kafka_utils.listTopics()).containsAll(topics);
+        assertThat(kafka_utils.describeTopics(topics)).hasSize(3);
+        kafka_utils.deleteTopics(topics);
+        assertThat(kafka_utils.listTopics()).doesNotContainAnyElementsOf(topics);
+    }
+
     @Test(enabled = false)
     public void listTopicsTest() {
         if (AdminUtils.topicExists(kafka_utils.getZkUtils(), "testList")) {
@@ -87,6 +100,42 @@ public class KafkaUtilsIT {
         kafka_utils.deleteTopic(topic);
     }
 
+    @Test(enabled = false)
+    public void scanTopicKeepsRecordsWithSameKeyTest() throws InterruptedException, ExecutionException, TimeoutException {
+        String topic = "kafkaScanTest";
+
+        if (!AdminUtils.topicExists(kafka_utils.getZkUtils(), topic)) {
+            kafka_utils.createTopic(topic);
+        }
+        kafka_utils.sendAndConfirmMessage("first", "sameKey", topic, 1);
+        kafka_utils.sendAndConfirmMessage("second", "sameKey", topic, 1);
+
+        AtomicInteger count = new AtomicInteger(0);
+        kafka_utils.scanTopic(topic, record -> {
+            count.incrementAndGet();
+            return false;
+        });
+        assertThat(count.get()).isEqualTo(2);
+        assertThat(kafka_utils.topicContains(topic, record -> "first".equals(record.value()))).isTrue();
+        kafka_utils.deleteTopic(topic);
+    }
+
+    @Test(enabled = false)
+    public void topicTailOnlyFetchesNewRecordsTest() throws InterruptedException, ExecutionException, TimeoutException {
+        String topic = "kafkaTailTest";
+
+        kafka_utils.createTopics(Arrays.asList(topic), true);
+        kafka_utils.sendAndConfirmMessage("first", "key1", topic, 1);
+        assertThat(kafka_utils.topicContains(topic, record -> "first".equals(record.value()))).isTrue();
+
+        kafka_utils.sendAndConfirmMessage("second", "key2", topic, 1);
+        assertThat(kafka_utils.topicContains(topic, record -> "second".equals(record.value()))).isTrue();
+        assertThat(kafka_utils.getRecordsWithKey(topic, "key1")).hasSize(1);
+
+        kafka_utils.clearTopicTails();
+        kafka_utils.deleteTopic(topic);
+    }
+
     @Test(enabled = false)
     public void modifyPartitionsTest() {
         if (AdminUtils.topicExists(kafka_utils.getZkUtils(), "testPartitions")) {
@@ -120,6 +169,23 @@ public class KafkaUtilsIT {
         assertThat(response.code()).as("Schema registry returned " + response.code() + " response, body: " + response.body().string()).isEqualTo(200);
     }
 
+    @Test(enabled = false)
+    public void schemaVersionIsFetchedOnceTest() throws IOException {
+
+        Response  response = kafka_utils.registerNewSchema("Kafka-key", "{\"type\": \"string\"}");
+        assertThat(response.code()).as("Schema registry returned " + response.code() + " response, body: " + response.body().string()).isEqualTo(200);
+
+        kafka_utils.clearSchemaCache();
+        long misses = kafka_utils.getSchemaCacheMisses();
+        long hits = kafka_utils.getSchemaCacheHits();
+        String first = kafka_utils.getSchemaFromRegistry("Kafka-key", "1");
+        String second = kafka_utils.getSchemaFromRegistry("Kafka-key", "1");
+
+        assertThat(second).isEqualTo(first);
+        assertThat(kafka_utils.getSchemaCacheMisses()).isEqualTo(misses + 1);
+        assertThat(kafka_utils.getSchemaCacheHits()).isEqualTo(hits + 1);
+    }
+
     @Test(enabled = false)
     public void sendAvroRecordTest() throws IOException, InterruptedException, ExecutionException, TimeoutException {
 
@@ -0,0 +1,58 @@
+package com.privalia.qa.utils;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogramTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertThat(histogram.getCount()).isEqualTo(0);
+        assertThat(histogram.getMin()).isEqualTo(0);
+        assertThat(histogram.getMax()).isEqualTo(0);
+        assertThat(histogram.getValueAtPercentile(99)).isEqualTo(0);
+    }
+
+    @Test
+    public void percentilesTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100000; i++) {
+            histogram.record(i);
+        }
+
+        assertThat(histogram.getCount()).isEqualTo(100000);
+        assertThat(histogram.getMin()).isEqualTo(1);
+        assertThat(histogram.getMax()).isEqualTo(100000);
+        assertThat(histogram.getMean()).isCloseTo(50000.5, within(0.01));
+        assertThat(histogram.getValueAtPercentile(50)).isBetween(50000L, 50500L);
+        assertThat(histogram.getValueAtPercentile(99)).isBetween(99000L, 99990L);
+        assertThat(histogram.getValueAtPercentile(100)).isEqualTo(100000);
+    }
+
+    @Test
+    public void smallValuesAreExactTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3);
+        histogram.record(200);
+        histogram.record(-5);
+
+        assertThat(histogram.getMin()).isEqualTo(0);
+        assertThat(histogram.getValueAtPercentile(50)).isEqualTo(3);
+        assertThat(histogram.getValueAtPercentile(100)).isEqualTo(200);
+    }
+
+    @Test
+    public void recordWithTimeUnitTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(25, TimeUnit.MILLISECONDS);
+
+        assertThat(histogram.getMax()).isEqualTo(25000);
+        assertThat(histogram.getMillisAtPercentile(50)).isCloseTo(25.0, within(0.25));
+    }
+}
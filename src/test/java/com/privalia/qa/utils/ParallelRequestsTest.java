@@ -0,0 +1,119 @@
+package com.privalia.qa.utils;
+
+import com.ning.http.client.AsyncHttpClient;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ParallelRequestsTest {
+
+    private HttpServer server;
+
+    private String url;
+
+    private ExecutorService serverExecutor;
+
+    private RestClientUtils utils;
+
+    @BeforeClass
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/wait", exchange -> {
+            try {
+                Thread.sleep(Long.parseLong(exchange.getRequestURI().getQuery()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = ("{\"waited\":" + exchange.getRequestURI().getQuery() + "}").getBytes();
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/wait?";
+        utils = new RestClientUtils();
+    }
+
+    @AfterClass
+    public void stopServer() {
+        utils.close();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void requestsRunConcurrentlyTest() throws Exception {
+        AsyncHttpClient client = utils.getClient();
+        ParallelRequests requests = new ParallelRequests();
+
+        long start = System.nanoTime();
+        requests.add("first", client.prepareGet(url + 300).execute());
+        requests.add("second", client.prepareGet(url + 400).execute());
+        requests.add("third", client.prepareGet(url + 200).execute());
+        assertThat(requests.getPendingCount()).isEqualTo(3);
+
+        List<ParallelRequests.Result> results = requests.awaitAll(5000);
+        long elapsed = (System.nanoTime() - start) / 1000000;
+
+        assertThat(results).extracting(ParallelRequests.Result::getAlias).containsExactly("first", "second", "third");
+        assertThat(requests.getPendingCount()).isEqualTo(0);
+        assertThat(elapsed).isGreaterThanOrEqualTo(400).isLessThan(800);
+        assertThat(requests.getResult("second").getError()).isNull();
+        assertThat(requests.getResult("second").getResponse().getStatusCode()).isEqualTo(200);
+        assertThat(requests.getResult("second").getResponse().getResponse()).isEqualTo("{\"waited\":400}");
+        assertThat(requests.getResult("second").getElapsedMillis()).isGreaterThanOrEqualTo(400);
+        assertThat(requests.getResult("third").getElapsedMillis()).isBetween(200L, 399L);
+        assertThat(requests.getResult("unknown")).isNull();
+
+        requests.clear();
+        assertThat(requests.getResults()).isEmpty();
+        utils.releaseClient(client);
+    }
+
+    @Test
+    public void slowRequestsAreCancelledAfterTheTimeoutTest() throws Exception {
+        AsyncHttpClient client = utils.getClient();
+        ParallelRequests requests = new ParallelRequests();
+
+        requests.add("fast", client.prepareGet(url + 10).execute());
+        requests.add("slow", client.prepareGet(url + 2000).execute());
+        requests.awaitAll(500);
+
+        assertThat(requests.getResult("fast").getResponse().getStatusCode()).isEqualTo(200);
+        assertThat(requests.getResult("slow").getResponse()).isNull();
+        assertThat(requests.getResult("slow").getError()).isInstanceOf(TimeoutException.class).hasMessage("No response after 500 ms");
+        utils.releaseClient(client);
+    }
+
+    @Test
+    public void aliasesMustBeUniqueTest() throws Exception {
+        AsyncHttpClient client = utils.getClient();
+        ParallelRequests requests = new ParallelRequests();
+
+        requests.add("request", client.prepareGet(url + 10).execute());
+        assertThatThrownBy(() -> requests.add("request", client.prepareGet(url + 10).execute()))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("'request'");
+
+        requests.awaitAll(5000);
+        requests.add("request", client.prepareGet(url + 20).execute());
+        assertThat(requests.getResult("request")).isNull();
+        assertThat(requests.awaitAll(5000)).hasSize(1);
+        assertThat(requests.getResult("request").getResponse().getResponse()).isEqualTo("{\"waited\":20}");
+        utils.releaseClient(client);
+    }
+}
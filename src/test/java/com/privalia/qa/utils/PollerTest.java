@@ -0,0 +1,54 @@
+package com.privalia.qa.utils;
+
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.fail;
+
+public class PollerTest {
+
+    @Test
+    public void returnsAsSoonAsTheConditionHoldsTest() throws Exception {
+
+        long start = System.currentTimeMillis();
+        Poller poller = new Poller(5000, 1000);
+
+        String result = poller.until(() -> {
+            if (System.currentTimeMillis() - start < 100) {
+                fail("Not yet");
+            }
+            return "done";
+        });
+
+        assertThat(result).isEqualTo("done");
+        assertThat(poller.getAttempts()).isGreaterThan(1);
+        assertThat(poller.getElapsedMillis()).isLessThan(1000);
+    }
+
+    @Test
+    public void failsWithTheLastErrorAtTheDeadlineTest() {
+
+        Poller poller = new Poller(300, 50);
+
+        assertThatThrownBy(() -> poller.until(() -> {
+            fail("Value not found");
+            return null;
+        })).isInstanceOf(AssertionError.class).hasMessageContaining("Value not found").hasMessageContaining("Condition not met after");
+
+        assertThat(poller.getElapsedMillis()).isBetween(300L, 1000L);
+        assertThat(poller.getAttempts()).isGreaterThan(3);
+    }
+
+    @Test
+    public void otherExceptionsStopThePollingTest() {
+
+        Poller poller = new Poller(5000, 1000);
+
+        assertThatThrownBy(() -> poller.until(() -> {
+            throw new IllegalStateException("Broken");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(poller.getAttempts()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,250 @@
+package com.privalia.qa.utils;
+
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.Request;
+import com.ning.http.client.RequestBuilder;
+import com.ning.http.client.Response;
+import io.restassured.config.RestAssuredConfig;
+import io.restassured.config.SSLConfig;
+import io.restassured.specification.RequestSpecification;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+import static io.restassured.RestAssured.given;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RestClientUtilsTest {
+
+    private HttpServer server;
+
+    private String url;
+
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private ExecutorService serverExecutor;
+
+    @BeforeClass
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            byte[] body = "{\"ok\":true}".getBytes();
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.createContext("/slow", exchange -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            int status = exchange.getRequestURI().getQuery() == null ? 200 : 503;
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        server.createContext("/wait", exchange -> {
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{}".getBytes();
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    @AfterClass
+    public void stopServer() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void sharedClientReusesConnectionsTest() throws Exception {
+        RestClientUtils utils = new RestClientUtils();
+        AsyncHttpClient client = utils.getClient();
+
+        for (int i = 0; i < 5; i++) {
+            Response response = client.prepareGet(url).execute().get();
+            assertThat(response.getStatusCode()).isEqualTo(200);
+        }
+
+        utils.releaseClient(client);
+        assertThat(client.isClosed()).isFalse();
+        assertThat(utils.getClient()).isSameAs(client);
+
+        assertThat(utils.getRequests()).isEqualTo(5);
+        assertThat(utils.getOpenedConnections()).isEqualTo(1);
+        assertThat(utils.getReusedConnections()).isEqualTo(4);
+        assertThat(utils.getReuseRate()).isEqualTo(80.0);
+
+        utils.close();
+        assertThat(client.isClosed()).isTrue();
+    }
+
+    @Test
+    public void restAssuredScenariosShareTheConnectionPoolTest() {
+        RestClientUtils utils = new RestClientUtils();
+        clientPorts.clear();
+
+        for (int scenario = 0; scenario < 3; scenario++) {
+            for (int i = 0; i < 2; i++) {
+                given().config(utils.getRestAssuredConfig()).when().get(url).then().statusCode(200);
+            }
+        }
+
+        assertThat(clientPorts).hasSize(1);
+        assertThat(utils.getConnectionManager().getTotalStats().getAvailable()).isEqualTo(1);
+
+        utils.close();
+        assertThat(utils.getConnectionManager()).isNull();
+    }
+
+    @Test
+    public void scenarioSslSettingsAreNotSharedTest() {
+        RestClientUtils utils = new RestClientUtils();
+
+        given().config(utils.getRestAssuredConfig()).relaxedHTTPSValidation().port(8443).when().get(url).then().statusCode(200);
+        utils.getConnectionManager().getSchemeRegistry().register(new Scheme("https", 9443, PlainSocketFactory.getSocketFactory()));
+
+        Scheme https = utils.getConnectionManager().getSchemeRegistry().getScheme("https");
+        assertThat(https.getDefaultPort()).isEqualTo(443);
+        assertThat(https.getSchemeSocketFactory()).isInstanceOf(SSLSocketFactory.class);
+
+        utils.close();
+    }
+
+    @Test
+    public void scenarioKeyStoresAreNotSentThroughThePoolTest() {
+        RestClientUtils utils = new RestClientUtils();
+        RestAssuredConfig pooled = utils.getRestAssuredConfig();
+
+        RestAssuredConfig relaxed = pooled.sslConfig(SSLConfig.sslConfig().relaxedHTTPSValidation());
+        assertThat(utils.needsOwnConnectionManager(relaxed)).isFalse();
+
+        RestAssuredConfig trustStore = pooled.sslConfig(SSLConfig.sslConfig().trustStore("truststore.jks", "changeit"));
+        assertThat(utils.needsOwnConnectionManager(trustStore)).isTrue();
+        RestAssuredConfig keyStore = pooled.sslConfig(SSLConfig.sslConfig().keyStore("keystore.jks", "changeit"));
+        assertThat(utils.needsOwnConnectionManager(keyStore)).isTrue();
+
+        RestAssuredConfig own = utils.getRestAssuredConfig(keyStore);
+        assertThat(utils.needsOwnConnectionManager(own)).isFalse();
+        assertThat(own.getSSLConfig().getPathToKeyStore()).isEqualTo("keystore.jks");
+        assertThat(own.getHttpClientConfig().httpClientInstance().getConnectionManager()).isNotSameAs(utils.getConnectionManager());
+
+        utils.close();
+    }
+
+    @Test
+    public void concurrentRequestsAreLimitedAndAggregatedTest() throws InterruptedException {
+        RestClientUtils utils = new RestClientUtils();
+        maxInFlight.set(0);
+
+        IntFunction<Supplier<io.restassured.response.Response>> requests = index -> {
+            RequestSpecification request = given().config(utils.getRestAssuredConfig());
+            String path = (index % 5 == 0) ? "slow?fail" : "slow";
+            return () -> request.get(url + path);
+        };
+        RestLoadResult result = utils.sendConcurrently(40, 4, requests);
+
+        assertThat(result.getTotal()).isEqualTo(40);
+        assertThat(result.getErrors()).isEqualTo(0);
+        assertThat(result.getStatusCount(200)).isEqualTo(32);
+        assertThat(result.getStatusCount(503)).isEqualTo(8);
+        assertThat(result.getErrorRate()).isEqualTo(20.0);
+        assertThat(result.getLatencies().getCount()).isEqualTo(40);
+        assertThat(result.getLatencies().getMillisAtPercentile(50)).isGreaterThanOrEqualTo(20);
+        assertThat(maxInFlight.get()).isBetween(2, 4);
+
+        utils.close();
+    }
+
+    @Test
+    public void slowResponsesDoNotReduceTheRateTest() throws InterruptedException {
+        RestClientUtils utils = new RestClientUtils();
+        Request request = new RequestBuilder("GET").setUrl(url + "wait").build();
+
+        RestLoadResult result = utils.sendAtRate(index -> request, 100, 500, 5000);
+
+        assertThat(result.getTotal()).isEqualTo(50);
+        assertThat(result.getStatusCount(200)).isEqualTo(50);
+        assertThat(result.getErrors()).isEqualTo(0);
+        assertThat(result.getLatencies().getMillisAtPercentile(50)).isGreaterThanOrEqualTo(300);
+        assertThat(result.getElapsedMillis()).isLessThan(2000);
+
+        utils.close();
+    }
+
+    @Test
+    public void failedRequestsAreNotCountedAsThroughputTest() throws Exception {
+        RestClientUtils utils = new RestClientUtils();
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        Request request = new RequestBuilder("GET").setUrl("http://localhost:" + closedPort + "/").build();
+
+        RestLoadResult result = utils.sendAtRate(index -> request, 100, 500, 5000);
+
+        assertThat(result.getTotal()).isEqualTo(50);
+        assertThat(result.getErrors()).isEqualTo(50);
+        assertThat(result.getCompleted()).isEqualTo(0);
+        assertThat(result.getRequestsPerSecond()).isEqualTo(0.0);
+
+        utils.close();
+    }
+
+    @Test
+    public void requestTimingIsMeasuredTest() {
+        RestClientUtils utils = new RestClientUtils();
+        RequestSpecification request = given().config(utils.getRestAssuredConfig());
+
+        utils.startTiming();
+        int status = request.get(url + "wait").getStatusCode();
+        RestRequestTiming first = utils.stopTiming("GET", "/wait", status);
+
+        utils.startTiming();
+        request.get(url + "wait");
+        RestRequestTiming second = utils.stopTiming("GET", "/wait", status);
+
+        assertThat(first.getStatusCode()).isEqualTo(200);
+        assertThat(first.getConnectMillis()).isGreaterThanOrEqualTo(0);
+        assertThat(first.getTimeToFirstByteMillis()).isGreaterThanOrEqualTo(300).isLessThanOrEqualTo(first.getTotalMillis());
+        assertThat(second.getConnectMillis()).isEqualTo(-1);
+        assertThat(second.getTotalMillis()).isGreaterThanOrEqualTo(300);
+
+        utils.close();
+    }
+}
@@ -0,0 +1,58 @@
+package com.privalia.qa.utils;
+
+import com.jayway.jsonpath.JsonPath;
+import com.privalia.qa.specs.CommonG;
+import io.restassured.builder.ResponseBuilder;
+import io.restassured.response.Response;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RestResponseBodyTest {
+
+    private Response response(String body) {
+        return new ResponseBuilder().setStatusCode(200).setContentType("application/json; charset=UTF-8").setBody(body).build();
+    }
+
+    @Test
+    public void bodyIsParsedOnlyOnceTest() {
+        ThreadProperty.set("class", this.getClass().getCanonicalName());
+        CommonG commong = new CommonG();
+
+        commong.setRestResponse(response("[{\"id\":1,\"name\":\"Paul\"},{\"id\":2,\"name\":\"Ñandú\"}]"));
+        RestResponseBody body = commong.getRestResponseBody();
+
+        assertThat(commong.getRestResponseBody()).isSameAs(body);
+        assertThat(body.getDocument()).isSameAs(body.getDocument());
+        assertThat(body.getTree()).isSameAs(body.getTree());
+        assertThat(body.asString()).isSameAs(body.asString());
+        assertThat(body.getLength()).isEqualTo(48);
+        assertThat(body.getByteLength()).isEqualTo(50);
+        assertThat(body.getTree().get(1).get("name").asText()).isEqualTo("Ñandú");
+        assertThat(commong.getJSONPathString(body, "$.[0].name", null)).isEqualTo("Paul");
+        assertThat(commong.getJSONPathString(body, "$.[*].id", "1")).isEqualTo("2");
+        assertThat(commong.getJSONPathString(body, "$.[0].~", null)).contains("\"id\"", "\"name\"");
+
+        commong.setRestResponse(response("{\"id\":3}"));
+        assertThat(commong.getRestResponseBody()).isNotSameAs(body);
+        assertThat(commong.getJSONPathString(commong.getRestResponseBody(), "$.id", null)).isEqualTo("3");
+    }
+
+    @Test
+    public void jsonDocumentsAreParsedOnlyOnceTest() {
+        RestResponseBody body = new RestResponseBody("{\"id\":\"Ñ\"}");
+
+        assertThat(body.getResponse()).isNull();
+        assertThat(body.getDocument()).isSameAs(body.getDocument());
+        assertThat(body.getByteLength()).isEqualTo(11);
+        assertThat(body.getTree().get("id").asText()).isEqualTo("Ñ");
+    }
+
+    @Test
+    public void expressionsAreCompiledOnlyOnceTest() {
+        JsonPath path = RestResponseBody.compile("$.store.book[0].title");
+
+        assertThat(RestResponseBody.compile("$.store.book[0].title")).isSameAs(path);
+        assertThat(RestResponseBody.compile("$.store.book[1].title")).isNotSameAs(path);
+    }
+}
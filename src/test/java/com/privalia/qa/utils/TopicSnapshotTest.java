@@ -0,0 +1,116 @@
+package com.privalia.qa.utils;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TopicSnapshotTest {
+
+    private static final String TOPIC = "snapshotTopic";
+
+    private File directory;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("snapshot").toFile();
+    }
+
+    @AfterMethod
+    public void removeDirectory() {
+        FileUtils.deleteQuietly(directory);
+    }
+
+    private MockConsumer<byte[], byte[]> mockConsumer(int recordsPartition0, int recordsPartition1) {
+        MockConsumer<byte[], byte[]> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        TopicPartition partition0 = new TopicPartition(TOPIC, 0);
+        TopicPartition partition1 = new TopicPartition(TOPIC, 1);
+        consumer.updatePartitions(TOPIC, Arrays.asList(new PartitionInfo(TOPIC, 0, null, null, null), new PartitionInfo(TOPIC, 1, null, null, null)));
+
+        Map<TopicPartition, Long> beginningOffsets = new HashMap<>();
+        beginningOffsets.put(partition0, 0L);
+        beginningOffsets.put(partition1, 0L);
+        consumer.updateBeginningOffsets(beginningOffsets);
+
+        Map<TopicPartition, Long> endOffsets = new HashMap<>();
+        endOffsets.put(partition0, (long) recordsPartition0);
+        endOffsets.put(partition1, (long) recordsPartition1);
+        consumer.updateEndOffsets(endOffsets);
+
+        consumer.schedulePollTask(() -> {
+            for (int i = 0; i < recordsPartition0; i++) {
+                consumer.addRecord(new ConsumerRecord<>(TOPIC, 0, i, ("key" + i).getBytes(StandardCharsets.UTF_8), ("value " + i).getBytes(StandardCharsets.UTF_8)));
+            }
+            for (int i = 0; i < recordsPartition1; i++) {
+                consumer.addRecord(new ConsumerRecord<>(TOPIC, 1, i, null, ("other " + i).getBytes(StandardCharsets.UTF_8)));
+            }
+        });
+        return consumer;
+    }
+
+    @Test
+    public void captureAndScanTest() throws IOException {
+
+        TopicSnapshot snapshot = TopicSnapshot.capture(TOPIC, mockConsumer(1000, 10), directory, 4096, 10000);
+        assertThat(snapshot.getRecordCount()).isEqualTo(1010);
+        assertThat(snapshot.getRecordCount(0)).isEqualTo(1000);
+        assertThat(new File(directory, "snapshot-1.segment")).exists();
+
+        List<ConsumerRecord<String, String>> records = new ArrayList<>();
+        boolean stopped = snapshot.scan(new StringDeserializer(), new StringDeserializer(), (ConsumerRecord<String, String> record) -> {
+            records.add(record);
+            return false;
+        });
+        assertThat(stopped).isFalse();
+        assertThat(records).hasSize(1010);
+        assertThat(records.get(999).key()).isEqualTo("key999");
+        assertThat(records.get(999).value()).isEqualTo("value 999");
+        assertThat(records.get(1000).key()).isNull();
+        assertThat(records.get(1000).partition()).isEqualTo(1);
+
+        assertThat(snapshot.scan(new StringDeserializer(), new StringDeserializer(), (ConsumerRecord<String, String> record) -> "value 10".equals(record.value()))).isTrue();
+    }
+
+    @Test
+    public void scanPartitionFromOffsetTest() throws IOException {
+
+        TopicSnapshot.capture(TOPIC, mockConsumer(1000, 10), directory, 4096, 10000).close();
+        TopicSnapshot snapshot = TopicSnapshot.open(TOPIC, directory);
+
+        List<Long> offsets = new ArrayList<>();
+        snapshot.scanPartition(0, 700, new StringDeserializer(), new StringDeserializer(), (ConsumerRecord<String, String> record) -> {
+            offsets.add(record.offset());
+            return false;
+        });
+        assertThat(offsets).hasSize(300);
+        assertThat(offsets.get(0)).isEqualTo(700L);
+
+        offsets.clear();
+        snapshot.scanPartition(1, 0, new StringDeserializer(), new StringDeserializer(), (ConsumerRecord<String, String> record) -> {
+            offsets.add(record.offset());
+            return false;
+        });
+        assertThat(offsets).hasSize(10);
+
+        snapshot.delete();
+        assertThat(directory).doesNotExist();
+    }
+}
@@ -83,4 +83,93 @@ Feature: Kafka steps test.
       | key.serializer | org.apache.kafka.common.serialization.StringSerializer |
     Then The kafka topic 'avroTopic' has an avro message 'record2' with:
       | key.deserializer | org.apache.kafka.common.serialization.StringDeserializer |
+    And The kafka topic 'avroTopic' has at least '1' an avro message with:
+      | str1 | equal | str1 |
+      | int1 | equal | 1    |
+    And The kafka topic 'avroTopic' has the following avro messages:
+      | str1     | str2 |
+      | str1     | str2 |
+      | new_str1 | str2 |
+    Then I close the connection to kafka
+
+
+  Scenario: Sending several messages at once
+    Given I connect to kafka at '${ZOOKEEPER_HOST}:2181'
+    Given I create a Kafka topic named 'bulkTopic' if it doesn't exists
+    Given I configure the kafka producer with:
+      | linger.ms  | 20    |
+      | batch.size | 65536 |
+    When I send '100' messages 'hello {index}' to the kafka topic named 'bulkTopic' with key 'key{index}'
+    Then The kafka topic 'bulkTopic' has a message containing 'hello 99'
+    When I send the messages in 'files/kafkaMessages.txt' to the kafka topic named 'bulkTopic'
+    Then The kafka topic 'bulkTopic' has a message containing 'third message'
+    When I send the following messages to the kafka topic named 'bulkTopic':
+      | key1 | hola    |
+      | key2 | bonjour |
+    Then The kafka topic 'bulkTopic' has a message containing 'bonjour'
+    Then I close the connection to kafka
+
+
+  Scenario: Reading a topic with several consumers in parallel
+    Given I connect to kafka at '${ZOOKEEPER_HOST}:2181'
+    Given I create a Kafka topic named 'parallelTopic' if it doesn't exists
+    Given I increase '3' partitions in a Kafka topic named 'parallelTopic'
+    When I send '100' messages 'hello {index}' to the kafka topic named 'parallelTopic' with key 'key{index}'
+    Given I read kafka topics using '4' consumers in parallel
+    Then The kafka topic 'parallelTopic' has a message containing 'hello 50'
+    Given I read kafka topics using '1' consumers in parallel
+    Then I close the connection to kafka
+
+
+  Scenario: Producing messages at a fixed rate
+    Given I connect to kafka at '${ZOOKEEPER_HOST}:2181'
+    Given I create a Kafka topic named 'loadTopic' if it doesn't exists
+    When I produce '500' messages 'hello {index}' to the kafka topic named 'loadTopic' at '100' messages per second with key 'key{index}'
+    Then the kafka p99 latency is lower than '500' milliseconds
+    And the kafka throughput is at least '80' messages per second
+    When I produce messages 'hello {index}' to the kafka topic named 'loadTopic' at '50' messages per second during '5' seconds
+    Then the kafka max latency is lower than '1000' milliseconds
+    Then I close the connection to kafka
+
+
+  Scenario: Measuring the end-to-end latency of a pipeline
+    Given I connect to kafka at '${ZOOKEEPER_HOST}:2181'
+    Given I create a Kafka topic named 'pipelineTopic' if it doesn't exists
+    When I send '50' tracked messages 'order {index}' to the kafka topic named 'pipelineTopic'
+    Then the tracked messages are found in the kafka topic named 'pipelineTopic'
+    And the kafka end-to-end p95 latency is lower than '1000' milliseconds
+    Then I close the connection to kafka
+
+
+  Scenario: Creating and deleting several topics at once
+    Given I connect to kafka at '${ZOOKEEPER_HOST}:2181'
+    Given I create the following kafka topics if they don't exist:
+      | batchTopic1 |   |
+      | batchTopic2 | 3 |
+    Then A kafka topic named 'batchTopic1' exists
+    And The number of partitions in topic 'batchTopic2' should be '3'
+    When I delete the following kafka topics:
+      | batchTopic1 |
+      | batchTopic2 |
+    Then A kafka topic named 'batchTopic1' does not exist
+    Then I close the connection to kafka
+
+
+  Scenario: Streaming the records of a file
+    Given I connect to kafka at '${ZOOKEEPER_HOST}:2181'
+    Given I create a Kafka topic named 'streamTopic' if it doesn't exists
+    When I stream the csv records in 'files/kafkaRecords.csv' to the kafka topic named 'streamTopic' with key field 'id'
+    Then The kafka topic 'streamTopic' has a message containing 'Valencia'
+    And The kafka topic 'streamTopic' has a message containing '2' as key
+    Then I close the connection to kafka
+
+
+  Scenario: Checking a topic from a local snapshot
+    Given I connect to kafka at '${ZOOKEEPER_HOST}:2181'
+    Given I create a Kafka topic named 'snapshotTopic' if it doesn't exists
+    When I send '100' messages 'snapshot {index}' to the kafka topic named 'snapshotTopic' with key 'key{index}'
+    Given I take a snapshot of the kafka topic 'snapshotTopic'
+    Then The kafka topic 'snapshotTopic' has a message containing 'snapshot 99'
+    And The kafka topic 'snapshotTopic' has a message containing 'key42' as key
+    Then I discard the snapshot of the kafka topic 'snapshotTopic'
     Then I close the connection to kafka
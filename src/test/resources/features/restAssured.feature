@@ -56,6 +56,78 @@ Feature: Rest Assured Feature
       | $.userId | equal | 4 |
 
 
+  Scenario: The response time of the requests is verified
+    Given I send requests to '${REST_SERVER_HOST}:3000'
+    When I send a 'GET' request to '/posts/1'
+    Then the service response time must be less than '2000' ms
+    And the service response time to first byte must be less than '2000' ms
+    When I send a 'GET' request to '/posts/2'
+    And I send a 'GET' request to '/posts/3'
+    Then the average response time of the last '3' requests is lower than '1000' ms
+
+
+  Scenario: The same request is sent many times concurrently, checking the status codes and the response times
+    Given I send requests to '${REST_SERVER_HOST}:3000'
+    When I send '50' 'GET' requests to '/posts/1' using '5' concurrent threads
+    Then all the concurrent requests returned status '200'
+    And the concurrent requests p95 latency is lower than '2000' milliseconds
+    And the number of concurrent requests without response is at most '0'
+
+
+  Scenario: A list of requests is sent concurrently
+    Given I send requests to '${REST_SERVER_HOST}:3000'
+    When I send the following requests using '3' concurrent threads '5' times:
+      | GET  | /posts/1 |                         |
+      | GET  | /posts   |                         |
+      | POST | /posts   | schemas/mytestdata.json |
+    Then the concurrent requests returned status '200' at least '10' times
+    And the concurrent requests returned status '201' at least '5' times
+
+
+  Scenario: Requests are sent at a constant rate, checking the latency and error rate SLAs
+    Given I send requests to '${REST_SERVER_HOST}:3000'
+    When I send 'GET' requests to '/posts/1' at '20' per second for '5' seconds
+    Then the REST load test p95 latency is lower than '2000' milliseconds
+    And the REST load test p99 latency is lower than '3000' milliseconds
+    And the REST load test error rate is lower than '1'%
+    And the REST load test throughput is at least '10' requests per second
+
+
+  Scenario: The request is repeated until the response is the expected one
+    Given I send requests to '${REST_SERVER_HOST}:3000'
+    Then eventually within '5000' ms:
+      """
+      I send a 'GET' request to '/posts/1'
+      the service response status must be '200'
+      the service response must contain the text 'userId'
+      """
+
+
+  Scenario: The response body is verified in streaming mode, without saving it in a variable
+    Given I send requests to '${REST_SERVER_HOST}:3000'
+    When I send a 'GET' request to '/posts'
+    Then the service response matches the following cases:
+      | $             | size            | 100 |
+      | $.[0].userId  | equal           | 1   |
+      | $.[99].title  | exists          |     |
+      | $.[100]       | does not exists |     |
+
+
+  Scenario: Several requests are sent in parallel and checked by alias
+    Given I send requests to '${REST_SERVER_HOST}:3000'
+    When I send these requests in parallel:
+      | post     | GET  | /posts/1           |                         |
+      | comments | GET  | /comments?postId=1 |                         |
+      | newPost  | POST | /posts             | schemas/mytestdata.json |
+    And I wait for the parallel requests for at most '10000' ms
+    Then the parallel request 'post' returned status '200'
+    And the parallel request 'newPost' returned status '201'
+    And the parallel request 'comments' response must contain the text 'postId'
+    And I save the response of the parallel request 'post' in environment variable 'post'
+    And 'post' matches the following cases:
+      | $.id | equal | 1 |
+
+
   @ignore @toocomplex
   Scenario: Setting headers using a datatable and verifying the returned headers
     Given I send requests to 'dummy-test.com:80'